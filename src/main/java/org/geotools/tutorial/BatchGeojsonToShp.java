@@ -0,0 +1,154 @@
+package org.geotools.tutorial;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.tutorial.GeojsonToShp.WriteShapefile;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts every GeoJSON file of a directory into a shapefile of the same name
+ * in an output directory. Files are converted concurrently on a bounded
+ * work-stealing pool, and a throughput summary is printed at the end.
+ * <p>
+ * The files of a batch usually share their structure, so the schema of a file
+ * is inferred from its first features only. The schema and shapefile type
+ * built for the first file of a structure, keyed by the attribute names and
+ * bindings, are then used for all files of that structure.
+ */
+public class BatchGeojsonToShp {
+	final static private Logger LOGGER = LoggerFactory.getLogger(BatchGeojsonToShp.class);
+
+	public static final int DEFAULT_SAMPLE_SIZE = 1000;
+
+	private final int parallelism;
+
+	/* shared by all conversions; creating a new data store is stateless */
+	private final ShapefileDataStoreFactory dataStoreFactory = new ShapefileDataStoreFactory();
+
+	/* grid size coordinates are snapped to, or 0 for full precision */
+	private double gridSize;
+
+	/* features a schema is inferred from, or 0 for all features of a file */
+	private int sampleSize = DEFAULT_SAMPLE_SIZE;
+
+	/* the schema and shapefile type of each structure, keyed by the encoded schema */
+	private final Map<String, SimpleFeatureType[]> schemas = new ConcurrentHashMap<>();
+
+	private final LongAdder files = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder features = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: BatchGeojsonToShp <input dir> <output dir> [threads] [grid size] [sample size]");
+			return;
+		}
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		BatchGeojsonToShp batch = new BatchGeojsonToShp(threads);
+		if (args.length > 3) {
+			batch.setGridSize(Double.parseDouble(args[3]));
+		}
+		if (args.length > 4) {
+			batch.setSampleSize(Integer.parseInt(args[4]));
+		}
+		batch.convert(new File(args[0]), new File(args[1]));
+	}
+
+	public BatchGeojsonToShp(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @param gridSize
+	 *            grid cell size coordinates are snapped to while decoding, or 0
+	 *            to keep full precision
+	 */
+	public void setGridSize(double gridSize) {
+		this.gridSize = gridSize;
+	}
+
+	/**
+	 * @param sampleSize
+	 *            the number of features of a file its schema is inferred from,
+	 *            or 0 to read whole files; see {@link SchemaInference}
+	 */
+	public void setSampleSize(int sampleSize) {
+		this.sampleSize = sampleSize;
+	}
+
+	public void convert(File inputDir, File outputDir) throws InterruptedException {
+		File[] inputs = inputDir.listFiles((dir, name) -> name.endsWith(".geojson") || name.endsWith(".json"));
+		if (inputs == null) {
+			throw new IllegalArgumentException("Not a directory: " + inputDir);
+		}
+		outputDir.mkdirs();
+
+		// largest files first, so a big file does not start last and run alone
+		Arrays.sort(inputs, Comparator.comparingLong(File::length).reversed());
+
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (File input : inputs) {
+			tasks.add(() -> {
+				convertFile(input, outputDir);
+				return null;
+			});
+		}
+
+		long start = System.nanoTime();
+		ExecutorService pool = Executors.newWorkStealingPool(parallelism);
+		try {
+			pool.invokeAll(tasks);
+		} finally {
+			pool.shutdown();
+		}
+		printSummary(System.nanoTime() - start);
+	}
+
+	private void convertFile(File input, File outputDir) {
+		String name = input.getName();
+		File output = new File(outputDir, name.substring(0, name.lastIndexOf('.')) + ".shp");
+		try {
+			SimpleFeatureType sampled = new SchemaInference(sampleSize).infer(input,
+			    name.substring(0, name.lastIndexOf('.')));
+			// the type name is left out of the key, as every file has its own
+			SimpleFeatureType[] types = schemas.computeIfAbsent(DataUtilities.encodeType(sampled),
+			    key -> new SimpleFeatureType[] { sampled, WriteShapefile.createShapeType(sampled) });
+
+			WriteShapefile writer = new WriteShapefile(output, dataStoreFactory);
+			try (MappedGeoJsonReader iterator = new MappedGeoJsonReader(input, types[0],
+			    GeojsonToShp.createGeometryFactory(gridSize))) {
+				features.add(writer.writeFeatures(types[0], types[1], iterator));
+			}
+			files.increment();
+			bytes.add(input.length());
+		} catch (IOException | RuntimeException e) {
+			failures.increment();
+			LOGGER.error("Could not convert " + input, e);
+		}
+	}
+
+	private void printSummary(long elapsedNanos) {
+		double seconds = Math.max(elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1), 1e-9);
+		System.out.printf("Converted %d files (%d failed), %d features, %.1f MB in %.1f s%n", files.sum(),
+		    failures.sum(), features.sum(), bytes.sum() / (1024.0 * 1024.0), seconds);
+		System.out.printf("%.1f files/s, %.0f features/s, %.1f MB/s%n", files.sum() / seconds,
+		    features.sum() / seconds, bytes.sum() / (1024.0 * 1024.0) / seconds);
+	}
+}
@@ -0,0 +1,193 @@
+package org.geotools.tutorial;
+
+import java.io.IOException;
+
+import org.geotools.data.DataStore;
+import org.geotools.data.DefaultTransaction;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends features in batches. A batch ends after a number of features or an
+ * estimated number of bytes; the features of the batch are then committed and
+ * its throughput is logged, so neither the pending changes nor the time
+ * without feedback grow with the size of the load.
+ * <p>
+ * Each batch of a transactional store, e.g. PostGIS, gets a
+ * {@link DefaultTransaction} of its own and is durable once committed. A
+ * shapefile can only be committed as a whole file: committing a transaction
+ * rewrites every record written before, so for a shapefile the features go
+ * through a single {@link Transaction#AUTO_COMMIT} writer, which streams them
+ * to disk without buffering, and a batch only ends with its report. Shapefile
+ * output that has to be durable part by part is written by
+ * {@link RollingShapefileWriter}.
+ */
+public class BatchedFeatureWriter implements FeatureWriter<SimpleFeatureType, SimpleFeature> {
+	final static private Logger LOGGER = LoggerFactory.getLogger(BatchedFeatureWriter.class);
+
+	public static final long DEFAULT_BATCH_FEATURES = 100_000;
+	public static final long DEFAULT_BATCH_BYTES = 64L * 1024 * 1024;
+
+	private final DataStore store;
+	private final String typeName;
+	private final SimpleFeatureType featureType;
+	private final long batchFeatures;
+	private final long batchBytes;
+	private final boolean transactional;
+	private final int attributeBytes;
+
+	private Transaction transaction;
+	private FeatureWriter<SimpleFeatureType, SimpleFeature> writer;
+	private SimpleFeature current;
+	private long features;
+	private long bytes;
+	private long count;
+	private int batches;
+	private long batchStart;
+
+	public BatchedFeatureWriter(DataStore store, String typeName) throws IOException {
+		this(store, typeName, DEFAULT_BATCH_FEATURES, DEFAULT_BATCH_BYTES);
+	}
+
+	/**
+	 * @param batchFeatures
+	 *            the maximum number of features in a batch
+	 * @param batchBytes
+	 *            the maximum estimated size of a batch. The estimate is the
+	 *            shapefile record size of its features for any store; for other
+	 *            stores it is about the size of their WKB geometries and
+	 *            fixed width attributes.
+	 */
+	public BatchedFeatureWriter(DataStore store, String typeName, long batchFeatures, long batchBytes)
+	    throws IOException {
+		this.store = store;
+		this.typeName = typeName;
+		this.featureType = store.getSchema(typeName);
+		this.batchFeatures = batchFeatures;
+		this.batchBytes = batchBytes;
+		this.transactional = !(store instanceof ShapefileDataStore);
+		this.attributeBytes = ShapefileRecordSize.dbfRecordBytes(featureType);
+	}
+
+	public SimpleFeatureType getFeatureType() {
+		return featureType;
+	}
+
+	/**
+	 * @return a new feature to fill in and {@link #write()}
+	 */
+	public SimpleFeature next() throws IOException {
+		if (writer == null) {
+			open();
+		}
+		current = writer.next();
+		return current;
+	}
+
+	public boolean hasNext() {
+		// an appending writer has no existing features to return
+		return false;
+	}
+
+	/**
+	 * Drops the feature returned by the last {@link #next()} instead of writing
+	 * it; features already written stay.
+	 */
+	public void remove() throws IOException {
+		if (current == null) {
+			throw new IllegalStateException("next() must be called before remove()");
+		}
+		writer.remove();
+		current = null;
+	}
+
+	public void write() throws IOException {
+		if (current == null) {
+			throw new IllegalStateException("next() must be called before write()");
+		}
+		writer.write();
+		bytes += ShapefileRecordSize.shpRecordBytes((Geometry) current.getDefaultGeometry()) + attributeBytes;
+		current = null;
+		features++;
+		count++;
+		if (features >= batchFeatures || bytes >= batchBytes) {
+			endBatch();
+		}
+	}
+
+	/**
+	 * Commits the last batch.
+	 */
+	public void close() throws IOException {
+		if (features > 0) {
+			endBatch();
+		}
+		if (writer != null) {
+			closeWriter();
+		}
+	}
+
+	/**
+	 * @return the number of features written so far
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	private void open() throws IOException {
+		transaction = transactional ? new DefaultTransaction("batch") : Transaction.AUTO_COMMIT;
+		try {
+			writer = store.getFeatureWriterAppend(typeName, transaction);
+		} catch (IOException | RuntimeException e) {
+			closeTransaction();
+			throw e;
+		}
+		batchStart = System.nanoTime();
+	}
+
+	private void endBatch() throws IOException {
+		if (transactional) {
+			closeWriter();
+		}
+		batches++;
+		double seconds = Math.max((System.nanoTime() - batchStart) / 1e9, 1e-9);
+		LOGGER.info(String.format("Batch %d: %d features at %.0f features/s, %d written", batches, features,
+		    features / seconds, count));
+		features = 0;
+		bytes = 0;
+		batchStart = System.nanoTime();
+	}
+
+	/*
+	 * A failed commit is rolled back; the batches committed before stay.
+	 */
+	private void closeWriter() throws IOException {
+		try {
+			writer.close();
+			if (transaction != Transaction.AUTO_COMMIT) {
+				transaction.commit();
+			}
+		} catch (IOException | RuntimeException e) {
+			if (transaction != Transaction.AUTO_COMMIT) {
+				transaction.rollback();
+			}
+			throw e;
+		} finally {
+			writer = null;
+			closeTransaction();
+		}
+	}
+
+	private void closeTransaction() throws IOException {
+		if (transaction != Transaction.AUTO_COMMIT) {
+			transaction.close();
+		}
+		transaction = null;
+	}
+}
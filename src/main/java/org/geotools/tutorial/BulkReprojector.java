@@ -0,0 +1,135 @@
+package org.geotools.tutorial;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.geotools.geometry.jts.JTS;
+import org.geotools.referencing.CRS;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.TransformException;
+
+/**
+ * Transforms many geometries with a single call to
+ * {@link MathTransform#transform(double[], int, double[], int, int)}.
+ * <p>
+ * The x and y ordinates of all geometries of a batch are packed into one
+ * array, transformed in place and written into copies of the geometries, so
+ * the cost of a call into the transform is paid per batch instead of per
+ * geometry. Z ordinates are kept as they are. Transforms are looked up once
+ * per pair of coordinate reference systems and shared by all threads.
+ */
+public final class BulkReprojector {
+
+	private static final Map<Pair, MathTransform> TRANSFORMS = new ConcurrentHashMap<>();
+
+	private BulkReprojector() {
+	}
+
+	/**
+	 * Finds the lenient transform between two coordinate reference systems, which
+	 * allows for some error due to different datums.
+	 */
+	public static MathTransform findTransform(CoordinateReferenceSystem source, CoordinateReferenceSystem target)
+	    throws FactoryException {
+		Pair pair = new Pair(source, target);
+		MathTransform transform = TRANSFORMS.get(pair);
+		if (transform == null) {
+			transform = CRS.findMathTransform(source, target, true);
+			TRANSFORMS.putIfAbsent(pair, transform);
+		}
+		return transform;
+	}
+
+	/**
+	 * Transforms the geometries in one batch; null geometries stay null.
+	 *
+	 * @return copies of the geometries, in the same order
+	 */
+	public static Geometry[] transform(Geometry[] geometries, MathTransform transform) throws TransformException {
+		Geometry[] transformed = new Geometry[geometries.length];
+		if (transform.getSourceDimensions() != 2 || transform.getTargetDimensions() != 2) {
+			for (int i = 0; i < geometries.length; i++) {
+				transformed[i] = geometries[i] == null ? null : JTS.transform(geometries[i], transform);
+			}
+			return transformed;
+		}
+		int points = 0;
+		for (Geometry geometry : geometries) {
+			if (geometry != null) {
+				points += geometry.getNumPoints();
+			}
+		}
+		OrdinateFilter filter = new OrdinateFilter(new double[points * 2]);
+		for (Geometry geometry : geometries) {
+			if (geometry != null) {
+				geometry.apply(filter);
+			}
+		}
+		transform.transform(filter.ordinates, 0, filter.ordinates, 0, points);
+
+		// the copies are visited in the same order as the originals
+		filter.position = 0;
+		filter.write = true;
+		for (int i = 0; i < geometries.length; i++) {
+			if (geometries[i] != null) {
+				transformed[i] = geometries[i].copy();
+				transformed[i].apply(filter);
+			}
+		}
+		return transformed;
+	}
+
+	/* reads the x and y ordinates into the array, or writes them back */
+	private static class OrdinateFilter implements CoordinateSequenceFilter {
+		final double[] ordinates;
+		int position;
+		boolean write;
+
+		OrdinateFilter(double[] ordinates) {
+			this.ordinates = ordinates;
+		}
+
+		public void filter(CoordinateSequence seq, int i) {
+			if (write) {
+				seq.setOrdinate(i, CoordinateSequence.X, ordinates[position++]);
+				seq.setOrdinate(i, CoordinateSequence.Y, ordinates[position++]);
+			} else {
+				ordinates[position++] = seq.getX(i);
+				ordinates[position++] = seq.getY(i);
+			}
+		}
+
+		public boolean isDone() {
+			return false;
+		}
+
+		public boolean isGeometryChanged() {
+			return write;
+		}
+	}
+
+	private static class Pair {
+		final CoordinateReferenceSystem source;
+		final CoordinateReferenceSystem target;
+
+		Pair(CoordinateReferenceSystem source, CoordinateReferenceSystem target) {
+			this.source = source;
+			this.target = target;
+		}
+
+		public boolean equals(Object other) {
+			return other instanceof Pair && ((Pair) other).source.equals(source)
+			    && ((Pair) other).target.equals(target);
+		}
+
+		public int hashCode() {
+			return Objects.hash(source, target);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package org.geotools.tutorial;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Progress of a resumable conversion: the byte offset of the next feature to
+ * read, the number of features written and the number of completed part files.
+ * The length and modification time of the input are kept as well, since an
+ * offset into a file that has changed since points anywhere.
+ * <p>
+ * A checkpoint is only saved after a part file has been closed, so everything
+ * it points to is already on disk. It is written to a temporary file and moved
+ * over the previous one, so a crash never leaves a half written checkpoint.
+ */
+public class Checkpoint {
+
+	private static final String OFFSET = "offset";
+	private static final String COUNT = "count";
+	private static final String PARTS = "parts";
+	private static final String PART = "part";
+	private static final String INPUT_LENGTH = "input.length";
+	private static final String INPUT_MODIFIED = "input.modified";
+
+	private final long offset;
+	private final long count;
+	private final int parts;
+	private final String part;
+	private final long inputLength;
+	private final long inputModified;
+
+	/**
+	 * @param input
+	 *            the file being converted
+	 */
+	public Checkpoint(long offset, long count, int parts, String part, File input) {
+		this(offset, count, parts, part, input.length(), input.lastModified());
+	}
+
+	private Checkpoint(long offset, long count, int parts, String part, long inputLength, long inputModified) {
+		this.offset = offset;
+		this.count = count;
+		this.parts = parts;
+		this.part = part;
+		this.inputLength = inputLength;
+		this.inputModified = inputModified;
+	}
+
+	/**
+	 * @return the byte offset of the first feature not yet written
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return the number of features in the completed parts
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the number of completed parts
+	 */
+	public int getParts() {
+		return parts;
+	}
+
+	/**
+	 * @return the name of the last completed part file
+	 */
+	public String getPart() {
+		return part;
+	}
+
+	/**
+	 * @return whether the input has the length and modification time it had
+	 *         when the checkpoint was taken
+	 */
+	public boolean isValidFor(File input) {
+		return input.length() == inputLength && input.lastModified() == inputModified;
+	}
+
+	/**
+	 * @return the checkpoint saved in {@code file}, or {@code null} if there is
+	 *         none
+	 */
+	public static Checkpoint load(File file) throws IOException {
+		if (!file.exists()) {
+			return null;
+		}
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(file.toPath())) {
+			properties.load(in);
+		}
+		try {
+			return new Checkpoint(Long.parseLong(properties.getProperty(OFFSET)),
+			    Long.parseLong(properties.getProperty(COUNT)), Integer.parseInt(properties.getProperty(PARTS)),
+			    properties.getProperty(PART), Long.parseLong(properties.getProperty(INPUT_LENGTH, "-1")),
+			    Long.parseLong(properties.getProperty(INPUT_MODIFIED, "-1")));
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid checkpoint " + file, e);
+		}
+	}
+
+	public void save(File file) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty(OFFSET, Long.toString(offset));
+		properties.setProperty(COUNT, Long.toString(count));
+		properties.setProperty(PARTS, Integer.toString(parts));
+		properties.setProperty(PART, part);
+		properties.setProperty(INPUT_LENGTH, Long.toString(inputLength));
+		properties.setProperty(INPUT_MODIFIED, Long.toString(inputModified));
+
+		File temp = new File(file.getPath() + ".tmp");
+		try (OutputStream out = Files.newOutputStream(temp.toPath())) {
+			properties.store(out, null);
+		}
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+			    StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	public String toString() {
+		return "Checkpoint[offset=" + offset + ", count=" + count + ", parts=" + parts + ", part=" + part + "]";
+	}
+}
@@ -0,0 +1,312 @@
+package org.geotools.tutorial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.geotools.data.collection.CollectionFeatureSource;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.collection.AbstractFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * An in-memory collection of point features stored column by column.
+ * <p>
+ * Coordinates are kept in two {@code double[]} arrays, integer and double
+ * attributes in primitive arrays and strings as codes into a dictionary of the
+ * distinct values, so a point takes a few dozen bytes instead of a
+ * {@link Point}, a {@link SimpleFeature} and boxed attribute values. Features
+ * are only built while the collection is iterated and can be dropped right
+ * after use. Feature ids are not stored; they are derived from the position in
+ * the collection.
+ * <p>
+ * Not thread safe while features are being added.
+ */
+public class ColumnarPointFeatureCollection extends AbstractFeatureCollection {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final GeometryFactory geometryFactory;
+	private final int geometryIndex;
+	/* one column per attribute; null for the geometry */
+	private final Column[] columns;
+	private final ReferencedEnvelope bounds;
+
+	private double[] x = new double[INITIAL_CAPACITY];
+	private double[] y = new double[INITIAL_CAPACITY];
+	private int size;
+
+	public ColumnarPointFeatureCollection(SimpleFeatureType schema) {
+		this(schema, new GeometryFactory());
+	}
+
+	public ColumnarPointFeatureCollection(SimpleFeatureType schema, GeometryFactory geometryFactory) {
+		super(schema);
+		if (schema.getGeometryDescriptor() == null
+		    || schema.getGeometryDescriptor().getType().getBinding() != Point.class) {
+			throw new IllegalArgumentException("Only point schemas can be stored in columns: " + schema);
+		}
+		this.geometryFactory = geometryFactory;
+		this.geometryIndex = schema.indexOf(schema.getGeometryDescriptor().getLocalName());
+		this.columns = new Column[schema.getAttributeCount()];
+		for (int i = 0; i < columns.length; i++) {
+			if (i != geometryIndex) {
+				columns[i] = Column.create(schema.getDescriptor(i).getType().getBinding());
+			}
+		}
+		this.bounds = new ReferencedEnvelope(schema.getCoordinateReferenceSystem());
+	}
+
+	/**
+	 * @return a read-only feature source over this collection, answering queries
+	 *         by filtering the columns
+	 */
+	public SimpleFeatureSource getFeatureSource() {
+		return new CollectionFeatureSource(this);
+	}
+
+	/**
+	 * Copies the point and attributes of a feature of the same schema.
+	 */
+	public void add(SimpleFeature feature) {
+		if (size == x.length) {
+			int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+			x = Arrays.copyOf(x, capacity);
+			y = Arrays.copyOf(y, capacity);
+			for (Column column : columns) {
+				if (column != null) {
+					column.grow(capacity);
+				}
+			}
+		}
+		Point point = (Point) feature.getAttribute(geometryIndex);
+		if (point == null || point.isEmpty()) {
+			x[size] = Double.NaN;
+			y[size] = Double.NaN;
+		} else {
+			x[size] = point.getX();
+			y[size] = point.getY();
+			bounds.expandToInclude(x[size], y[size]);
+		}
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i] != null) {
+				columns[i].set(size, feature.getAttribute(i));
+			}
+		}
+		size++;
+	}
+
+	/**
+	 * Adds all features; closing the iterator is left to the caller.
+	 *
+	 * @return the number of features added
+	 */
+	public long addAll(FeatureIterator<SimpleFeature> features) {
+		long count = 0;
+		while (features.hasNext()) {
+			add(features.next());
+			count++;
+		}
+		return count;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public ReferencedEnvelope getBounds() {
+		return new ReferencedEnvelope(bounds);
+	}
+
+	/**
+	 * Releases the unused capacity of the columns once all features are added.
+	 */
+	public void trimToSize() {
+		x = Arrays.copyOf(x, size);
+		y = Arrays.copyOf(y, size);
+		for (Column column : columns) {
+			if (column != null) {
+				column.grow(size);
+			}
+		}
+	}
+
+	protected Iterator<SimpleFeature> openIterator() {
+		return new Iterator<SimpleFeature>() {
+			/* features added while iterating are not returned */
+			private final int end = size;
+			/* filled in place for every row; buildFeature resets it */
+			private final SimpleFeatureBuilder builder = new SimpleFeatureBuilder(schema);
+			private int row;
+
+			public boolean hasNext() {
+				return row < end;
+			}
+
+			public SimpleFeature next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				for (int i = 0; i < columns.length; i++) {
+					builder.set(i, columns[i] != null ? columns[i].get(row) : point(row));
+				}
+				return builder.buildFeature(schema.getTypeName() + "." + (++row));
+			}
+		};
+	}
+
+	private Point point(int row) {
+		if (Double.isNaN(x[row])) {
+			return null;
+		}
+		return geometryFactory.createPoint(new Coordinate(x[row], y[row]));
+	}
+
+	/**
+	 * The values of one attribute for all rows.
+	 */
+	private abstract static class Column {
+
+		static Column create(Class<?> binding) {
+			if (binding == Integer.class) {
+				return new IntColumn();
+			} else if (binding == Long.class) {
+				return new LongColumn();
+			} else if (binding == Double.class) {
+				return new DoubleColumn();
+			} else if (binding == String.class) {
+				return new StringColumn();
+			}
+			return new ObjectColumn();
+		}
+
+		/* rows without a value, for columns of primitives */
+		final BitSet nulls = new BitSet();
+
+		abstract void set(int row, Object value);
+
+		abstract Object get(int row);
+
+		abstract void grow(int capacity);
+	}
+
+	private static class IntColumn extends Column {
+		private int[] values = new int[INITIAL_CAPACITY];
+
+		void set(int row, Object value) {
+			if (value == null) {
+				nulls.set(row);
+			} else {
+				values[row] = ((Number) value).intValue();
+			}
+		}
+
+		Object get(int row) {
+			return nulls.get(row) ? null : values[row];
+		}
+
+		void grow(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+	}
+
+	private static class LongColumn extends Column {
+		private long[] values = new long[INITIAL_CAPACITY];
+
+		void set(int row, Object value) {
+			if (value == null) {
+				nulls.set(row);
+			} else {
+				values[row] = ((Number) value).longValue();
+			}
+		}
+
+		Object get(int row) {
+			return nulls.get(row) ? null : values[row];
+		}
+
+		void grow(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+	}
+
+	private static class DoubleColumn extends Column {
+		private double[] values = new double[INITIAL_CAPACITY];
+
+		void set(int row, Object value) {
+			if (value == null) {
+				nulls.set(row);
+			} else {
+				values[row] = ((Number) value).doubleValue();
+			}
+		}
+
+		Object get(int row) {
+			return nulls.get(row) ? null : values[row];
+		}
+
+		void grow(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+	}
+
+	/* dictionary encoded; code -1 stands for null */
+	private static class StringColumn extends Column {
+		private int[] codes = new int[INITIAL_CAPACITY];
+		private final Map<String, Integer> dictionary = new HashMap<>();
+		private final List<String> values = new ArrayList<>();
+
+		void set(int row, Object value) {
+			if (value == null) {
+				codes[row] = -1;
+				return;
+			}
+			String string = value.toString();
+			Integer code = dictionary.get(string);
+			if (code == null) {
+				code = values.size();
+				dictionary.put(string, code);
+				values.add(string);
+			}
+			codes[row] = code;
+		}
+
+		Object get(int row) {
+			int code = codes[row];
+			return code < 0 ? null : values.get(code);
+		}
+
+		void grow(int capacity) {
+			codes = Arrays.copyOf(codes, capacity);
+		}
+	}
+
+	/* any other binding, stored as is */
+	private static class ObjectColumn extends Column {
+		private Object[] values = new Object[INITIAL_CAPACITY];
+
+		void set(int row, Object value) {
+			values[row] = value;
+		}
+
+		Object get(int row) {
+			return values[row];
+		}
+
+		void grow(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+	}
+}
@@ -0,0 +1,395 @@
+package org.geotools.tutorial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.util.Converters;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Streams point features out of a CSV file with latitude and longitude
+ * columns, one row at a time.
+ * <p>
+ * Rows are split in place in a reusable byte buffer: there is no regular
+ * expression, no String per field and no list of features. Numbers are parsed
+ * straight from the bytes, and only String attributes are decoded. The
+ * remaining attributes of the schema are read from the other columns, in
+ * order. Fields are separated by a single character and can not be quoted;
+ * blank lines are skipped.
+ */
+public class CsvPointReader implements SimpleFeatureIterator {
+
+	private static final int DEFAULT_BUFFER_BYTES = 64 * 1024;
+
+	/* exactly representable powers of ten, for the fast path of parseDouble() */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+	    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private final InputStream in;
+	private final SimpleFeatureType schema;
+	private final GeometryFactory geometryFactory;
+	private final byte separator;
+	private final int latColumn;
+	private final int lonColumn;
+	private final int geometryIndex;
+	/* column of each attribute; the geometry has none */
+	private final int[] columns;
+	private final Class<?>[] bindings;
+	private final SimpleFeatureBuilder builder;
+	private final String header;
+
+	private byte[] buf = new byte[DEFAULT_BUFFER_BYTES];
+	private int pos;
+	private int limit;
+	private boolean eof;
+
+	/* field boundaries of the current row */
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private int fields;
+	private boolean ready;
+	private long line;
+
+	/**
+	 * @param schema
+	 *            the point schema; its attributes other than the geometry are
+	 *            read from the columns other than latitude and longitude
+	 * @param header
+	 *            whether the first line is a header
+	 */
+	public CsvPointReader(InputStream in, SimpleFeatureType schema, int latColumn, int lonColumn, boolean header)
+	    throws IOException {
+		this(in, schema, latColumn, lonColumn, header, ',', new GeometryFactory());
+	}
+
+	public CsvPointReader(InputStream in, SimpleFeatureType schema, int latColumn, int lonColumn, boolean header,
+	    char separator, GeometryFactory geometryFactory) throws IOException {
+		this.in = in;
+		this.schema = schema;
+		this.geometryFactory = geometryFactory;
+		this.separator = (byte) separator;
+		this.latColumn = latColumn;
+		this.lonColumn = lonColumn;
+		this.geometryIndex = schema.indexOf(schema.getGeometryDescriptor().getLocalName());
+		this.columns = new int[schema.getAttributeCount()];
+		this.bindings = new Class<?>[columns.length];
+		this.builder = new SimpleFeatureBuilder(schema);
+
+		int column = 0;
+		for (int i = 0; i < columns.length; i++) {
+			bindings[i] = schema.getDescriptor(i).getType().getBinding();
+			if (i == geometryIndex) {
+				columns[i] = -1;
+				continue;
+			}
+			while (column == latColumn || column == lonColumn) {
+				column++;
+			}
+			columns[i] = column++;
+		}
+
+		if (header && readLine(false)) {
+			this.header = new String(buf, starts[0], ends[fields - 1] - starts[0], StandardCharsets.UTF_8);
+			ready = false;
+		} else {
+			this.header = null;
+		}
+	}
+
+	/**
+	 * @return the header line, or {@code null} if there is none
+	 */
+	public String getHeader() {
+		return header;
+	}
+
+	public SimpleFeatureType getSchema() {
+		return schema;
+	}
+
+	public boolean hasNext() {
+		if (!ready) {
+			try {
+				ready = readLine(true);
+			} catch (IOException e) {
+				throw new RuntimeException("Could not read line " + (line + 1), e);
+			}
+		}
+		return ready;
+	}
+
+	public SimpleFeature next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		for (int i = 0; i < columns.length; i++) {
+			builder.set(i, value(i));
+		}
+		ready = false;
+		return builder.buildFeature(null);
+	}
+
+	/**
+	 * Writes the remaining rows straight into new features of {@code writer},
+	 * without building features of their own. The writer's schema must have the
+	 * attributes of this reader's schema, in the same order.
+	 *
+	 * @return the number of features written
+	 */
+	public long copyTo(FeatureWriter<SimpleFeatureType, SimpleFeature> writer) throws IOException {
+		long count = 0;
+		while (ready || readLine(true)) {
+			ready = false;
+			SimpleFeature feature = writer.next();
+			for (int i = 0; i < columns.length; i++) {
+				feature.setAttribute(i, value(i));
+			}
+			writer.write();
+			count++;
+		}
+		return count;
+	}
+
+	public void close() {
+		try {
+			in.close();
+		} catch (IOException e) {
+			throw new RuntimeException("Could not close CSV input", e);
+		}
+	}
+
+	private Object value(int attribute) {
+		if (attribute == geometryIndex) {
+			/* Longitude (= x coord) first ! */
+			return geometryFactory.createPoint(new Coordinate(parseDouble(lonColumn), parseDouble(latColumn)));
+		}
+		int column = columns[attribute];
+		if (column >= fields) {
+			throw new IllegalArgumentException("Line " + line + " has no column " + column);
+		}
+		if (starts[column] == ends[column] && bindings[attribute] != String.class) {
+			return null;
+		}
+		Class<?> binding = bindings[attribute];
+		if (binding == Double.class) {
+			return parseDouble(column);
+		} else if (binding == Integer.class) {
+			long value = parseLong(column);
+			if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Line " + line + ": " + value + " is out of the Integer range");
+			}
+			return (int) value;
+		} else if (binding == Long.class) {
+			return parseLong(column);
+		} else if (binding == Float.class) {
+			return (float) parseDouble(column);
+		}
+		String text = text(column);
+		return binding == String.class ? text : Converters.convert(text, binding);
+	}
+
+	/*
+	 * Finds the next row and the boundaries of its fields, trimmed of blanks.
+	 */
+	private boolean readLine(boolean skipBlank) throws IOException {
+		while (true) {
+			int end = indexOfNewline();
+			if (end < 0) {
+				return false;
+			}
+			line++;
+			int start = pos;
+			pos = end + 1;
+			if (end > start && buf[end - 1] == '\r') {
+				end--;
+			}
+			split(start, end);
+			if (!skipBlank || fields > 1 || starts[0] < ends[0]) {
+				return true;
+			}
+		}
+	}
+
+	/*
+	 * Returns the end of the current line, reading more input as needed; the last
+	 * line of the input may end without a newline.
+	 */
+	private int indexOfNewline() throws IOException {
+		int i = pos;
+		while (true) {
+			for (; i < limit; i++) {
+				if (buf[i] == '\n') {
+					return i;
+				}
+			}
+			if (eof) {
+				return pos < limit ? limit : -1;
+			}
+			i -= pos;
+			fill();
+		}
+	}
+
+	private void fill() throws IOException {
+		if (pos > 0) {
+			System.arraycopy(buf, pos, buf, 0, limit - pos);
+			limit -= pos;
+			pos = 0;
+		}
+		if (limit == buf.length) {
+			buf = Arrays.copyOf(buf, buf.length * 2);
+		}
+		int n = in.read(buf, limit, buf.length - limit);
+		if (n < 0) {
+			eof = true;
+		} else {
+			limit += n;
+		}
+	}
+
+	private void split(int start, int end) {
+		fields = 0;
+		int fieldStart = start;
+		for (int i = start; i <= end; i++) {
+			if (i == end || buf[i] == separator) {
+				if (fields == starts.length) {
+					starts = Arrays.copyOf(starts, fields * 2);
+					ends = Arrays.copyOf(ends, fields * 2);
+				}
+				int s = fieldStart;
+				int e = i;
+				while (s < e && (buf[s] == ' ' || buf[s] == '\t')) {
+					s++;
+				}
+				while (e > s && (buf[e - 1] == ' ' || buf[e - 1] == '\t')) {
+					e--;
+				}
+				starts[fields] = s;
+				ends[fields] = e;
+				fields++;
+				fieldStart = i + 1;
+			}
+		}
+	}
+
+	private String text(int column) {
+		return new String(buf, starts[column], ends[column] - starts[column], StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Exact for up to 15 significant digits and a decimal exponent within 22;
+	 * anything else, including malformed numbers, goes through
+	 * Double.parseDouble.
+	 */
+	private double parseDouble(int column) {
+		if (column >= fields) {
+			throw new IllegalArgumentException("Line " + line + " has no column " + column);
+		}
+		int i = starts[column];
+		int end = ends[column];
+		boolean negative = i < end && buf[i] == '-';
+		if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int significant = 0;
+		int exponent = 0;
+		for (; i < end && significant <= 15; i++) {
+			int d = buf[i] - '0';
+			if (d < 0 || d > 9) {
+				break;
+			}
+			mantissa = mantissa * 10 + d;
+			digits++;
+			if (mantissa != 0) {
+				significant++;
+			}
+		}
+		if (i < end && buf[i] == '.') {
+			for (i++; i < end && significant <= 15; i++) {
+				int d = buf[i] - '0';
+				if (d < 0 || d > 9) {
+					break;
+				}
+				mantissa = mantissa * 10 + d;
+				digits++;
+				if (mantissa != 0) {
+					significant++;
+				}
+				exponent--;
+			}
+		}
+		if (i < end && (buf[i] == 'e' || buf[i] == 'E') && digits > 0) {
+			i++;
+			boolean negativeExponent = i < end && buf[i] == '-';
+			if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+				i++;
+			}
+			int e = 0;
+			int first = i;
+			for (; i < end && e < 10000; i++) {
+				int d = buf[i] - '0';
+				if (d < 0 || d > 9) {
+					break;
+				}
+				e = e * 10 + d;
+			}
+			if (i == first) {
+				return slowParseDouble(column);
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+		if (i < end || digits == 0 || significant > 15 || exponent < -22 || exponent > 22) {
+			return slowParseDouble(column);
+		}
+		double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+		return negative ? -value : value;
+	}
+
+	private double slowParseDouble(int column) {
+		try {
+			return Double.parseDouble(text(column));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Line " + line + ": not a number '" + text(column) + "'", e);
+		}
+	}
+
+	private long parseLong(int column) {
+		int i = starts[column];
+		int end = ends[column];
+		boolean negative = i < end && buf[i] == '-';
+		if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+			i++;
+		}
+		if (i == end || end - i > 18) {
+			return slowParseLong(column);
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			int d = buf[i] - '0';
+			if (d < 0 || d > 9) {
+				return slowParseLong(column);
+			}
+			value = value * 10 + d;
+		}
+		return negative ? -value : value;
+	}
+
+	private long slowParseLong(int column) {
+		try {
+			return Long.parseLong(text(column));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Line " + line + ": not an integer '" + text(column) + "'", e);
+		}
+	}
+}
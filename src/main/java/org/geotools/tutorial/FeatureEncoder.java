@@ -0,0 +1,175 @@
+package org.geotools.tutorial;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Writes features of one schema to a binary stream and reads them back, e.g.
+ * to spill them into a temporary file. Geometries are stored as WKB and the
+ * attributes with a one byte type tag; the schema itself is not written.
+ * <p>
+ * Not thread safe.
+ */
+class FeatureEncoder {
+
+	private static final int NULL = 0;
+	private static final int GEOMETRY = 1;
+	private static final int STRING = 2;
+	private static final int INTEGER = 3;
+	private static final int LONG = 4;
+	private static final int DOUBLE = 5;
+	private static final int FLOAT = 6;
+	private static final int BOOLEAN = 7;
+	private static final int DATE = 8;
+	private static final int DECIMAL = 9;
+	private static final int BIG_INTEGER = 10;
+
+	private final SimpleFeatureType schema;
+	private final SimpleFeatureBuilder builder;
+	private final WKBWriter wkbWriter = new WKBWriter(2);
+	private final WKBWriter wkbWriter3D = new WKBWriter(3);
+	private final WKBReader wkbReader;
+
+	FeatureEncoder(SimpleFeatureType schema) {
+		this(schema, new GeometryFactory());
+	}
+
+	FeatureEncoder(SimpleFeatureType schema, GeometryFactory geometryFactory) {
+		this.schema = schema;
+		this.builder = new SimpleFeatureBuilder(schema);
+		this.wkbReader = new WKBReader(geometryFactory);
+	}
+
+	void write(DataOutput out, SimpleFeature feature) throws IOException {
+		writeString(out, feature.getID());
+		for (int i = 0; i < schema.getAttributeCount(); i++) {
+			writeValue(out, feature.getAttribute(i));
+		}
+	}
+
+	SimpleFeature read(DataInput in) throws IOException {
+		String id = readString(in);
+		for (int i = 0; i < schema.getAttributeCount(); i++) {
+			builder.set(i, readValue(in));
+		}
+		return builder.buildFeature(id);
+	}
+
+	private void writeValue(DataOutput out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof Geometry) {
+			Geometry geometry = (Geometry) value;
+			// without z, a 2D coordinate takes 16 bytes instead of 24
+			Coordinate first = geometry.getCoordinate();
+			boolean hasZ = first != null && !Double.isNaN(first.getZ());
+			byte[] wkb = (hasZ ? wkbWriter3D : wkbWriter).write(geometry);
+			out.writeByte(GEOMETRY);
+			out.writeInt(wkb.length);
+			out.write(wkb);
+		} else if (value instanceof String) {
+			out.writeByte(STRING);
+			writeString(out, (String) value);
+		} else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			out.writeByte(INTEGER);
+			out.writeInt(((Number) value).intValue());
+		} else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Float) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Date) {
+			out.writeByte(DATE);
+			out.writeLong(((Date) value).getTime());
+		} else if (value instanceof BigDecimal) {
+			out.writeByte(DECIMAL);
+			writeString(out, value.toString());
+		} else if (value instanceof BigInteger) {
+			out.writeByte(BIG_INTEGER);
+			writeString(out, value.toString());
+		} else {
+			// anything else is converted back by the feature builder
+			out.writeByte(STRING);
+			writeString(out, value.toString());
+		}
+	}
+
+	private Object readValue(DataInput in) throws IOException {
+		int tag = in.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case GEOMETRY:
+			byte[] wkb = new byte[in.readInt()];
+			in.readFully(wkb);
+			try {
+				return wkbReader.read(wkb);
+			} catch (ParseException e) {
+				throw new IOException("Could not read geometry", e);
+			}
+		case STRING:
+			return readString(in);
+		case INTEGER:
+			return in.readInt();
+		case LONG:
+			return in.readLong();
+		case DOUBLE:
+			return in.readDouble();
+		case FLOAT:
+			return in.readFloat();
+		case BOOLEAN:
+			return in.readBoolean();
+		case DATE:
+			return new Date(in.readLong());
+		case DECIMAL:
+			return new BigDecimal(readString(in));
+		case BIG_INTEGER:
+			return new BigInteger(readString(in));
+		default:
+			throw new IOException("Unknown value tag " + tag);
+		}
+	}
+
+	/* unlike writeUTF, not limited to 64K */
+	private static void writeString(DataOutput out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(utf8.length);
+		out.write(utf8);
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] utf8 = new byte[length];
+		in.readFully(utf8);
+		return new String(utf8, StandardCharsets.UTF_8);
+	}
+}
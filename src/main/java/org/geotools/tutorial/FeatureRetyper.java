@@ -0,0 +1,60 @@
+package org.geotools.tutorial;
+
+import java.util.List;
+
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+
+/**
+ * Copies features of one schema into features of another schema by attribute
+ * position.
+ * <p>
+ * The attribute names are resolved once, when the retyper is built, so copying
+ * a feature is a plain loop over an index array. The default geometry of the
+ * target is always filled from the default geometry of the source, whatever
+ * its name (e.g. "geometry" becoming "the_geom" for shapefiles). Target
+ * attributes missing from the source are set to null.
+ */
+public class FeatureRetyper {
+	private final SimpleFeatureType source;
+	private final SimpleFeatureType target;
+
+	/* for each target attribute, the index of the source attribute or -1 */
+	private final int[] sourceIndex;
+
+	public FeatureRetyper(SimpleFeatureType source, SimpleFeatureType target) {
+		this.source = source;
+		this.target = target;
+
+		List<AttributeDescriptor> descriptors = target.getAttributeDescriptors();
+		sourceIndex = new int[descriptors.size()];
+		for (int i = 0; i < sourceIndex.length; i++) {
+			AttributeDescriptor descriptor = descriptors.get(i);
+			if (descriptor == target.getGeometryDescriptor() && source.getGeometryDescriptor() != null) {
+				sourceIndex[i] = source.indexOf(source.getGeometryDescriptor().getName());
+			} else {
+				sourceIndex[i] = source.indexOf(descriptor.getLocalName());
+			}
+		}
+	}
+
+	public SimpleFeatureType getSource() {
+		return source;
+	}
+
+	public SimpleFeatureType getTarget() {
+		return target;
+	}
+
+	/**
+	 * Copies the attribute values of {@code from} into {@code to}, which is
+	 * usually the feature returned by a FeatureWriter. Values are not duplicated.
+	 */
+	public void retype(SimpleFeature from, SimpleFeature to) {
+		for (int i = 0; i < sourceIndex.length; i++) {
+			int index = sourceIndex[i];
+			to.setAttribute(i, index < 0 ? null : from.getAttribute(index));
+		}
+	}
+}
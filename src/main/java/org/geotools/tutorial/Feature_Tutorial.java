@@ -1,24 +1,16 @@
 package org.geotools.tutorial;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import javax.swing.UIManager;
 import org.geotools.data.DataUtilities;
-import org.geotools.data.DefaultTransaction;
-import org.geotools.data.Transaction;
-import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.FeatureWriter;
 import org.geotools.data.shapefile.ShapefileDataStore;
 import org.geotools.data.shapefile.ShapefileDataStoreFactory;
-import org.geotools.data.simple.SimpleFeatureCollection;
-import org.geotools.data.simple.SimpleFeatureSource;
-import org.geotools.data.simple.SimpleFeatureStore;
-import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.geometry.jts.JTSFactoryFinder;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
@@ -45,6 +37,11 @@ public class Feature_Tutorial {
 		if (file == null) {
 			return;
 		}
+		/* more than one thread parses the file in parallel; see ParallelCsvPointReader */
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+		boolean ordered = args.length > 1 ? Boolean.parseBoolean(args[1]) : true;
+		/* keep all points in memory by column first; see ColumnarPointFeatureCollection */
+		boolean columnar = args.length > 2 && "columnar".equals(args[2]);
 
 		final SimpleFeatureType TYPE = DataUtilities.createType("Location", "the_geom:Point:srid=4326," + // <- the geometry attribute: Point type
 				"name:String," + // <- a String attribute
@@ -52,48 +49,12 @@ public class Feature_Tutorial {
 		);
 		LOGGER.info("TYPE:" + TYPE);
 
-		/*
-		 * A list to collect features as we create them.
-		 */
-		List<SimpleFeature> features = new ArrayList<>();
-
 		/*
 		 * GeometryFactory will be used to create the geometry attribute of each
 		 * feature, using a Point object for the location.
 		 */
 		GeometryFactory geometryFactory = JTSFactoryFinder.getGeometryFactory();
 
-		SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(TYPE);
-
-		BufferedReader reader = new BufferedReader(new FileReader(file));
-		try {
-			/* First line of the data file is the header */
-			String line = reader.readLine();
-			LOGGER.info("Header: " + line);
-
-			for (line = reader.readLine(); line != null; line = reader.readLine()) {
-				if (line.trim().length() > 0) { // skip blank lines
-					String tokens[] = line.split("\\,");
-
-					double latitude = Double.parseDouble(tokens[0]);
-					double longitude = Double.parseDouble(tokens[1]);
-					String name = tokens[2].trim();
-					int number = Integer.parseInt(tokens[3].trim());
-
-					/* Longitude (= x coord) first ! */
-					Point point = geometryFactory.createPoint(new Coordinate(longitude, latitude));
-
-					featureBuilder.add(point);
-					featureBuilder.add(name);
-					featureBuilder.add(number);
-					SimpleFeature feature = featureBuilder.buildFeature(null);
-					features.add(feature);
-				}
-			}
-		} finally {
-			reader.close();
-		}
-
 		/*
 		 * Get an output file name and create the new shapefile
 		 */
@@ -112,14 +73,8 @@ public class Feature_Tutorial {
 		 */
 		newDataStore.createSchema(TYPE);
 
-		/*
-		 * Write the features to the shapefile
-		 */
-		Transaction transaction = new DefaultTransaction("create");
-
 		String typeName = newDataStore.getTypeNames()[0];
-		SimpleFeatureSource featureSource = newDataStore.getFeatureSource(typeName);
-		SimpleFeatureType SHAPE_TYPE = featureSource.getSchema();
+		SimpleFeatureType SHAPE_TYPE = newDataStore.getSchema(typeName);
 		/*
 		 * The Shapefile format has a couple limitations: - "the_geom" is always first,
 		 * and used for the geometry attribute name - "the_geom" must be of type Point,
@@ -132,28 +87,57 @@ public class Feature_Tutorial {
 		 */
 		LOGGER.info("SHAPE:" + SHAPE_TYPE);
 
-		if (featureSource instanceof SimpleFeatureStore) {
-			SimpleFeatureStore featureStore = (SimpleFeatureStore) featureSource;
-			/*
-			 * SimpleFeatureStore has a method to add features from a
-			 * SimpleFeatureCollection object, so we use the ListFeatureCollection class to
-			 * wrap our list of features.
-			 */
-			SimpleFeatureCollection collection = new ListFeatureCollection(TYPE, features);
-			featureStore.setTransaction(transaction);
-			try {
-				featureStore.addFeatures(collection);
-				transaction.commit();
-			} catch (Exception problem) {
-				problem.printStackTrace();
-				transaction.rollback();
-			} finally {
-				transaction.close();
+		/*
+		 * Each row goes straight from the CSV file into the shapefile, so memory use
+		 * does not grow with the number of rows. The shapefile store can not
+		 * transact, so a DefaultTransaction would only collect every feature in
+		 * memory until the commit; the batched writer writes them as they come and
+		 * logs the throughput of each batch.
+		 */
+		try (FeatureWriter<SimpleFeatureType, SimpleFeature> writer = new BatchedFeatureWriter(newDataStore,
+		    typeName)) {
+			long count = 0;
+			if (columnar) {
+				/*
+				 * A few dozen bytes per point instead of a Point, a feature and boxed
+				 * values, so large files fit in memory, e.g. to be queried through
+				 * getFeatureSource() before they are written.
+				 */
+				ColumnarPointFeatureCollection points = new ColumnarPointFeatureCollection(TYPE, geometryFactory);
+				try (CsvPointReader csv = new CsvPointReader(new FileInputStream(file), TYPE, 0, 1, true, ',',
+				    geometryFactory)) {
+					LOGGER.info("Header: " + csv.getHeader());
+					points.addAll(csv);
+				}
+				points.trimToSize();
+				LOGGER.info("Read " + points.size() + " points within " + points.getBounds());
+				try (SimpleFeatureIterator features = points.features()) {
+					while (features.hasNext()) {
+						writer.next().setAttributes(features.next().getAttributes());
+						writer.write();
+						count++;
+					}
+				}
+			} else if (threads > 1) {
+				try (ParallelCsvPointReader csv = new ParallelCsvPointReader(file, TYPE, 0, 1, true, ',',
+				    geometryFactory, threads, ordered, ParallelCsvPointReader.DEFAULT_REGION_BYTES)) {
+					LOGGER.info("Header: " + csv.getHeader());
+					while (csv.hasNext()) {
+						writer.next().setAttributes(csv.next().getAttributes());
+						writer.write();
+						count++;
+					}
+				}
+			} else {
+				try (CsvPointReader csv = new CsvPointReader(new FileInputStream(file), TYPE, 0, 1, true, ',',
+				    geometryFactory)) {
+					LOGGER.info("Header: " + csv.getHeader());
+					count = csv.copyTo(writer);
+				}
 			}
-			//System.exit(0); // success!
-		} else {
-			System.out.println(typeName + " does not support read/write access");
-			//System.exit(1);
+			LOGGER.info("Wrote " + count + " features to " + newFile);
+		} finally {
+			newDataStore.dispose();
 		}
 
 		WKTReader reader2 = new WKTReader(geometryFactory);
@@ -0,0 +1,603 @@
+package org.geotools.tutorial;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A small pull tokenizer for GeoJSON documents.
+ * <p>
+ * It works on the raw UTF-8 bytes and never builds a tree or feature objects.
+ * Names and strings are only decoded when {@link #stringValue()} is called, so
+ * callers can inspect a document (compare names, measure strings, classify
+ * numbers) without allocating per token. Commas and colons are consumed as
+ * separators; a string followed by a colon is reported as a {@link Token#NAME}.
+ * <p>
+ * A file can also be read through memory-mapped windows of a
+ * {@link FileChannel}, in which case numbers are parsed straight from the
+ * mapped bytes.
+ */
+public class GeoJsonTokenizer implements Closeable {
+
+	public enum Token {
+		START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, NAME, STRING, NUMBER, TRUE, FALSE, NULL, END
+	}
+
+	private static final int DEFAULT_BUFFER_BYTES = 64 * 1024;
+
+	private static final int DEFAULT_WINDOW_BYTES = 64 * 1024 * 1024;
+
+	/* exactly representable powers of ten, for the fast path of doubleValue() */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+	    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/* exactly one of in and channel is set */
+	private final InputStream in;
+	private final FileChannel channel;
+	private final long size;
+	private int window;
+
+	/* bytes buf[0, limit) are the file bytes starting at bufOffset */
+	private ByteBuffer buf;
+	private long bufOffset;
+	private int pos;
+	private int limit;
+	private boolean eof;
+
+	/* start of the current token; bytes from here on survive a refill */
+	private int mark;
+
+	private Token token;
+	private long tokenOffset;
+	private int valueStart;
+	private int valueEnd;
+	private boolean valueEscaped;
+	private boolean valueIntegral;
+	private int depth;
+
+	public GeoJsonTokenizer(InputStream in) {
+		this(in, DEFAULT_BUFFER_BYTES);
+	}
+
+	/* for tests, to move the buffer boundaries between the tokens */
+	GeoJsonTokenizer(InputStream in, int bufferBytes) {
+		this.in = in;
+		this.channel = null;
+		this.size = -1;
+		this.buf = ByteBuffer.allocate(bufferBytes);
+	}
+
+	/**
+	 * Reads the file through read-only memory-mapped windows, so files larger
+	 * than 2 GB are supported as well.
+	 */
+	public GeoJsonTokenizer(FileChannel channel) throws IOException {
+		this(channel, DEFAULT_WINDOW_BYTES);
+	}
+
+	/* for tests, to move the window boundaries between the tokens */
+	GeoJsonTokenizer(FileChannel channel, int windowBytes) throws IOException {
+		this.in = null;
+		this.channel = channel;
+		this.size = channel.size();
+		this.window = windowBytes;
+		this.buf = ByteBuffer.allocate(0);
+	}
+
+	/**
+	 * @return the next token, or {@link Token#END} at the end of the input
+	 */
+	public Token next() throws IOException {
+		mark = pos;
+		int c = skipSeparators();
+		mark = pos;
+		tokenOffset = bufOffset + pos;
+		if (c < 0) {
+			return token = Token.END;
+		}
+		switch (c) {
+		case '{':
+			pos++;
+			depth++;
+			return token = Token.START_OBJECT;
+		case '}':
+			pos++;
+			depth--;
+			return token = Token.END_OBJECT;
+		case '[':
+			pos++;
+			depth++;
+			return token = Token.START_ARRAY;
+		case ']':
+			pos++;
+			depth--;
+			return token = Token.END_ARRAY;
+		case '"':
+			readString();
+			if (skipWhitespace() == ':') {
+				pos++;
+				return token = Token.NAME;
+			}
+			return token = Token.STRING;
+		case 't':
+			readLiteral();
+			return token = Token.TRUE;
+		case 'f':
+			readLiteral();
+			return token = Token.FALSE;
+		case 'n':
+			readLiteral();
+			return token = Token.NULL;
+		default:
+			if (c == '-' || (c >= '0' && c <= '9')) {
+				readNumber();
+				return token = Token.NUMBER;
+			}
+			throw new IOException("Unexpected character '" + (char) c + "' at offset " + tokenOffset);
+		}
+	}
+
+	public Token getToken() {
+		return token;
+	}
+
+	/**
+	 * @return the byte offset of the current token in the input
+	 */
+	public long getOffset() {
+		return tokenOffset;
+	}
+
+	/**
+	 * Continues reading a mapped file at {@code offset}, which must be between two
+	 * tokens, e.g. an offset from {@link #getOffset()}.
+	 *
+	 * @param depth
+	 *            nesting depth at that offset
+	 */
+	public void seek(long offset, int depth) {
+		if (channel == null) {
+			throw new IllegalStateException("Only a mapped file can seek");
+		}
+		buf = ByteBuffer.allocate(0);
+		bufOffset = offset;
+		pos = 0;
+		limit = 0;
+		mark = 0;
+		valueStart = 0;
+		valueEnd = 0;
+		eof = false;
+		token = null;
+		this.depth = depth;
+	}
+
+	/**
+	 * @return nesting depth of objects and arrays after the current token
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * If the current token starts an object or an array, moves to its matching
+	 * end token. Does nothing for other tokens.
+	 */
+	public void skipChildren() throws IOException {
+		if (token != Token.START_OBJECT && token != Token.START_ARRAY) {
+			return;
+		}
+		int target = depth - 1;
+		while (depth > target) {
+			if (next() == Token.END) {
+				throw new IOException("Unexpected end of input");
+			}
+		}
+	}
+
+	/**
+	 * Returns the JSON text of the current value. If the current token starts an
+	 * object or an array, moves to its matching end token like
+	 * {@link #skipChildren()} and returns the text of the whole value, without
+	 * the whitespace between its tokens.
+	 *
+	 * @param maxBytes
+	 *            the maximum number of UTF-8 bytes of the text; the rest is
+	 *            dropped, but the value is still read to its end
+	 */
+	public String valueText(int maxBytes) throws IOException {
+		ByteArrayOutputStream text = new ByteArrayOutputStream();
+		appendToken(text, maxBytes);
+		if (token == Token.START_OBJECT || token == Token.START_ARRAY) {
+			int target = depth - 1;
+			Token previous = token;
+			while (depth > target) {
+				if (next() == Token.END) {
+					throw new IOException("Unexpected end of input");
+				}
+				// the comma between two values was consumed as a separator
+				if (previous != Token.START_OBJECT && previous != Token.START_ARRAY && previous != Token.NAME
+				    && token != Token.END_OBJECT && token != Token.END_ARRAY && text.size() < maxBytes) {
+					text.write(',');
+				}
+				appendToken(text, maxBytes);
+				previous = token;
+			}
+		}
+		byte[] bytes = text.toByteArray();
+		int length = Math.min(bytes.length, maxBytes);
+		// do not cut a character in two
+		while (length > 0 && length < bytes.length && (bytes[length] & 0xc0) == 0x80) {
+			length--;
+		}
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Appends the bytes of the current token, which are all still in the buffer.
+	 * A name includes its colon; the whitespace read after a string or a name is
+	 * left out.
+	 */
+	private void appendToken(ByteArrayOutputStream text, int maxBytes) {
+		if (text.size() >= maxBytes) {
+			return;
+		}
+		int start = (int) (tokenOffset - bufOffset);
+		int end = token == Token.STRING || token == Token.NAME ? valueEnd + 1 : pos;
+		text.write(bytes(start, end - start), 0, end - start);
+		if (token == Token.NAME) {
+			text.write(':');
+		}
+	}
+
+	/**
+	 * Compares the current name or string with an ASCII constant without decoding
+	 * it.
+	 */
+	public boolean nameEquals(String ascii) {
+		int length = valueEnd - valueStart;
+		if (valueEscaped || length != ascii.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (buf.get(valueStart + i) != ascii.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compares the current name or string with the UTF-8 bytes of a name without
+	 * decoding it.
+	 */
+	public boolean nameEquals(byte[] utf8) {
+		int length = valueEnd - valueStart;
+		if (valueEscaped || length != utf8.length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (buf.get(valueStart + i) != utf8[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the decoded value of the current name or string
+	 */
+	public String stringValue() {
+		String raw = new String(bytes(valueStart, valueEnd - valueStart), StandardCharsets.UTF_8);
+		return valueEscaped ? unescape(raw) : raw;
+	}
+
+	/**
+	 * @return the number of UTF-8 bytes of the current string once decoded
+	 */
+	public int stringByteLength() {
+		if (!valueEscaped) {
+			return valueEnd - valueStart;
+		}
+		return stringValue().getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	/**
+	 * @return the length of the current token text, e.g. the digits of a number
+	 */
+	public int textLength() {
+		return valueEnd - valueStart;
+	}
+
+	/**
+	 * @return true if the current number has no fraction or exponent
+	 */
+	public boolean isIntegral() {
+		return valueIntegral;
+	}
+
+	/**
+	 * Parses the current number without creating a String when it has at most
+	 * 15 significant digits and a decimal exponent within 22. The result is then
+	 * exact; other numbers fall back to {@link Double#parseDouble(String)}.
+	 */
+	public double doubleValue() {
+		int i = valueStart;
+		boolean negative = buf.get(i) == '-';
+		if (negative) {
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		for (; i < valueEnd; i++) {
+			int d = buf.get(i) - '0';
+			if (d < 0 || d > 9) {
+				break;
+			}
+			mantissa = mantissa * 10 + d;
+			if (mantissa != 0) {
+				digits++;
+			}
+		}
+		if (i < valueEnd && buf.get(i) == '.') {
+			for (i++; i < valueEnd; i++) {
+				int d = buf.get(i) - '0';
+				if (d < 0 || d > 9) {
+					break;
+				}
+				mantissa = mantissa * 10 + d;
+				if (mantissa != 0) {
+					digits++;
+				}
+				exponent--;
+			}
+		}
+		if (i < valueEnd) {
+			// 'e' or 'E'
+			i++;
+			boolean negativeExponent = false;
+			if (i < valueEnd && (buf.get(i) == '-' || buf.get(i) == '+')) {
+				negativeExponent = buf.get(i) == '-';
+				i++;
+			}
+			int e = 0;
+			for (; i < valueEnd && e < 10000; i++) {
+				e = e * 10 + (buf.get(i) - '0');
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+		if (digits > 15 || exponent < -22 || exponent > 22) {
+			return Double.parseDouble(text());
+		}
+		double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * @return the current integral number; other numbers are truncated
+	 */
+	public long longValue() {
+		if (!valueIntegral || valueEnd - valueStart > 18) {
+			return (long) doubleValue();
+		}
+		int i = valueStart;
+		boolean negative = buf.get(i) == '-';
+		if (negative) {
+			i++;
+		}
+		long value = 0;
+		for (; i < valueEnd; i++) {
+			value = value * 10 + (buf.get(i) - '0');
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * @return the text of the current number or literal
+	 */
+	public String text() {
+		return new String(bytes(valueStart, valueEnd - valueStart), StandardCharsets.US_ASCII);
+	}
+
+	public void close() throws IOException {
+		if (in != null) {
+			in.close();
+		} else {
+			channel.close();
+		}
+	}
+
+	private int skipSeparators() throws IOException {
+		while (true) {
+			if (pos >= limit && !fill()) {
+				return -1;
+			}
+			int b = buf.get(pos) & 0xff;
+			if (b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == ',' || b == ':') {
+				pos++;
+			} else if (b == 0xEF && bufOffset + pos == 0) {
+				pos += 3; // UTF-8 byte order mark
+			} else {
+				return b;
+			}
+		}
+	}
+
+	private int skipWhitespace() throws IOException {
+		while (true) {
+			if (pos >= limit && !fill()) {
+				return -1;
+			}
+			int b = buf.get(pos);
+			if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+				pos++;
+			} else {
+				return b;
+			}
+		}
+	}
+
+	private void readString() throws IOException {
+		pos++; // opening quote
+		valueStart = pos;
+		valueEscaped = false;
+		boolean escape = false;
+		while (true) {
+			if (pos >= limit && !fill()) {
+				throw new IOException("Unterminated string at offset " + tokenOffset);
+			}
+			byte b = buf.get(pos);
+			if (escape) {
+				escape = false;
+			} else if (b == '\\') {
+				escape = true;
+				valueEscaped = true;
+			} else if (b == '"') {
+				valueEnd = pos;
+				pos++;
+				return;
+			}
+			pos++;
+		}
+	}
+
+	private void readNumber() throws IOException {
+		valueStart = pos;
+		valueIntegral = true;
+		while (pos < limit || fill()) {
+			byte b = buf.get(pos);
+			if (b == '.' || b == 'e' || b == 'E') {
+				valueIntegral = false;
+			} else if (!(b == '-' || b == '+' || (b >= '0' && b <= '9'))) {
+				break;
+			}
+			pos++;
+		}
+		valueEnd = pos;
+	}
+
+	private void readLiteral() throws IOException {
+		valueStart = pos;
+		while (pos < limit || fill()) {
+			byte b = buf.get(pos);
+			if (b < 'a' || b > 'z') {
+				break;
+			}
+			pos++;
+		}
+		valueEnd = pos;
+		valueEscaped = false;
+	}
+
+	/*
+	 * Drops the bytes before the current token and reads more input behind it.
+	 * All buffer positions are shifted along with the data.
+	 */
+	private boolean fill() throws IOException {
+		if (eof) {
+			return false;
+		}
+		if (channel != null) {
+			return remap();
+		}
+		int keep = mark;
+		if (keep > 0) {
+			byte[] array = buf.array();
+			System.arraycopy(array, keep, array, 0, limit - keep);
+			shift(keep);
+		}
+		if (limit == buf.capacity()) {
+			ByteBuffer larger = ByteBuffer.allocate(buf.capacity() * 2);
+			System.arraycopy(buf.array(), 0, larger.array(), 0, limit);
+			buf = larger;
+		}
+		int n = in.read(buf.array(), limit, buf.capacity() - limit);
+		if (n < 0) {
+			eof = true;
+			return false;
+		}
+		limit += n;
+		return true;
+	}
+
+	/*
+	 * Maps the next window of the file, starting at the current token. The window
+	 * grows if a single token does not fit into it.
+	 */
+	private boolean remap() throws IOException {
+		long start = bufOffset + mark;
+		long end = bufOffset + limit;
+		if (end >= size) {
+			eof = true;
+			return false;
+		}
+		if (end - start >= window) {
+			window = (int) Math.min(Integer.MAX_VALUE, window * 2L);
+		}
+		long length = Math.min(window, size - start);
+		buf = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+		shift(mark);
+		limit = (int) length;
+		return true;
+	}
+
+	private void shift(int bytes) {
+		bufOffset += bytes;
+		limit -= bytes;
+		pos -= bytes;
+		mark -= bytes;
+		valueStart -= bytes;
+		valueEnd -= bytes;
+	}
+
+	private byte[] bytes(int start, int length) {
+		byte[] bytes = new byte[length];
+		ByteBuffer view = buf.duplicate();
+		view.position(start);
+		view.get(bytes);
+		return bytes;
+	}
+
+	private static String unescape(String raw) {
+		StringBuilder sb = new StringBuilder(raw.length());
+		for (int i = 0; i < raw.length(); i++) {
+			char c = raw.charAt(i);
+			if (c != '\\' || i + 1 == raw.length()) {
+				sb.append(c);
+				continue;
+			}
+			char e = raw.charAt(++i);
+			switch (e) {
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'u':
+				if (i + 4 < raw.length()) {
+					sb.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+					i += 4;
+				}
+				break;
+			default:
+				sb.append(e);
+				break;
+			}
+		}
+		return sb.toString();
+	}
+}
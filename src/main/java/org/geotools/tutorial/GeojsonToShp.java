@@ -6,21 +6,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.net.MalformedURLException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.geotools.data.DataUtilities;
-import org.geotools.data.DefaultTransaction;
 import org.geotools.data.FeatureStore;
-import org.geotools.data.Transaction;
-import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.FeatureWriter;
 import org.geotools.data.shapefile.ShapefileDataStore;
 import org.geotools.data.shapefile.ShapefileDataStoreFactory;
-import org.geotools.data.simple.SimpleFeatureCollection;
-import org.geotools.data.simple.SimpleFeatureSource;
-import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
 import org.geotools.feature.NameImpl;
@@ -29,21 +25,37 @@ import org.geotools.feature.type.GeometryDescriptorImpl;
 import org.geotools.feature.type.GeometryTypeImpl;
 import org.geotools.geojson.feature.FeatureJSON;
 import org.geotools.geojson.geom.GeometryJSON;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.AttributeType;
 import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.feature.type.GeometryType;
-import org.opengis.filter.identity.FeatureId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
  
 
 
 public class GeojsonToShp {
+	final static private Logger LOGGER = LoggerFactory.getLogger(GeojsonToShp.class);
+
+	/* decimals kept by GeometryJSON; follows the grid size when one is set */
+	private int decimals = 15;
+
+	/* grid size coordinates are snapped to while decoding, or 0 for full precision */
+	private double gridSize;
+
+	/* write the single file conversions in Hilbert order */
+	private boolean hilbertSorted;
+
 	public static void main(String[] args) throws IOException {
 		GeojsonToShp g2s = new GeojsonToShp();
 		//g2s.toShp(new File("c:\\example\\input\\250.json"));
-		g2s.toShp(new File("c:\\example\\input\\11140.geojson"), new File("c:\\example\\output\\test2.shp"));
+		g2s.toShpStreaming(new File("c:\\example\\input\\11140.geojson"), new File("c:\\example\\output\\test2.shp"));
 	}
 
 	public void toShp(File geojson, File output) throws IOException {
@@ -57,7 +69,6 @@ public class GeojsonToShp {
 		ShapefileDataStore shpDataStore = (ShapefileDataStore) dataStoreFactory.createNewDataStore(params);
 
 		InputStream in = new FileInputStream(geojson);
-		int decimals = 15;
 		GeometryJSON gjson = new GeometryJSON(decimals);
 		FeatureJSON fjson = new FeatureJSON(gjson);
 
@@ -68,17 +79,180 @@ public class GeojsonToShp {
 		WriteShapefile writer = new WriteShapefile(shpFile);
         writer.writeFeatures(fc);
 	}
+
+	/**
+	 * Snaps coordinates to a grid while they are decoded by the streaming
+	 * conversions and keeps them as compact grid offsets in memory; see
+	 * {@link QuantizedCoordinateSequence}. The FeatureJSON based conversions use
+	 * the matching number of decimals.
+	 *
+	 * @param gridSize
+	 *            grid cell size in CRS units, e.g. 0.01 for 1 cm, or 0 to keep
+	 *            full precision
+	 */
+	public void setGridSize(double gridSize) {
+		this.gridSize = gridSize;
+		this.decimals = gridSize > 0 ? (int) Math.max(0, Math.min(15, Math.ceil(-Math.log10(gridSize)))) : 15;
+	}
+
+	public double getGridSize() {
+		return gridSize;
+	}
+
+	/**
+	 * @param decimals
+	 *            decimals kept by GeometryJSON in the FeatureJSON based
+	 *            conversions
+	 */
+	public void setDecimals(int decimals) {
+		this.decimals = decimals;
+	}
+
+	public int getDecimals() {
+		return decimals;
+	}
+
+	/**
+	 * Sorts the output of {@link #toShpStreaming} and {@link #toShpParallel}
+	 * along a Hilbert curve; see {@link WriteShapefile#setHilbertSorted}.
+	 */
+	public void setHilbertSorted(boolean hilbertSorted) {
+		this.hilbertSorted = hilbertSorted;
+	}
+
+	/**
+	 * Converts without loading the GeoJSON into memory. The input is read twice:
+	 * once to work out the schema and once to stream the features into the
+	 * shapefile, so peak heap does not grow with the size of the input. Both
+	 * passes read the memory-mapped file; see {@link MappedGeoJsonReader}.
+	 */
+	public long toShpStreaming(File geojson, File output) throws IOException {
+		// a sorted output lays the curve over the data, found while inferring
+		Envelope bounds = hilbertSorted ? new Envelope() : null;
+		SimpleFeatureType schema = readSchema(geojson, bounds);
+
+		WriteShapefile writer = new WriteShapefile(output);
+		writer.setHilbertSorted(hilbertSorted);
+		try (MappedGeoJsonReader features = new MappedGeoJsonReader(geojson, schema,
+		    createGeometryFactory(gridSize))) {
+			return writer.writeFeatures(schema, features, bounds);
+		}
+	}
+
+	/**
+	 * Like {@link #toShpStreaming(File, File)}, but the features are decoded on
+	 * {@code threads} worker threads. They are still written by a single writer in
+	 * their original order.
+	 */
+	public long toShpParallel(File geojson, File output, int threads) throws IOException {
+		Envelope bounds = hilbertSorted ? new Envelope() : null;
+		SimpleFeatureType schema = readSchema(geojson, bounds);
+
+		WriteShapefile writer = new WriteShapefile(output);
+		writer.setHilbertSorted(hilbertSorted);
+		try (ParallelGeojsonReader features = new ParallelGeojsonReader(geojson, schema, threads, decimals)) {
+			return writer.writeFeatures(schema, features, bounds);
+		}
+	}
+
+	/**
+	 * Streams the conversion into {@code output_001.shp}, {@code output_002.shp},
+	 * ... instead of a single shapefile, starting a new part before the .shp or
+	 * .dbf file reaches {@code maxBytes} or a part holds {@code maxFeatures}.
+	 *
+	 * @return the part files written
+	 */
+	public List<File> toShpRolling(File geojson, File output, long maxBytes, long maxFeatures) throws IOException {
+		SimpleFeatureType schema = readSchema(geojson);
+
+		try (RollingShapefileWriter writer = new RollingShapefileWriter(output, schema, maxBytes, maxFeatures);
+		    MappedGeoJsonReader features = new MappedGeoJsonReader(geojson, schema,
+		        createGeometryFactory(gridSize))) {
+			writer.writeFeatures(features);
+			return writer.getParts();
+		}
+	}
+
+	/**
+	 * Converts in batches of {@code batchFeatures} features, each committed as a
+	 * part file of {@link #toShpRolling}. After every part a checkpoint is saved
+	 * next to the output; if one is found on start, the conversion continues
+	 * behind the last completed part instead of starting over, unless the input
+	 * has changed since. The checkpoint is removed once the conversion has
+	 * finished.
+	 *
+	 * @return the part files written
+	 */
+	public List<File> toShpResumable(File geojson, File output, long batchFeatures) throws IOException {
+		File checkpointFile = new File(output.getPath() + ".checkpoint");
+		Checkpoint checkpoint = Checkpoint.load(checkpointFile);
+		if (checkpoint != null && !checkpoint.isValidFor(geojson)) {
+			LOGGER.warn(geojson + " has changed since " + checkpoint + ", starting over");
+			checkpoint = null;
+		}
+		SimpleFeatureType schema = readSchema(geojson);
+
+		List<File> parts;
+		try (RollingShapefileWriter writer = new RollingShapefileWriter(output, schema,
+		    RollingShapefileWriter.DEFAULT_MAX_BYTES, batchFeatures);
+		    MappedGeoJsonReader features = new MappedGeoJsonReader(geojson, schema, createGeometryFactory(gridSize),
+		        checkpoint != null ? checkpoint.getOffset() : -1)) {
+			if (checkpoint != null) {
+				LOGGER.info("Resuming " + geojson + " from " + checkpoint);
+				writer.resume(checkpoint.getParts(), checkpoint.getCount());
+			}
+			// called before the feature just read is written, so that is where to resume
+			writer.setPartListener((part, count) -> new Checkpoint(features.getFeatureOffset(), count,
+			    writer.getParts().size(), part.getName(), geojson).save(checkpointFile));
+			writer.writeFeatures(features);
+			parts = writer.getParts();
+		}
+		// the last part is only committed once the writer is closed
+		Files.deleteIfExists(checkpointFile.toPath());
+		return parts;
+	}
+
+	static GeometryFactory createGeometryFactory(double gridSize) {
+		if (gridSize > 0) {
+			return QuantizedCoordinateSequenceFactory.createGeometryFactory(gridSize);
+		}
+		return new GeometryFactory(new PrecisionModel(), 0, PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+	}
+
+	/*
+	 * The schema is inferred from the tokens only, so working it out costs far
+	 * less than the conversion itself and no feature is kept in memory.
+	 */
+	static SimpleFeatureType readSchema(File geojson) throws IOException {
+		return readSchema(geojson, null);
+	}
+
+	/*
+	 * Also expands the bounds, if not null, to the positions of all features.
+	 */
+	static SimpleFeatureType readSchema(File geojson, Envelope bounds) throws IOException {
+		String name = geojson.getName();
+		int dot = name.lastIndexOf('.');
+		return new SchemaInference().infer(geojson, dot > 0 ? name.substring(0, dot) : name, bounds);
+	}
 	
 	
 	
-	public class WriteShapefile {
+	public static class WriteShapefile {
 		File outfile;
 		private ShapefileDataStore shpDataStore;
+		private boolean hilbertSorted;
 
 		public WriteShapefile(File f) {
-			outfile = f;
+			this(f, new ShapefileDataStoreFactory());
+		}
 
-			ShapefileDataStoreFactory dataStoreFactory = new ShapefileDataStoreFactory();
+		/**
+		 * @param dataStoreFactory
+		 *            factory shared between writers, e.g. by a batch conversion
+		 */
+		public WriteShapefile(File f, ShapefileDataStoreFactory dataStoreFactory) {
+			outfile = f;
 
 			Map<String, Serializable> params = new HashMap<String, Serializable>();
 			try {
@@ -97,105 +271,156 @@ public class GeojsonToShp {
 			}
 		}
 
+		/**
+		 * Writes the features in the order of a Hilbert curve through their
+		 * envelopes instead of the input order, so the records found through the
+		 * spatial index for a bounding box lie close together in the file. See
+		 * {@link HilbertSorter}.
+		 */
+		public void setHilbertSorted(boolean hilbertSorted) {
+			this.hilbertSorted = hilbertSorted;
+		}
+
 		public boolean writeFeatures(FeatureCollection<SimpleFeatureType, SimpleFeature> features) {
 
 			if (shpDataStore == null) {
 				throw new IllegalStateException("Datastore can not be null when writing");
 			}
-			SimpleFeatureType schema = features.getSchema();
-			GeometryDescriptor geom = schema.getGeometryDescriptor();
-			String oldGeomAttrib = "";
-			try {
+			try (FeatureIterator<SimpleFeature> iterator = features.features()) {
+				SimpleFeatureType schema = features.getSchema();
+				writeFeatures(schema, createShapeType(schema), iterator, hilbertSorted ? features.getBounds() : null);
+				return true;
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return false;
+		}
 
-				/*
-				 * Write the features to the shapefile
-				 */
-				Transaction transaction = new DefaultTransaction("create");
-
-				String typeName = shpDataStore.getTypeNames()[0];
-				SimpleFeatureSource featureSource = shpDataStore.getFeatureSource(typeName);
-
-				/*
-				 * The Shapefile format has a couple limitations: - "the_geom" is always
-				 * first, and used for the geometry attribute name - "the_geom" must be of
-				 * type Point, MultiPoint, MuiltiLineString, MultiPolygon - Attribute
-				 * names are limited in length - Not all data types are supported (example
-				 * Timestamp represented as Date)
-				 *
-				 * Because of this we have to rename the geometry element and then rebuild
-				 * the features to make sure that it is the first attribute.
-				 */
-
-				List<AttributeDescriptor> attributes = schema.getAttributeDescriptors();
-				GeometryType geomType = null;
-				List<AttributeDescriptor> attribs = new ArrayList<AttributeDescriptor>();
-				for (AttributeDescriptor attrib : attributes) {
-					AttributeType type = attrib.getType();
-					if (type instanceof GeometryType) {
-						geomType = (GeometryType) type;
-						oldGeomAttrib = attrib.getLocalName();
-					} else {
-						attribs.add(attrib);
-					}
+		/**
+		 * Writes the features one at a time through a {@link FeatureWriter}, so only
+		 * the feature currently being copied is held in memory.
+		 *
+		 * @param schema
+		 *            the schema of the source features
+		 * @param features
+		 *            the source features; closing it is left to the caller
+		 * @return the number of features written
+		 */
+		public long writeFeatures(SimpleFeatureType schema, FeatureIterator<SimpleFeature> features) throws IOException {
+			return writeFeatures(schema, createShapeType(schema), features);
+		}
+
+		/**
+		 * Same as {@link #writeFeatures(SimpleFeatureType, FeatureIterator)}, with
+		 * the bounds of the features for a sorted output, e.g. from
+		 * {@link SchemaInference}.
+		 *
+		 * @param bounds
+		 *            the extent the Hilbert curve is laid over, or {@code null}
+		 *            for the area of the CRS
+		 */
+		public long writeFeatures(SimpleFeatureType schema, FeatureIterator<SimpleFeature> features, Envelope bounds)
+		    throws IOException {
+			return writeFeatures(schema, createShapeType(schema), features, bounds);
+		}
+
+		/**
+		 * Same as {@link #writeFeatures(SimpleFeatureType, FeatureIterator)} with a
+		 * shapefile schema that was already built by {@link #createShapeType}.
+		 */
+		public long writeFeatures(SimpleFeatureType schema, SimpleFeatureType shpType,
+		    FeatureIterator<SimpleFeature> features) throws IOException {
+			return writeFeatures(schema, shpType, features, null);
+		}
+
+		/*
+		 * Without bounds, a sorted output lays the curve over the area of the CRS.
+		 */
+		private long writeFeatures(SimpleFeatureType schema, SimpleFeatureType shpType,
+		    FeatureIterator<SimpleFeature> features, Envelope bounds) throws IOException {
+			if (!hilbertSorted) {
+				return write(schema, shpType, features);
+			}
+			if (bounds == null || bounds.isNull()) {
+				bounds = HilbertSorter.defaultBounds(schema.getCoordinateReferenceSystem());
+			}
+			try (HilbertSorter sorter = new HilbertSorter(schema, bounds)) {
+				while (features.hasNext()) {
+					sorter.add(features.next());
+				}
+				try (SimpleFeatureIterator sorted = sorter.sorted()) {
+					return write(schema, shpType, sorted);
 				}
+			}
+		}
 
-				GeometryTypeImpl gt = new GeometryTypeImpl(new NameImpl("the_geom"), geomType.getBinding(),
-				    geomType.getCoordinateReferenceSystem(), geomType.isIdentified(), geomType.isAbstract(),
-				    geomType.getRestrictions(), geomType.getSuper(), geomType.getDescription());
-
-				GeometryDescriptor geomDesc = new GeometryDescriptorImpl(gt, new NameImpl("the_geom"), geom.getMinOccurs(),
-				    geom.getMaxOccurs(), geom.isNillable(), geom.getDefaultValue());
-
-				attribs.add(0, geomDesc);
-
-				SimpleFeatureType shpType = new SimpleFeatureTypeImpl(schema.getName(), attribs, geomDesc, schema.isAbstract(),
-				    schema.getRestrictions(), schema.getSuper(), schema.getDescription());
-
-				shpDataStore.createSchema(shpType);
-
-				if (featureSource instanceof SimpleFeatureStore) {
-					SimpleFeatureStore featureStore = (SimpleFeatureStore) featureSource;
-
-					List<SimpleFeature> feats = new ArrayList<SimpleFeature>();
-
-					FeatureIterator<SimpleFeature> features2 = features.features();
-					while (features2.hasNext()) {
-						SimpleFeature f = features2.next();
-						SimpleFeature reType =DataUtilities.reType(shpType, f, true);
-						//set the default Geom (the_geom) from the original Geom
-					    reType.setAttribute("the_geom", f.getAttribute(oldGeomAttrib));
-
-						feats.add(reType);
-					}
-					features2.close();
-					SimpleFeatureCollection collection = new ListFeatureCollection(shpType, feats);
-
-					featureStore.setTransaction(transaction);
-					try {
-						List<FeatureId> ids = featureStore.addFeatures(collection);
-						transaction.commit();
-					} catch (Exception problem) {
-						problem.printStackTrace();
-						transaction.rollback();
-					} finally {
-						transaction.close();
-					}
-					shpDataStore.dispose();
-					return true;
-				} else {
-					
-					transaction.close();
-					shpDataStore.dispose();
-					System.err.println("ShapefileStore not writable");
-					
-					return false;
+		private long write(SimpleFeatureType schema, SimpleFeatureType shpType, FeatureIterator<SimpleFeature> features)
+		    throws IOException {
+			if (shpDataStore == null) {
+				throw new IllegalStateException("Datastore can not be null when writing");
+			}
+			FeatureRetyper retyper = new FeatureRetyper(schema, shpType);
+			shpDataStore.createSchema(shpType);
+
+			String typeName = shpDataStore.getTypeNames()[0];
+			long count = 0;
+
+			/*
+			 * The shapefile store does not handle transactions itself, so writing with a
+			 * DefaultTransaction would keep every feature in an in-memory diff until
+			 * commit. The batched writer streams straight to the output files and reports
+			 * the throughput of every batch.
+			 */
+			try (FeatureWriter<SimpleFeatureType, SimpleFeature> writer = new BatchedFeatureWriter(shpDataStore,
+			    typeName)) {
+				while (features.hasNext()) {
+					SimpleFeature f = features.next();
+					retyper.retype(f, writer.next());
+					writer.write();
+					count++;
 				}
-			} catch (IOException e) {
-				e.printStackTrace();
+			} finally {
+				shpDataStore.dispose();
 			}
-			return false;
+			return count;
 		}
 
+		/*
+		 * The Shapefile format has a couple limitations: - "the_geom" is always
+		 * first, and used for the geometry attribute name - "the_geom" must be of
+		 * type Point, MultiPoint, MuiltiLineString, MultiPolygon - Attribute
+		 * names are limited in length - Not all data types are supported (example
+		 * Timestamp represented as Date)
+		 *
+		 * Because of this we have to rename the geometry element and then rebuild
+		 * the features to make sure that it is the first attribute.
+		 */
+		static SimpleFeatureType createShapeType(SimpleFeatureType schema) {
+			GeometryDescriptor geom = schema.getGeometryDescriptor();
+			List<AttributeDescriptor> attributes = schema.getAttributeDescriptors();
+			GeometryType geomType = null;
+			List<AttributeDescriptor> attribs = new ArrayList<AttributeDescriptor>();
+			for (AttributeDescriptor attrib : attributes) {
+				AttributeType type = attrib.getType();
+				if (type instanceof GeometryType) {
+					geomType = (GeometryType) type;
+				} else {
+					attribs.add(attrib);
+				}
+			}
+
+			GeometryTypeImpl gt = new GeometryTypeImpl(new NameImpl("the_geom"), geomType.getBinding(),
+			    geomType.getCoordinateReferenceSystem(), geomType.isIdentified(), geomType.isAbstract(),
+			    geomType.getRestrictions(), geomType.getSuper(), geomType.getDescription());
+
+			GeometryDescriptor geomDesc = new GeometryDescriptorImpl(gt, new NameImpl("the_geom"), geom.getMinOccurs(),
+			    geom.getMaxOccurs(), geom.isNillable(), geom.getDefaultValue());
+
+			attribs.add(0, geomDesc);
+
+			return new SimpleFeatureTypeImpl(schema.getName(), attribs, geomDesc, schema.isAbstract(),
+			    schema.getRestrictions(), schema.getSuper(), schema.getDescription());
+		}
 		
 	}
 
@@ -2,48 +2,27 @@ package org.geotools.tutorial;
 
 import java.awt.event.ActionEvent;
 import java.io.File;
-import java.io.IOException;
-import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
 import javax.swing.Action;
 import javax.swing.JButton;
 import javax.swing.JOptionPane;
 import javax.swing.JToolBar;
 import javax.swing.SwingWorker;
 import org.geotools.data.DataStore;
-import org.geotools.data.DataStoreFactorySpi;
-import org.geotools.data.DefaultTransaction;
-import org.geotools.data.FeatureWriter;
 import org.geotools.data.FileDataStore;
 import org.geotools.data.FileDataStoreFinder;
-import org.geotools.data.Query;
-import org.geotools.data.Transaction;
-import org.geotools.data.shapefile.ShapefileDataStoreFactory;
-import org.geotools.data.simple.SimpleFeatureCollection;
-import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
-import org.geotools.data.simple.SimpleFeatureStore;
-import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
-import org.geotools.geometry.jts.JTS;
+import org.geotools.filter.text.cql2.CQL;
 import org.geotools.map.FeatureLayer;
 import org.geotools.map.Layer;
 import org.geotools.map.MapContent;
-import org.geotools.referencing.CRS;
 import org.geotools.styling.SLD;
 import org.geotools.styling.Style;
 import org.geotools.swing.JMapFrame;
 import org.geotools.swing.JProgressWindow;
 import org.geotools.swing.action.SafeAction;
 import org.geotools.swing.data.JFileDataStoreChooser;
-import org.locationtech.jts.geom.Geometry;
-import org.opengis.feature.Feature;
-import org.opengis.feature.FeatureVisitor;
-import org.opengis.feature.simple.SimpleFeature;
-import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.FeatureType;
-import org.opengis.referencing.crs.CoordinateReferenceSystem;
-import org.opengis.referencing.operation.MathTransform;
+import org.opengis.filter.Filter;
 import org.opengis.util.InternationalString;
 import org.opengis.util.ProgressListener;
 import org.slf4j.Logger;
@@ -56,6 +35,7 @@ public class GeometryCRS {
 	private File sourceFile;
 	private SimpleFeatureSource featureSource;
 	private MapContent map;
+	private final ReprojectionEngine engine = new ReprojectionEngine();
 
 	public static void main(String[] args) throws Exception {
 		GeometryCRS lab = new GeometryCRS();
@@ -73,8 +53,10 @@ public class GeometryCRS {
 		// Create a map context and add our shapefile to it
 		map = new MapContent();
 		Style style = SLD.createSimpleStyle(featureSource.getSchema());
-		Layer layer = new FeatureLayer(featureSource, style);
-		map.layers().add(layer);
+		// zoomed out views draw simplified geometries
+		Layer layer = new FeatureLayer(new LevelOfDetailFeatureSource(featureSource, sourceFile), style);
+		// pans and zooms redraw from cached tiles
+		map.layers().add(new TileCacheLayer(layer, sourceFile));
 
 		// Create a JMapFrame with custom toolbar buttons
 		JMapFrame mapFrame = new JMapFrame(map);
@@ -84,13 +66,24 @@ public class GeometryCRS {
 		JToolBar toolbar = mapFrame.getToolBar();
 		toolbar.addSeparator();
 		toolbar.add(new JButton(new ValidateGeometryAction()));
+		toolbar.add(new JButton(new RepairGeometryAction()));
 		toolbar.add(new JButton(new ExportShapefileAction()));
+		toolbar.add(new JButton(new ExportShapefileAction(true)));
+		toolbar.add(new JButton(new ExportQueryAction()));
 
 		// Display the map frame. When it is closed the application will exit
 		mapFrame.setSize(800, 600);
 		mapFrame.setVisible(true);
 	}
 
+	/*
+	 * Checks every geometry on all cores, caching the results next to the
+	 * shapefile; see ReprojectionEngine.validate.
+	 */
+	private int validateFeatureGeometry(ProgressListener progress) throws Exception {
+		return (int) engine.validate(featureSource, sourceFile, progress).getProblems();
+	}
+
 	class ValidateGeometryAction extends SafeAction {
 		ValidateGeometryAction() {
 			super("Validate geometry");
@@ -107,30 +100,6 @@ public class GeometryCRS {
 			}
 			JOptionPane.showMessageDialog(null, msg, "Geometry results", JOptionPane.INFORMATION_MESSAGE);
 		}
-
-		private int validateFeatureGeometry(ProgressListener progress) throws Exception {
-			final SimpleFeatureCollection featureCollection = featureSource.getFeatures();
-
-			// Rather than use an iterator, create a FeatureVisitor to check each fature
-			class ValidationVisitor implements FeatureVisitor {
-				public int numInvalidGeometries = 0;
-
-				public void visit(Feature f) {
-					SimpleFeature feature = (SimpleFeature) f;
-					Geometry geom = (Geometry) feature.getDefaultGeometry();
-					if (geom != null && !geom.isValid()) {
-						numInvalidGeometries++;
-						System.out.println("Invalid Geoemtry: " + feature.getID());
-					}
-				}
-			}
-
-			ValidationVisitor visitor = new ValidationVisitor();
-
-			// Pass visitor and the progress bar to feature collection
-			featureCollection.accepts(visitor, progress);
-			return visitor.numInvalidGeometries;
-		}
 	}
 
 	class ValidateGeometryAction2 extends SafeAction {
@@ -158,30 +127,6 @@ public class GeometryCRS {
 					}
 				}
 
-				private int validateFeatureGeometry(ProgressListener progress) throws Exception {
-					final SimpleFeatureCollection featureCollection = featureSource.getFeatures();
-
-					// Rather than use an iterator, create a FeatureVisitor to check each fature
-					class ValidationVisitor implements FeatureVisitor {
-						public int numInvalidGeometries = 0;
-
-						public void visit(Feature f) {
-							SimpleFeature feature = (SimpleFeature) f;
-							Geometry geom = (Geometry) feature.getDefaultGeometry();
-							if (geom != null && !geom.isValid()) {
-								numInvalidGeometries++;
-								System.out.println("Invalid Geoemtry: " + feature.getID());
-							}
-						}
-					}
-
-					ValidationVisitor visitor = new ValidationVisitor();
-
-					// Pass visitor and the progress bar to feature collection
-					featureCollection.accepts(visitor, progress);
-					return visitor.numInvalidGeometries;
-				}
-				
 				protected void done() {
 					try {
 						Object result = get();
@@ -197,10 +142,65 @@ public class GeometryCRS {
 		}
 	}
 
+	class RepairGeometryAction extends SafeAction {
+		RepairGeometryAction() {
+			super("Repair...");
+			putValue(Action.SHORT_DESCRIPTION, "Export with invalid geometries fixed");
+		}
+
+		public void action(ActionEvent e) throws Throwable {
+			JFileDataStoreChooser chooser = new JFileDataStoreChooser("shp");
+			chooser.setDialogTitle("Save repaired shapefile");
+			chooser.setSaveFile(sourceFile);
+			if (chooser.showSaveDialog(null) != JFileDataStoreChooser.APPROVE_OPTION) {
+				return;
+			}
+			File file = chooser.getSelectedFile();
+			if (file.equals(sourceFile)) {
+				JOptionPane.showMessageDialog(null, "Cannot replace " + file);
+				return;
+			}
+			// repair in a background thread so the progress bar is displayed
+			SwingWorker<String, Object> worker = new SwingWorker<String, Object>() {
+				protected String doInBackground() throws Exception {
+					JProgressWindow progress = new JProgressWindow(null);
+					progress.setTitle("Repairing feature geometry");
+
+					DataStore dataStore = ReprojectionEngine.createShapefile(file);
+					try {
+						return "Repaired geometries: " + engine.repair(featureSource, dataStore, progress).getProblems();
+					} finally {
+						dataStore.dispose();
+					}
+				}
+
+				protected void done() {
+					try {
+						JOptionPane.showMessageDialog(null, get(), "Repair results", JOptionPane.INFORMATION_MESSAGE);
+					} catch (Exception problem) {
+						LOGGER.error("Repair failed", problem);
+						JOptionPane.showMessageDialog(null, "Repair failed", "Repair results",
+						    JOptionPane.ERROR_MESSAGE);
+					}
+				}
+			};
+			worker.execute();
+		}
+	}
+
 	class ExportShapefileAction extends SafeAction {
+		/* write in Hilbert order, see HilbertSorter */
+		private final boolean sorted;
+
 		ExportShapefileAction() {
-			super("Export...");
-			putValue(Action.SHORT_DESCRIPTION, "Export using current crs");
+			this(false);
+		}
+
+		ExportShapefileAction(boolean sorted) {
+			super(sorted ? "Export sorted..." : "Export...");
+			putValue(Action.SHORT_DESCRIPTION,
+			    sorted ? "Export using current crs, spatially clustered" : "Export using current crs");
+			this.sorted = sorted;
 		}
 
 		public void action(ActionEvent e) throws Throwable {
@@ -208,7 +208,6 @@ public class GeometryCRS {
 		}
 
 		private void exportToShapefile() throws Exception {
-			SimpleFeatureType schema = featureSource.getSchema();
 			JFileDataStoreChooser chooser = new JFileDataStoreChooser("shp");
 			chooser.setDialogTitle("Save reprojected shapefile");
 			chooser.setSaveFile(sourceFile);
@@ -222,85 +221,55 @@ public class GeometryCRS {
 				return;
 			}
 
-			CoordinateReferenceSystem dataCRS = schema.getCoordinateReferenceSystem();
-			CoordinateReferenceSystem worldCRS = map.getCoordinateReferenceSystem();
-			boolean lenient = true; // allow for some error due to different datums
-			MathTransform transform = CRS.findMathTransform(dataCRS, worldCRS, lenient);
-
-			SimpleFeatureCollection featureCollection = featureSource.getFeatures();
-
-			DataStoreFactorySpi factory = new ShapefileDataStoreFactory();
-			Map<String, Serializable> create = new HashMap<>();
-			create.put("url", file.toURI().toURL());
-			create.put("create spatial index", Boolean.TRUE);
-			DataStore dataStore = factory.createNewDataStore(create);
-			SimpleFeatureType featureType = SimpleFeatureTypeBuilder.retype(schema, worldCRS);
-			dataStore.createSchema(featureType);
-
-			// Get the name of the new Shapefile, which will be used to open the
-			// FeatureWriter
-			String createdName = dataStore.getTypeNames()[0];
-
-			Transaction transaction = new DefaultTransaction("Reproject");
-			try (FeatureWriter<SimpleFeatureType, SimpleFeature> writer = dataStore.getFeatureWriterAppend(createdName, transaction); SimpleFeatureIterator iterator = featureCollection.features()) {
-				while (iterator.hasNext()) {
-					// copy the contents of each feature and transform the geometry
-					SimpleFeature feature = iterator.next();
-					SimpleFeature copy = writer.next();
-					copy.setAttributes(feature.getAttributes());
-
-					Geometry geometry = (Geometry) feature.getDefaultGeometry();
-					Geometry geometry2 = JTS.transform(geometry, transform);
-
-					copy.setDefaultGeometry(geometry2);
-					writer.write();
-				}
-				transaction.commit();
+			DataStore dataStore = ReprojectionEngine.createShapefile(file);
+			try {
+				engine.reproject(featureSource, map.getCoordinateReferenceSystem(), dataStore, sorted, null);
 				JOptionPane.showMessageDialog(null, "Export to shapefile complete");
 			} catch (Exception problem) {
-				problem.printStackTrace();
-				transaction.rollback();
+				LOGGER.error("Export failed", problem);
 				JOptionPane.showMessageDialog(null, "Export to shapefile failed");
 			} finally {
-				transaction.close();
+				dataStore.dispose();
 			}
 		}
 	}
-	
-	private void test(File file) throws IOException {
-		Query query = new Query("typeName");
-        query.setCoordinateSystemReproject(map.getCoordinateReferenceSystem());
-
-        SimpleFeatureCollection featureCollection = featureSource.getFeatures(query);
 
-        // And create a new Shapefile with the results
-        DataStoreFactorySpi factory = new ShapefileDataStoreFactory();
+	class ExportQueryAction extends SafeAction {
+		ExportQueryAction() {
+			super("Export query...");
+			putValue(Action.SHORT_DESCRIPTION, "Export the features matching a filter using current crs");
+		}
 
-        Map<String, Serializable> create = new HashMap<>();
-        create.put("url", file.toURI().toURL());
-        create.put("create spatial index", Boolean.TRUE);
-        DataStore newDataStore = factory.createNewDataStore(create);
+		public void action(ActionEvent e) throws Throwable {
+			String cql = JOptionPane.showInputDialog(null, "Filter (CQL)", "INCLUDE");
+			if (cql == null) {
+				return;
+			}
+			Filter filter = CQL.toFilter(cql);
+			JFileDataStoreChooser chooser = new JFileDataStoreChooser("shp");
+			chooser.setDialogTitle("Save reprojected shapefile");
+			chooser.setSaveFile(sourceFile);
+			if (chooser.showSaveDialog(null) != JFileDataStoreChooser.APPROVE_OPTION) {
+				return;
+			}
+			File file = chooser.getSelectedFile();
+			if (file.equals(sourceFile)) {
+				JOptionPane.showMessageDialog(null, "Cannot replace " + file);
+				return;
+			}
 
-        newDataStore.createSchema(featureCollection.getSchema());
-        Transaction transaction = new DefaultTransaction("Reproject");
-        SimpleFeatureStore featureStore =
-                (SimpleFeatureStore) newDataStore.getFeatureSource("typeName");
-        featureStore.setTransaction(transaction);
-        try {
-            featureStore.addFeatures(featureCollection);
-            transaction.commit();
-            JOptionPane.showMessageDialog(
-                    null,
-                    "Export to shapefile complete",
-                    "Export",
-                    JOptionPane.INFORMATION_MESSAGE);
-        } catch (Exception problem) {
-            transaction.rollback();
-            problem.printStackTrace();
-            JOptionPane.showMessageDialog(
-                    null, "Export to shapefile failed", "Export", JOptionPane.ERROR_MESSAGE);
-        } finally {
-            transaction.close();
-        }
+			DataStore dataStore = ReprojectionEngine.createShapefile(file);
+			try {
+				ReprojectionEngine.Report report = engine.export(featureSource, filter, null,
+				    map.getCoordinateReferenceSystem(), dataStore);
+				JOptionPane.showMessageDialog(null, "Exported features: " + report.getFeatures(), "Export",
+				    JOptionPane.INFORMATION_MESSAGE);
+			} catch (Exception problem) {
+				LOGGER.error("Export failed", problem);
+				JOptionPane.showMessageDialog(null, "Export to shapefile failed", "Export", JOptionPane.ERROR_MESSAGE);
+			} finally {
+				dataStore.dispose();
+			}
+		}
 	}
 }
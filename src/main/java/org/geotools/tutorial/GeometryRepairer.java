@@ -0,0 +1,161 @@
+package org.geotools.tutorial;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.geotools.data.DataStore;
+import org.geotools.data.FileDataStore;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.util.GeometryFixer;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.util.ProgressListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies features to another data store, replacing invalid geometries by the
+ * result of {@link GeometryFixer} and recording why each was invalid.
+ * <p>
+ * The features are streamed: each is checked with
+ * {@link TieredGeometryValidator}, fixed if needed and written through a
+ * {@link BatchedFeatureWriter}, so the whole collection is never held in
+ * memory. The output type has an extra {@value #REASON} attribute, empty for
+ * valid features. As fixing a polygon can split it, polygon types become
+ * multipolygon types.
+ */
+public class GeometryRepairer {
+	final static private Logger LOGGER = LoggerFactory.getLogger(GeometryRepairer.class);
+
+	/* short enough for a dbf column */
+	public static final String REASON = "reason";
+
+	/**
+	 * @return the type of the repaired features of the given type
+	 */
+	public static SimpleFeatureType repairedType(SimpleFeatureType schema) {
+		SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+		builder.setName(schema.getName());
+		builder.setCRS(schema.getCoordinateReferenceSystem());
+		GeometryDescriptor geometry = schema.getGeometryDescriptor();
+		for (AttributeDescriptor descriptor : schema.getAttributeDescriptors()) {
+			if (descriptor == geometry && geometry.getType().getBinding() == Polygon.class) {
+				builder.add(descriptor.getLocalName(), MultiPolygon.class);
+			} else {
+				builder.add(descriptor);
+			}
+		}
+		if (geometry != null) {
+			builder.setDefaultGeometry(geometry.getLocalName());
+		}
+		builder.add(REASON, String.class);
+		return builder.buildFeatureType();
+	}
+
+	/**
+	 * Creates the repaired type in the output store and writes all features to
+	 * it.
+	 *
+	 * @param progress
+	 *            told about progress and asked for cancellation, or {@code null}
+	 */
+	public Result repair(SimpleFeatureCollection features, DataStore output, ProgressListener progress)
+	    throws IOException {
+		SimpleFeatureType type = repairedType(features.getSchema());
+		output.createSchema(type);
+		// a file store names its only type after the file
+		String typeName = output instanceof FileDataStore ? output.getTypeNames()[0] : type.getTypeName();
+		boolean multiPolygon = type.getGeometryDescriptor() != null
+		    && type.getGeometryDescriptor().getType().getBinding() == MultiPolygon.class;
+
+		int size = features.size();
+		long count = 0;
+		long repaired = 0;
+		boolean canceled = false;
+		if (progress != null) {
+			progress.started();
+		}
+		try (BatchedFeatureWriter writer = new BatchedFeatureWriter(output, typeName);
+		    SimpleFeatureIterator iterator = features.features()) {
+			while (iterator.hasNext()) {
+				if (progress != null && progress.isCanceled()) {
+					canceled = true;
+					break;
+				}
+				SimpleFeature feature = iterator.next();
+				Geometry geometry = (Geometry) feature.getDefaultGeometry();
+				String reason = geometry == null ? null : TieredGeometryValidator.check(geometry);
+				if (reason != null) {
+					LOGGER.debug("Repairing " + feature.getID() + ": " + reason);
+					geometry = GeometryFixer.fix(geometry);
+					repaired++;
+				}
+				if (multiPolygon && geometry instanceof Polygon) {
+					geometry = geometry.getFactory().createMultiPolygon(new Polygon[] { (Polygon) geometry });
+				}
+
+				SimpleFeature copy = writer.next();
+				List<Object> values = feature.getAttributes();
+				for (int i = 0; i < values.size(); i++) {
+					copy.setAttribute(i, values.get(i));
+				}
+				copy.setDefaultGeometry(geometry);
+				copy.setAttribute(REASON, reason);
+				writer.write();
+
+				count++;
+				if (progress != null && size > 0 && count % 1000 == 0) {
+					progress.progress(Math.min(100f, count * 100f / size));
+				}
+			}
+		}
+		LOGGER.info("Repaired " + repaired + " of " + count + " features");
+		if (progress != null && !canceled) {
+			progress.complete();
+		}
+		return new Result(count, repaired, canceled);
+	}
+
+	/**
+	 * The outcome of a repair.
+	 */
+	public static class Result {
+		private final long count;
+		private final long repaired;
+		private final boolean canceled;
+
+		Result(long count, long repaired, boolean canceled) {
+			this.count = count;
+			this.repaired = repaired;
+			this.canceled = canceled;
+		}
+
+		/**
+		 * @return the number of features written
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the number of features whose geometry was fixed
+		 */
+		public long getRepaired() {
+			return repaired;
+		}
+
+		/**
+		 * @return whether the repair was canceled before all features were written
+		 */
+		public boolean isCanceled() {
+			return canceled;
+		}
+	}
+}
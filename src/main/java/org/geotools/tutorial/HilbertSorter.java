@@ -0,0 +1,352 @@
+package org.geotools.tutorial;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.referencing.CRS;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sorts features along a Hilbert curve through the centres of their envelopes,
+ * so features close in space end up close in the output file. A spatial index
+ * over such a file points to few, mostly contiguous records for a bounding box.
+ * <p>
+ * Features are collected in runs of a fixed number of features. Each full run
+ * is sorted in memory and spilled to a temporary file; {@link #sorted()} merges
+ * the runs, so the input may be far larger than the heap. Input that fits into
+ * a single run never touches the disk.
+ */
+public class HilbertSorter implements Closeable {
+	final static private Logger LOGGER = LoggerFactory.getLogger(HilbertSorter.class);
+
+	public static final int DEFAULT_RUN_FEATURES = 100_000;
+
+	/* bits per axis; a key fits into 32 bits */
+	private static final int ORDER = 16;
+	private static final int CELLS = 1 << ORDER;
+	/* run positions take the low bits of a packed key */
+	private static final int INDEX_BITS = 31;
+	/* runs merged at once, keeping the number of open files bounded */
+	private static final int MAX_MERGE_RUNS = 128;
+
+	private final SimpleFeatureType schema;
+	private final Envelope bounds;
+	private final int runFeatures;
+	private final File tempDir;
+	private final FeatureEncoder encoder;
+
+	private final List<File> runs = new ArrayList<>();
+	private SimpleFeature[] features;
+	private long[] keys;
+	private int size;
+	private boolean sorting;
+
+	/**
+	 * @param bounds
+	 *            the extent the curve is laid over, normally the bounds of all
+	 *            features; centres outside of it are clamped to the border
+	 */
+	public HilbertSorter(SimpleFeatureType schema, Envelope bounds) {
+		this(schema, bounds, DEFAULT_RUN_FEATURES, null);
+	}
+
+	/**
+	 * @param runFeatures
+	 *            the number of features sorted in memory at a time
+	 * @param tempDir
+	 *            where runs are spilled to, or {@code null} for the default
+	 *            temporary directory
+	 */
+	public HilbertSorter(SimpleFeatureType schema, Envelope bounds, int runFeatures, File tempDir) {
+		if (bounds == null || bounds.isNull()) {
+			throw new IllegalArgumentException("Bounds are required for sorting");
+		}
+		if (runFeatures <= 0) {
+			throw new IllegalArgumentException("Run size must be positive: " + runFeatures);
+		}
+		this.schema = schema;
+		this.bounds = bounds;
+		this.runFeatures = runFeatures;
+		this.tempDir = tempDir;
+		this.encoder = new FeatureEncoder(schema);
+		this.features = new SimpleFeature[Math.min(runFeatures, 1024)];
+		this.keys = new long[features.length];
+	}
+
+	/**
+	 * @return the domain of validity of the CRS, or the whole world in longitude
+	 *         and latitude if it has none
+	 */
+	public static Envelope defaultBounds(CoordinateReferenceSystem crs) {
+		org.opengis.geometry.Envelope domain = crs != null ? CRS.getEnvelope(crs) : null;
+		if (domain == null) {
+			return new Envelope(-180, 180, -90, 90);
+		}
+		return new Envelope(domain.getMinimum(0), domain.getMaximum(0), domain.getMinimum(1), domain.getMaximum(1));
+	}
+
+	public void add(SimpleFeature feature) throws IOException {
+		if (sorting) {
+			throw new IllegalStateException("Features can not be added after sorting");
+		}
+		if (size == runFeatures) {
+			spill();
+		}
+		if (size == features.length) {
+			int capacity = (int) Math.min(runFeatures, features.length * 2L);
+			features = Arrays.copyOf(features, capacity);
+			keys = Arrays.copyOf(keys, capacity);
+		}
+		Geometry geometry = (Geometry) feature.getDefaultGeometry();
+		long key = geometry == null || geometry.isEmpty() ? 0 : key(geometry.getEnvelopeInternal());
+		keys[size] = key << INDEX_BITS | size;
+		features[size++] = feature;
+	}
+
+	/**
+	 * @return all features added, in Hilbert order; closing the iterator removes
+	 *         the temporary files
+	 */
+	public SimpleFeatureIterator sorted() throws IOException {
+		sorting = true;
+		if (runs.isEmpty()) {
+			Arrays.sort(keys, 0, size);
+			return new MemoryIterator();
+		}
+		if (size > 0) {
+			spill();
+		}
+		features = null;
+		keys = null;
+		while (runs.size() > MAX_MERGE_RUNS) {
+			List<File> merged = new ArrayList<>();
+			for (int i = 0; i < runs.size(); i += MAX_MERGE_RUNS) {
+				merged.add(mergeRuns(runs.subList(i, Math.min(runs.size(), i + MAX_MERGE_RUNS))));
+			}
+			runs.clear();
+			runs.addAll(merged);
+		}
+		LOGGER.info("Merging " + runs.size() + " sorted runs");
+		return new MergeIterator(new ArrayList<>(runs));
+	}
+
+	/**
+	 * Removes the temporary files of all runs.
+	 */
+	public void close() {
+		for (File run : runs) {
+			if (!run.delete() && run.exists()) {
+				LOGGER.warn("Could not delete " + run);
+			}
+		}
+		runs.clear();
+	}
+
+	private long key(Envelope envelope) {
+		int x = cell((envelope.getMinX() + envelope.getMaxX()) / 2, bounds.getMinX(), bounds.getWidth());
+		int y = cell((envelope.getMinY() + envelope.getMaxY()) / 2, bounds.getMinY(), bounds.getHeight());
+		return hilbertIndex(x, y);
+	}
+
+	private static int cell(double value, double min, double extent) {
+		if (!(extent > 0)) {
+			return 0;
+		}
+		double cell = (value - min) / extent * CELLS;
+		return (int) Math.max(0, Math.min(CELLS - 1, cell));
+	}
+
+	/*
+	 * Distance of cell (x, y) along the Hilbert curve of order ORDER.
+	 */
+	static long hilbertIndex(int x, int y) {
+		long d = 0;
+		for (int s = CELLS / 2; s > 0; s /= 2) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			d += (long) s * s * ((3 * rx) ^ ry);
+			// rotate the quadrant so the curve continues where it left off
+			if (ry == 0) {
+				if (rx == 1) {
+					x = CELLS - 1 - x;
+					y = CELLS - 1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return d;
+	}
+
+	private void spill() throws IOException {
+		Arrays.sort(keys, 0, size);
+		File run = File.createTempFile("hilbert", ".run", tempDir);
+		runs.add(run);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16))) {
+			for (int i = 0; i < size; i++) {
+				out.writeLong(keys[i] >>> INDEX_BITS);
+				encoder.write(out, features[(int) (keys[i] & ((1L << INDEX_BITS) - 1))]);
+			}
+		}
+		Arrays.fill(features, 0, size, null);
+		size = 0;
+	}
+
+	/*
+	 * Merges consecutive runs into a single new run and deletes them.
+	 */
+	private File mergeRuns(List<File> merged) throws IOException {
+		if (merged.size() == 1) {
+			return merged.get(0);
+		}
+		File run = File.createTempFile("hilbert", ".run", tempDir);
+		MergeIterator iterator = new MergeIterator(merged);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16))) {
+			while (iterator.hasNext()) {
+				long key = iterator.queue.peek().key;
+				out.writeLong(key);
+				encoder.write(out, iterator.next());
+			}
+		} catch (IOException | RuntimeException e) {
+			run.delete();
+			throw e;
+		} finally {
+			iterator.closeRuns();
+		}
+		for (File file : merged) {
+			file.delete();
+		}
+		return run;
+	}
+
+	private class MemoryIterator implements SimpleFeatureIterator {
+		private int next;
+
+		public boolean hasNext() {
+			return next < size;
+		}
+
+		public SimpleFeature next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			int index = (int) (keys[next++] & ((1L << INDEX_BITS) - 1));
+			SimpleFeature feature = features[index];
+			features[index] = null;
+			return feature;
+		}
+
+		public void close() {
+			HilbertSorter.this.close();
+		}
+	}
+
+	/* the next feature of a spilled run */
+	private class Run implements Comparable<Run> {
+		final int number;
+		final DataInputStream in;
+		final FeatureEncoder decoder = new FeatureEncoder(schema);
+		long key;
+		SimpleFeature feature;
+
+		Run(int number, File file) throws IOException {
+			this.number = number;
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		}
+
+		boolean advance() throws IOException {
+			try {
+				key = in.readLong();
+			} catch (EOFException e) {
+				feature = null;
+				return false;
+			}
+			feature = decoder.read(in);
+			return true;
+		}
+
+		public int compareTo(Run other) {
+			// earlier runs first on equal keys, so the sort is stable
+			int c = Long.compare(key, other.key);
+			return c != 0 ? c : Integer.compare(number, other.number);
+		}
+	}
+
+	private class MergeIterator implements SimpleFeatureIterator {
+		private final List<Run> open = new ArrayList<>();
+		private final PriorityQueue<Run> queue = new PriorityQueue<>();
+
+		MergeIterator(List<File> files) throws IOException {
+			try {
+				for (int i = 0; i < files.size(); i++) {
+					Run run = new Run(i, files.get(i));
+					open.add(run);
+					if (run.advance()) {
+						queue.add(run);
+					}
+				}
+			} catch (IOException e) {
+				closeRuns();
+				throw e;
+			}
+		}
+
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+
+		public SimpleFeature next() {
+			Run run = queue.poll();
+			if (run == null) {
+				throw new NoSuchElementException();
+			}
+			SimpleFeature feature = run.feature;
+			try {
+				if (run.advance()) {
+					queue.add(run);
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("Could not read sorted run", e);
+			}
+			return feature;
+		}
+
+		public void close() {
+			closeRuns();
+			HilbertSorter.this.close();
+		}
+
+		void closeRuns() {
+			for (Run run : open) {
+				try {
+					run.in.close();
+				} catch (IOException e) {
+					LOGGER.warn("Could not close sorted run", e);
+				}
+			}
+			open.clear();
+			queue.clear();
+		}
+	}
+}
@@ -0,0 +1,550 @@
+package org.geotools.tutorial;
+
+import java.awt.RenderingHints;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.geotools.data.DataAccess;
+import org.geotools.data.FeatureListener;
+import org.geotools.data.Query;
+import org.geotools.data.QueryCapabilities;
+import org.geotools.data.ResourceInfo;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.feature.collection.DecoratingSimpleFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.util.factory.Hints;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.Name;
+import org.opengis.filter.Filter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A feature source that returns simplified versions of the geometries of
+ * another source for a number of scale bands, for rendering zoomed out views.
+ * <p>
+ * All queries go to the wrapped source, so the features stay in the store and
+ * a bounding box query uses its spatial index. The source advertises
+ * {@link Hints#GEOMETRY_DISTANCE}, so the renderer asks for geometries
+ * generalized to about the size of a pixel. It then gets the geometries of the
+ * coarsest band whose distance is within that size, and lines and polygons
+ * smaller than a pixel are left out altogether. The bands are computed from
+ * the bounds of the source: the coarsest band shows the whole data set in
+ * about 256 pixels and each band is four times finer than the one before. Each
+ * band is simplified from the next finer one with
+ * {@link DouglasPeuckerSimplifier}, which is fast but may give invalid
+ * polygons; good enough to draw, but the original geometries are returned for
+ * any query without the hint. The wrapped source always reads the original
+ * geometries, as the generalization hints are taken out of the query.
+ * <p>
+ * The bands of a shapefile are computed once for all features and written as
+ * WKB to a sidecar file next to it, {@code name.lod}, with an index by record
+ * number; drawing then reads only the band it needs. The sidecar is written
+ * again when the shapefile changes. Without a file, or when the sidecar cannot
+ * be written, the band asked for is simplified while drawing.
+ */
+public class LevelOfDetailFeatureSource implements SimpleFeatureSource {
+	final static private Logger LOGGER = LoggerFactory.getLogger(LevelOfDetailFeatureSource.class);
+
+	private static final int MAGIC = 0x4c4f4431; // LOD1
+	private static final int BANDS = 6;
+	private static final double COARSEST_PIXELS = 256;
+	/* an offset and a length per band of each record */
+	private static final int ENTRY_BYTES = BANDS * 12;
+
+	/* hints with which the wrapped source would generalize the originals */
+	private static final RenderingHints.Key[] GENERALIZING = { Hints.GEOMETRY_DISTANCE, Hints.GEOMETRY_GENERALIZATION,
+	    Hints.GEOMETRY_SIMPLIFICATION, Hints.SCREENMAP };
+
+	private final SimpleFeatureSource source;
+	private final File file;
+	/* the bands of the current state of the file; replaced when it changes */
+	private Bands bands;
+
+	/**
+	 * @param file
+	 *            the shapefile the source reads, checked for changes before each
+	 *            query, or {@code null} if the source does not change
+	 */
+	public LevelOfDetailFeatureSource(SimpleFeatureSource source, File file) {
+		this.source = source;
+		this.file = file;
+	}
+
+	/**
+	 * The distances of the bands and the sidecar with the simplified geometries
+	 * of the records, if there is one.
+	 */
+	private static class Bands {
+		final String stamp;
+		final double[] distances;
+		final FileChannel channel;
+		final long indexOffset;
+		final int records;
+
+		Bands(String stamp, double[] distances, FileChannel channel, long indexOffset, int records) {
+			this.stamp = stamp;
+			this.distances = distances;
+			this.channel = channel;
+			this.indexOffset = indexOffset;
+			this.records = records;
+		}
+
+		void close() {
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					LOGGER.warn("Could not close the simplified geometries", e);
+				}
+			}
+		}
+	}
+
+	static File sidecarFile(File shp) {
+		String name = shp.getName();
+		int dot = name.lastIndexOf('.');
+		return new File(shp.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".lod");
+	}
+
+	/*
+	 * Returns the bands of the current state of the file, opening or writing the
+	 * sidecar again if the file has changed.
+	 */
+	private synchronized Bands bands() throws IOException {
+		String stamp = file == null ? null : ShapefileStamp.of(file);
+		if (bands != null && (file == null || stamp.equals(bands.stamp))) {
+			return bands;
+		}
+		if (bands != null) {
+			LOGGER.info(file + " has changed, simplifying its geometries again");
+			bands.close();
+			bands = null;
+		}
+		if (file == null) {
+			bands = new Bands(null, distances(), null, 0, 0);
+			return bands;
+		}
+		File sidecar = sidecarFile(file);
+		try {
+			bands = open(sidecar, stamp);
+			if (bands == null) {
+				write(sidecar, stamp, distances());
+				bands = open(sidecar, stamp);
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Could not store the simplified geometries in " + sidecar + ", simplifying while drawing", e);
+		}
+		if (bands == null) {
+			bands = new Bands(stamp, distances(), null, 0, 0);
+		}
+		return bands;
+	}
+
+	/* the coarsest band shows the whole source in about COARSEST_PIXELS */
+	private double[] distances() throws IOException {
+		ReferencedEnvelope bounds = source.getBounds();
+		if (bounds == null) {
+			// the store cannot tell its bounds quickly
+			bounds = source.getFeatures().getBounds();
+		}
+		double coarsest = Math.max(bounds.getWidth(), bounds.getHeight()) / COARSEST_PIXELS;
+		double[] distances = new double[BANDS];
+		for (int i = BANDS - 1; i >= 0; i--) {
+			distances[i] = coarsest / Math.pow(4, BANDS - 1 - i);
+		}
+		return distances;
+	}
+
+	/*
+	 * Opens the sidecar, or returns null if it is missing or was written for
+	 * another state of the file.
+	 */
+	private static Bands open(File sidecar, String stamp) throws IOException {
+		if (!sidecar.exists()) {
+			return null;
+		}
+		double[] distances = new double[BANDS];
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar.toPath())))) {
+			if (in.readInt() != MAGIC || !in.readUTF().equals(stamp)) {
+				return null;
+			}
+			for (int i = 0; i < BANDS; i++) {
+				distances[i] = in.readDouble();
+			}
+		}
+		FileChannel channel = FileChannel.open(sidecar.toPath(), StandardOpenOption.READ);
+		try {
+			ByteBuffer trailer = ByteBuffer.allocate(16);
+			read(channel, trailer, channel.size() - 16);
+			long indexOffset = trailer.getLong();
+			int records = trailer.getInt();
+			if (trailer.getInt() != MAGIC) {
+				throw new IOException(sidecar + " is incomplete");
+			}
+			return new Bands(stamp, distances, channel, indexOffset, records);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/*
+	 * Simplifies every feature of the source and writes the bands as WKB,
+	 * followed by the index of offsets and lengths by record and band and a
+	 * trailer pointing at the index. A band that removes no vertex has offset -1.
+	 */
+	private void write(File sidecar, String stamp, double[] distances) throws IOException {
+		LOGGER.info("Simplifying the geometries of " + file + " into " + sidecar);
+		File temp = new File(sidecar.getPath() + ".tmp");
+		File index = new File(sidecar.getPath() + ".index.tmp");
+		String prefix = getSchema().getTypeName() + ".";
+		WKBWriter wkb = new WKBWriter();
+		try (DataOutputStream out = new DataOutputStream(
+		    new BufferedOutputStream(Files.newOutputStream(temp.toPath()), 1 << 16));
+		    DataOutputStream indexOut = new DataOutputStream(
+		        new BufferedOutputStream(Files.newOutputStream(index.toPath()), 1 << 16));
+		    SimpleFeatureIterator features = source.getFeatures().features()) {
+			out.writeInt(MAGIC);
+			out.writeUTF(stamp);
+			for (double distance : distances) {
+				out.writeDouble(distance);
+			}
+			long position = out.size();
+			int records = 0;
+			while (features.hasNext()) {
+				SimpleFeature feature = features.next();
+				long record = record(feature.getID(), prefix);
+				if (record <= records) {
+					throw new IOException("The feature ids of " + file + " are not record numbers in order");
+				}
+				// records without a feature, e.g. deleted ones
+				for (; records < record - 1; records++) {
+					writeEntries(indexOut, new long[BANDS], new int[BANDS]);
+				}
+				long[] offsets = new long[BANDS];
+				int[] lengths = new int[BANDS];
+				Geometry[] simplified = simplify((Geometry) feature.getDefaultGeometry(), distances);
+				for (int i = 0; i < BANDS; i++) {
+					if (simplified[i] == null) {
+						// drawn from the original
+					} else if (i > 0 && simplified[i] == simplified[i - 1]) {
+						offsets[i] = offsets[i - 1];
+						lengths[i] = lengths[i - 1];
+					} else {
+						byte[] bytes = wkb.write(simplified[i]);
+						out.write(bytes);
+						offsets[i] = position;
+						lengths[i] = bytes.length;
+						position += bytes.length;
+					}
+				}
+				writeEntries(indexOut, offsets, lengths);
+				records++;
+			}
+			indexOut.close();
+			Files.copy(index.toPath(), out);
+			out.writeLong(position);
+			out.writeInt(records);
+			out.writeInt(MAGIC);
+		} catch (IOException | RuntimeException e) {
+			temp.delete();
+			throw e;
+		} finally {
+			index.delete();
+		}
+		try {
+			Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING,
+			    StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void writeEntries(DataOutputStream out, long[] offsets, int[] lengths) throws IOException {
+		for (int i = 0; i < BANDS; i++) {
+			out.writeLong(lengths[i] == 0 ? -1 : offsets[i]);
+			out.writeInt(lengths[i]);
+		}
+	}
+
+	/*
+	 * Returns the bands of a geometry, finest first; null where simplifying
+	 * removes no vertex, or for a point or a missing geometry.
+	 */
+	private static Geometry[] simplify(Geometry geometry, double[] distances) {
+		Geometry[] bands = new Geometry[BANDS];
+		if (geometry == null || geometry.getDimension() == 0) {
+			return bands;
+		}
+		Geometry finer = geometry;
+		for (int i = 0; i < BANDS; i++) {
+			Geometry simplified = DouglasPeuckerSimplifier.simplify(finer, distances[i]);
+			if (simplified.getNumPoints() < finer.getNumPoints()) {
+				bands[i] = simplified;
+				finer = simplified;
+			} else {
+				bands[i] = i > 0 ? bands[i - 1] : null;
+			}
+		}
+		return bands;
+	}
+
+	/* the record number in a shapefile feature id, or -1 */
+	private static long record(String id, String prefix) {
+		if (id == null || !id.startsWith(prefix)) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(id.substring(prefix.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/*
+	 * Fills the buffer from its position to its limit. The reads are positional,
+	 * so all iterators can share the channel.
+	 */
+	private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+	}
+
+	public Name getName() {
+		return source.getName();
+	}
+
+	public ResourceInfo getInfo() {
+		return source.getInfo();
+	}
+
+	public DataAccess<SimpleFeatureType, SimpleFeature> getDataStore() {
+		return source.getDataStore();
+	}
+
+	public QueryCapabilities getQueryCapabilities() {
+		return source.getQueryCapabilities();
+	}
+
+	public void addFeatureListener(FeatureListener listener) {
+		source.addFeatureListener(listener);
+	}
+
+	public void removeFeatureListener(FeatureListener listener) {
+		source.removeFeatureListener(listener);
+	}
+
+	public SimpleFeatureType getSchema() {
+		return source.getSchema();
+	}
+
+	public ReferencedEnvelope getBounds() throws IOException {
+		return source.getBounds();
+	}
+
+	public ReferencedEnvelope getBounds(Query query) throws IOException {
+		return source.getBounds(query);
+	}
+
+	public int getCount(Query query) throws IOException {
+		return source.getCount(query);
+	}
+
+	public Set<RenderingHints.Key> getSupportedHints() {
+		Set<RenderingHints.Key> hints = new HashSet<>(source.getSupportedHints());
+		hints.add(Hints.GEOMETRY_DISTANCE);
+		return Collections.unmodifiableSet(hints);
+	}
+
+	public SimpleFeatureCollection getFeatures() throws IOException {
+		return getFeatures(Query.ALL);
+	}
+
+	public SimpleFeatureCollection getFeatures(Filter filter) throws IOException {
+		return getFeatures(new Query(getSchema().getTypeName(), filter));
+	}
+
+	public SimpleFeatureCollection getFeatures(Query query) throws IOException {
+		Number distance = query.getHints() == null ? null : (Number) query.getHints().get(Hints.GEOMETRY_DISTANCE);
+		// the bands are in the coordinates of the source
+		if (distance == null || distance.doubleValue() <= 0 || query.getCoordinateSystemReproject() != null) {
+			return source.getFeatures(query);
+		}
+		// the bands are simplified from the originals, so the source must not
+		// generalize them itself
+		Query original = new Query(query);
+		Hints hints = new Hints(query.getHints());
+		for (RenderingHints.Key key : GENERALIZING) {
+			hints.remove(key);
+		}
+		original.setHints(hints);
+		return new GeneralizedCollection(source.getFeatures(original), distance.doubleValue(), bands());
+	}
+
+	/*
+	 * Returns the coarsest band within the distance, or -1 if all are too
+	 * coarse.
+	 */
+	private static int band(double[] distances, double distance) {
+		int band = -1;
+		while (band + 1 < BANDS && distances[band + 1] <= distance) {
+			band++;
+		}
+		return band;
+	}
+
+	/**
+	 * The features with the geometries of one band; the size is that of the
+	 * full collection, including the features left out.
+	 */
+	private class GeneralizedCollection extends DecoratingSimpleFeatureCollection {
+		private final double distance;
+		private final Bands bands;
+
+		GeneralizedCollection(SimpleFeatureCollection delegate, double distance, Bands bands) {
+			super(delegate);
+			this.distance = distance;
+			this.bands = bands;
+		}
+
+		public SimpleFeatureIterator features() {
+			return new GeneralizedIterator(delegate.features(), getSchema(), distance, bands);
+		}
+	}
+
+	private static class GeneralizedIterator implements SimpleFeatureIterator {
+		private final SimpleFeatureIterator delegate;
+		private final SimpleFeatureType schema;
+		private final int geometryIndex;
+		private final String prefix;
+		private final double distance;
+		private final Bands bands;
+		private final int band;
+		private final WKBReader wkb = new WKBReader();
+		private final ByteBuffer entry = ByteBuffer.allocate(12);
+		private ByteBuffer buffer = ByteBuffer.allocate(4096);
+		private SimpleFeature next;
+
+		GeneralizedIterator(SimpleFeatureIterator delegate, SimpleFeatureType schema, double distance, Bands bands) {
+			this.delegate = delegate;
+			this.schema = schema;
+			this.geometryIndex = schema.getGeometryDescriptor() == null ? -1
+			    : schema.indexOf(schema.getGeometryDescriptor().getLocalName());
+			this.prefix = schema.getTypeName() + ".";
+			this.distance = distance;
+			this.bands = bands;
+			this.band = band(bands.distances, distance);
+		}
+
+		public boolean hasNext() {
+			while (next == null && delegate.hasNext()) {
+				next = generalize(delegate.next());
+			}
+			return next != null;
+		}
+
+		public SimpleFeature next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			SimpleFeature feature = next;
+			next = null;
+			return feature;
+		}
+
+		public void close() {
+			delegate.close();
+		}
+
+		/* returns null for a feature smaller than a pixel */
+		private SimpleFeature generalize(SimpleFeature feature) {
+			if (geometryIndex < 0) {
+				return feature;
+			}
+			Geometry original = (Geometry) feature.getAttribute(geometryIndex);
+			if (original == null || original.getDimension() == 0) {
+				return feature;
+			}
+			Envelope envelope = original.getEnvelopeInternal();
+			if (envelope.getWidth() < distance && envelope.getHeight() < distance) {
+				return null;
+			}
+			if (band < 0) {
+				return feature;
+			}
+			Geometry geometry = bands.channel == null ? simplify(original) : read(feature.getID());
+			if (geometry == null) {
+				return feature;
+			}
+			// the reader may reuse its features, so a copy gets the geometry
+			Object[] values = feature.getAttributes().toArray();
+			values[geometryIndex] = geometry;
+			return SimpleFeatureBuilder.build(schema, values, feature.getID());
+		}
+
+		/* only the band asked for, when there is no sidecar */
+		private Geometry simplify(Geometry original) {
+			Geometry simplified = DouglasPeuckerSimplifier.simplify(original, bands.distances[band]);
+			return simplified.getNumPoints() < original.getNumPoints() ? simplified : null;
+		}
+
+		/* the band of a record from the sidecar, or null to draw the original */
+		private Geometry read(String id) {
+			long record = record(id, prefix);
+			if (record < 1 || record > bands.records) {
+				return null;
+			}
+			try {
+				entry.clear();
+				LevelOfDetailFeatureSource.read(bands.channel, entry,
+				    bands.indexOffset + (record - 1) * ENTRY_BYTES + band * 12);
+				long offset = entry.getLong();
+				int length = entry.getInt();
+				if (offset < 0) {
+					return null;
+				}
+				if (buffer.capacity() < length) {
+					buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2));
+				}
+				buffer.clear().limit(length);
+				LevelOfDetailFeatureSource.read(bands.channel, buffer, offset);
+				// the reader stops at the end of the geometry
+				return wkb.read(buffer.array());
+			} catch (IOException | ParseException e) {
+				// e.g. the sidecar was closed as the file changed while drawing
+				LOGGER.debug("Could not read the simplified geometry of " + id, e);
+				return null;
+			}
+		}
+	}
+}
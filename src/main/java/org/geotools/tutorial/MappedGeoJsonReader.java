@@ -0,0 +1,436 @@
+package org.geotools.tutorial;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.FeatureTypes;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.tutorial.GeoJsonTokenizer.Token;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFactory;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+
+/**
+ * Streams the features of a GeoJSON FeatureCollection from a memory-mapped
+ * file.
+ * <p>
+ * Coordinates are parsed straight from the mapped bytes into a reusable
+ * {@code double[]} and every coordinate list becomes a
+ * {@link PackedCoordinateSequence.Double}, so no {@code Coordinate} object is
+ * created per vertex. Properties are read against the given schema, usually
+ * the one from {@link SchemaInference}; properties missing from the schema are
+ * skipped, and nested objects and arrays are kept as their JSON text, cut to
+ * the length of the attribute.
+ * <p>
+ * With a geometry factory from
+ * {@link QuantizedCoordinateSequenceFactory#createGeometryFactory(double)} the
+ * coordinates are snapped to the grid while they are decoded and kept as
+ * compact grid offsets.
+ */
+public class MappedGeoJsonReader implements SimpleFeatureIterator {
+
+	/* marks an array holding a single position; its values are in coords */
+	private static final Object POSITION = new Object();
+
+	private final GeoJsonTokenizer tokenizer;
+	private final SimpleFeatureType schema;
+	private final GeometryFactory geometryFactory;
+	private final SimpleFeatureBuilder builder;
+	private final int geometryIndex;
+	private final byte[][] names;
+	private final Class<?>[] bindings;
+	/* the maximum length of each attribute, in bytes as in a dbf file */
+	private final int[] lengths;
+
+	/* values of the positions of the coordinate list being read */
+	private double[] coords = new double[1024];
+	private int coordsSize;
+	private final double[] position = new double[4];
+
+	private SimpleFeature next;
+	private long nextOffset;
+	private long featureOffset = -1;
+	private boolean done;
+
+	public MappedGeoJsonReader(File geojson, SimpleFeatureType schema) throws IOException {
+		this(geojson, schema, new GeometryFactory(new PrecisionModel(), 0, PackedCoordinateSequenceFactory.DOUBLE_FACTORY));
+	}
+
+	/**
+	 * @param geometryFactory
+	 *            factory for the geometries; it should use a
+	 *            {@link PackedCoordinateSequenceFactory} or a
+	 *            {@link QuantizedCoordinateSequenceFactory} so that derived
+	 *            geometries stay compact as well
+	 */
+	public MappedGeoJsonReader(File geojson, SimpleFeatureType schema, GeometryFactory geometryFactory)
+	    throws IOException {
+		this(geojson, schema, geometryFactory, -1);
+	}
+
+	/**
+	 * Starts reading at a feature of an earlier run.
+	 *
+	 * @param featureOffset
+	 *            an offset from {@link #getFeatureOffset()}, or -1 to read from the
+	 *            first feature
+	 */
+	public MappedGeoJsonReader(File geojson, SimpleFeatureType schema, GeometryFactory geometryFactory,
+	    long featureOffset) throws IOException {
+		this(new GeoJsonTokenizer(FileChannel.open(geojson.toPath(), StandardOpenOption.READ)), schema, geometryFactory,
+		    featureOffset);
+	}
+
+	/* reads from a mapped file tokenizer, which is closed along with the reader */
+	MappedGeoJsonReader(GeoJsonTokenizer tokenizer, SimpleFeatureType schema, GeometryFactory geometryFactory,
+	    long featureOffset) throws IOException {
+		this.tokenizer = tokenizer;
+		this.schema = schema;
+		this.geometryFactory = geometryFactory;
+		this.builder = new SimpleFeatureBuilder(schema);
+		this.geometryIndex = schema.indexOf(schema.getGeometryDescriptor().getLocalName());
+
+		List<AttributeDescriptor> descriptors = schema.getAttributeDescriptors();
+		names = new byte[descriptors.size()][];
+		bindings = new Class<?>[descriptors.size()];
+		lengths = new int[descriptors.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = descriptors.get(i).getLocalName().getBytes(StandardCharsets.UTF_8);
+			bindings[i] = descriptors.get(i).getType().getBinding();
+			int length = FeatureTypes.getFieldLength(descriptors.get(i));
+			lengths[i] = length > 0 ? length : Integer.MAX_VALUE;
+		}
+		try {
+			if (featureOffset < 0) {
+				moveToFeatures();
+			} else {
+				// inside the root object and the features array
+				tokenizer.seek(featureOffset, 2);
+			}
+		} catch (IOException | RuntimeException e) {
+			tokenizer.close();
+			throw e;
+		}
+	}
+
+	public SimpleFeatureType getSchema() {
+		return schema;
+	}
+
+	/**
+	 * @return the byte offset at which the feature last returned by
+	 *         {@link #next()} starts, or -1 before the first feature
+	 */
+	public long getFeatureOffset() {
+		return featureOffset;
+	}
+
+	public boolean hasNext() {
+		if (next == null && !done) {
+			try {
+				if (tokenizer.next() == Token.START_OBJECT) {
+					nextOffset = tokenizer.getOffset();
+					next = readFeature();
+				} else {
+					done = true;
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return next != null;
+	}
+
+	public SimpleFeature next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		SimpleFeature feature = next;
+		featureOffset = nextOffset;
+		next = null;
+		return feature;
+	}
+
+	public void close() {
+		try {
+			tokenizer.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void moveToFeatures() throws IOException {
+		if (tokenizer.next() != Token.START_OBJECT) {
+			throw new IOException("Not a GeoJSON object");
+		}
+		while (tokenizer.next() == Token.NAME) {
+			boolean features = tokenizer.nameEquals("features");
+			if (tokenizer.next() == Token.START_ARRAY && features) {
+				return;
+			}
+			tokenizer.skipChildren();
+		}
+		done = true;
+	}
+
+	private SimpleFeature readFeature() throws IOException {
+		String id = null;
+		while (tokenizer.next() == Token.NAME) {
+			if (tokenizer.nameEquals("geometry")) {
+				Token token = tokenizer.next();
+				builder.set(geometryIndex, token == Token.START_OBJECT ? readGeometry() : null);
+			} else if (tokenizer.nameEquals("properties")) {
+				if (tokenizer.next() == Token.START_OBJECT) {
+					readProperties();
+				}
+			} else if (tokenizer.nameEquals("id")) {
+				Token token = tokenizer.next();
+				id = token == Token.STRING ? tokenizer.stringValue() : token == Token.NUMBER ? tokenizer.text() : null;
+			} else {
+				tokenizer.next();
+				tokenizer.skipChildren();
+			}
+		}
+		return builder.buildFeature(id);
+	}
+
+	private void readProperties() throws IOException {
+		int expected = 0;
+		while (tokenizer.next() == Token.NAME) {
+			int index = indexOf(expected);
+			Token token = tokenizer.next();
+			if (index < 0 || index == geometryIndex) {
+				tokenizer.skipChildren();
+				continue;
+			}
+			builder.set(index, value(token, bindings[index], lengths[index]));
+			expected = index + 1;
+		}
+	}
+
+	/* properties usually come in schema order, so the expected index is tried first */
+	private int indexOf(int expected) {
+		if (expected < names.length && tokenizer.nameEquals(names[expected])) {
+			return expected;
+		}
+		for (int i = 0; i < names.length; i++) {
+			if (tokenizer.nameEquals(names[i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private Object value(Token token, Class<?> binding, int length) throws IOException {
+		switch (token) {
+		case STRING:
+			return tokenizer.stringValue();
+		case NUMBER:
+			if (binding == Integer.class) {
+				return (int) tokenizer.longValue();
+			} else if (binding == Long.class) {
+				return tokenizer.longValue();
+			} else if (binding == String.class) {
+				return tokenizer.text();
+			}
+			return tokenizer.doubleValue();
+		case TRUE:
+			return Boolean.TRUE;
+		case FALSE:
+			return Boolean.FALSE;
+		case NULL:
+			return null;
+		default:
+			if (binding == String.class) {
+				return tokenizer.valueText(length);
+			}
+			tokenizer.skipChildren();
+			return null;
+		}
+	}
+
+	private Geometry readGeometry() throws IOException {
+		String type = null;
+		Object coordinates = null;
+		List<Geometry> geometries = null;
+		while (tokenizer.next() == Token.NAME) {
+			if (tokenizer.nameEquals("type")) {
+				tokenizer.next();
+				type = tokenizer.stringValue();
+			} else if (tokenizer.nameEquals("coordinates")) {
+				if (tokenizer.next() == Token.START_ARRAY) {
+					coordsSize = 0;
+					coordinates = readArray(tokenizer.next());
+					if (coordinates == POSITION) {
+						coordinates = sequence(0, coordsSize);
+					}
+				}
+			} else if (tokenizer.nameEquals("geometries")) {
+				geometries = new ArrayList<>();
+				if (tokenizer.next() == Token.START_ARRAY) {
+					while (tokenizer.next() == Token.START_OBJECT) {
+						geometries.add(readGeometry());
+					}
+				}
+			} else {
+				tokenizer.next();
+				tokenizer.skipChildren();
+			}
+		}
+		if (type == null) {
+			throw new IOException("Geometry without type before offset " + tokenizer.getOffset());
+		}
+		return build(type, coordinates, geometries);
+	}
+
+	/*
+	 * Reads the array whose first token has just been read. Returns POSITION for
+	 * an array of numbers, a CoordinateSequence for an array of positions and a
+	 * List of the nested results otherwise.
+	 */
+	private Object readArray(Token first) throws IOException {
+		if (first == Token.NUMBER) {
+			readPosition();
+			return POSITION;
+		}
+		if (first != Token.START_ARRAY) {
+			// empty array
+			return new ArrayList<Object>();
+		}
+		int start = coordsSize;
+		Object child = readArray(tokenizer.next());
+		if (child == POSITION) {
+			int dimension = coordsSize - start;
+			while (tokenizer.next() == Token.START_ARRAY) {
+				tokenizer.next();
+				readPosition(dimension);
+			}
+			CoordinateSequence sequence = sequence(start, dimension);
+			coordsSize = start;
+			return sequence;
+		}
+		List<Object> children = new ArrayList<>();
+		children.add(child);
+		while (tokenizer.next() == Token.START_ARRAY) {
+			children.add(readArray(tokenizer.next()));
+		}
+		return children;
+	}
+
+	/* the first position of a list decides its dimension, 2 or 3 */
+	private void readPosition() throws IOException {
+		int n = readNumbers();
+		int dimension = Math.max(2, Math.min(n, 3));
+		append(dimension, n);
+	}
+
+	private void readPosition(int dimension) throws IOException {
+		append(dimension, readNumbers());
+	}
+
+	/* the first number has just been read */
+	private int readNumbers() throws IOException {
+		int n = 0;
+		Token token = Token.NUMBER;
+		while (token == Token.NUMBER) {
+			if (n < position.length) {
+				position[n] = tokenizer.doubleValue();
+			}
+			n++;
+			token = tokenizer.next();
+		}
+		return n;
+	}
+
+	private void append(int dimension, int n) {
+		if (coordsSize + dimension > coords.length) {
+			coords = Arrays.copyOf(coords, Math.max(coords.length * 2, coordsSize + dimension));
+		}
+		for (int i = 0; i < dimension; i++) {
+			coords[coordsSize++] = i < n ? position[i] : Double.NaN;
+		}
+	}
+
+	private CoordinateSequence sequence(int start, int dimension) {
+		CoordinateSequenceFactory factory = geometryFactory.getCoordinateSequenceFactory();
+		if (factory instanceof QuantizedCoordinateSequenceFactory) {
+			return ((QuantizedCoordinateSequenceFactory) factory).create(coords, start, (coordsSize - start) / dimension,
+			    dimension);
+		}
+		return new PackedCoordinateSequence.Double(Arrays.copyOfRange(coords, start, coordsSize), dimension, 0);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Geometry build(String type, Object coordinates, List<Geometry> geometries) throws IOException {
+		switch (type) {
+		case "Point":
+			return geometryFactory.createPoint(asSequence(coordinates));
+		case "LineString":
+			return geometryFactory.createLineString(asSequence(coordinates));
+		case "Polygon":
+			return polygon((List<Object>) coordinates);
+		case "MultiPoint":
+			return geometryFactory.createMultiPoint(asSequence(coordinates));
+		case "MultiLineString": {
+			List<Object> parts = (List<Object>) coordinates;
+			LineString[] lines = new LineString[parts.size()];
+			for (int i = 0; i < lines.length; i++) {
+				lines[i] = geometryFactory.createLineString((CoordinateSequence) parts.get(i));
+			}
+			return geometryFactory.createMultiLineString(lines);
+		}
+		case "MultiPolygon": {
+			List<Object> parts = (List<Object>) coordinates;
+			Polygon[] polygons = new Polygon[parts.size()];
+			for (int i = 0; i < polygons.length; i++) {
+				polygons[i] = polygon((List<Object>) parts.get(i));
+			}
+			return geometryFactory.createMultiPolygon(polygons);
+		}
+		case "GeometryCollection":
+			return geometryFactory.createGeometryCollection(
+			    geometries == null ? new Geometry[0] : geometries.toArray(new Geometry[geometries.size()]));
+		default:
+			throw new IOException("Unsupported geometry type " + type);
+		}
+	}
+
+	private Polygon polygon(List<Object> rings) {
+		if (rings.isEmpty()) {
+			return geometryFactory.createPolygon();
+		}
+		LinearRing shell = geometryFactory.createLinearRing((CoordinateSequence) rings.get(0));
+		LinearRing[] holes = new LinearRing[rings.size() - 1];
+		for (int i = 0; i < holes.length; i++) {
+			holes[i] = geometryFactory.createLinearRing((CoordinateSequence) rings.get(i + 1));
+		}
+		return geometryFactory.createPolygon(shell, holes);
+	}
+
+	/* an empty coordinates array is read as an empty list */
+	private CoordinateSequence asSequence(Object coordinates) {
+		if (coordinates instanceof CoordinateSequence) {
+			return (CoordinateSequence) coordinates;
+		}
+		return geometryFactory.getCoordinateSequenceFactory().create(0, 2);
+	}
+}
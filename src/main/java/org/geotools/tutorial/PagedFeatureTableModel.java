@@ -0,0 +1,211 @@
+package org.geotools.tutorial;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+import org.geotools.data.Query;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A table model over the result of a query that only holds the pages of rows
+ * around the visible ones.
+ * <p>
+ * Rows are read a page at a time on a background thread; a cell of a page not
+ * yet read is empty until the page arrives. The pages next to a requested page
+ * are read ahead, and the least recently used pages are dropped once more than
+ * a few are held, so memory does not grow with the size of the result. Stores
+ * that support an offset, e.g. PostGIS, read a page with
+ * {@link Query#setStartIndex(Integer)} and {@link Query#setMaxFeatures(int)};
+ * other stores are read through a cursor that moves forward and is reopened
+ * when scrolling back.
+ * <p>
+ * The pages are only accessed on the event dispatch thread. Call
+ * {@link #dispose()} when the model is replaced.
+ */
+public class PagedFeatureTableModel extends AbstractTableModel {
+	private static final long serialVersionUID = 1L;
+
+	final static private Logger LOGGER = LoggerFactory.getLogger(PagedFeatureTableModel.class);
+
+	public static final int DEFAULT_PAGE_ROWS = 200;
+	private static final int MAX_PAGES = 8;
+
+	private final SimpleFeatureSource source;
+	private final Query query;
+	private final String[] columns;
+	private final int rowCount;
+	private final int pageRows;
+	private final boolean offsetSupported;
+
+	/* by page number, in access order; only touched on the event dispatch thread */
+	private final Map<Integer, Object[][]> pages = new LinkedHashMap<Integer, Object[][]>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+			return size() > MAX_PAGES;
+		}
+	};
+	private final Set<Integer> requested = new HashSet<>();
+	/* reads the pages one after another, as the cursor allows */
+	private final ExecutorService reader = Executors.newSingleThreadExecutor();
+	/* the page last asked for, so pages scrolled past are not read */
+	private volatile int wantedPage;
+	private volatile boolean disposed;
+
+	/* the cursor of a store without offsets; only used by the reader */
+	private SimpleFeatureIterator cursor;
+	private int cursorRow;
+
+	public PagedFeatureTableModel(SimpleFeatureSource source, Query query) throws IOException {
+		this(source, query, DEFAULT_PAGE_ROWS);
+	}
+
+	public PagedFeatureTableModel(SimpleFeatureSource source, Query query, int pageRows) throws IOException {
+		this.source = source;
+		this.query = query;
+		this.pageRows = pageRows;
+		this.offsetSupported = source.getQueryCapabilities().isOffsetSupported();
+		String[] properties = query.getPropertyNames();
+		if (properties == null) {
+			properties = source.getSchema().getAttributeDescriptors().stream().map(AttributeDescriptor::getLocalName)
+			    .toArray(String[]::new);
+		}
+		this.columns = new String[properties.length + 1];
+		columns[0] = "FeatureIdentifier";
+		System.arraycopy(properties, 0, columns, 1, properties.length);
+		int count = source.getCount(query);
+		// -1 if the store cannot count quickly
+		this.rowCount = count >= 0 ? count : source.getFeatures(query).size();
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	public String getColumnName(int column) {
+		return columns[column];
+	}
+
+	/**
+	 * @return the value, or {@code null} while its page is being read
+	 */
+	public Object getValueAt(int row, int column) {
+		int page = row / pageRows;
+		Object[][] rows = pages.get(page);
+		if (rows == null) {
+			request(page);
+			return null;
+		}
+		// read ahead in the direction of scrolling, both ways
+		request(page + 1);
+		request(page - 1);
+		int index = row - page * pageRows;
+		return index < rows.length ? rows[index][column] : null;
+	}
+
+	/**
+	 * Stops reading pages.
+	 */
+	public void dispose() {
+		// pages still queued are skipped
+		disposed = true;
+		reader.execute(this::closeCursor);
+		reader.shutdown();
+	}
+
+	private void request(int page) {
+		if (page < 0 || page * (long) pageRows >= rowCount || pages.containsKey(page) || !requested.add(page)) {
+			return;
+		}
+		wantedPage = page;
+		reader.execute(() -> {
+			Object[][] rows = null;
+			// pages scrolled past while waiting are not read
+			if (!disposed && Math.abs(page - wantedPage) <= MAX_PAGES / 2) {
+				try {
+					rows = read(page);
+				} catch (IOException | RuntimeException e) {
+					LOGGER.error("Could not read page " + page, e);
+				}
+			}
+			Object[][] read = rows;
+			SwingUtilities.invokeLater(() -> {
+				requested.remove(page);
+				if (read != null) {
+					pages.put(page, read);
+					int first = page * pageRows;
+					fireTableRowsUpdated(first, first + read.length - 1);
+				}
+			});
+		});
+	}
+
+	private Object[][] read(int page) throws IOException {
+		int first = page * pageRows;
+		int count = Math.min(pageRows, rowCount - first);
+		Object[][] rows = new Object[count][];
+		int n = 0;
+		if (offsetSupported) {
+			Query pageQuery = new Query(query);
+			pageQuery.setStartIndex(first);
+			pageQuery.setMaxFeatures(count);
+			try (SimpleFeatureIterator features = source.getFeatures(pageQuery).features()) {
+				while (n < count && features.hasNext()) {
+					rows[n++] = row(features.next());
+				}
+			}
+		} else {
+			if (cursor == null || cursorRow > first) {
+				closeCursor();
+				cursor = source.getFeatures(query).features();
+			}
+			while (cursorRow < first && cursor.hasNext()) {
+				cursor.next();
+				cursorRow++;
+			}
+			while (n < count && cursor.hasNext()) {
+				rows[n++] = row(cursor.next());
+				cursorRow++;
+			}
+		}
+		// the result may have shrunk since it was counted
+		for (; n < count; n++) {
+			rows[n] = new Object[columns.length];
+		}
+		return rows;
+	}
+
+	private Object[] row(SimpleFeature feature) {
+		Object[] row = new Object[columns.length];
+		row[0] = feature.getID();
+		for (int i = 1; i < columns.length; i++) {
+			row[i] = feature.getAttribute(columns[i]);
+		}
+		return row;
+	}
+
+	private void closeCursor() {
+		if (cursor != null) {
+			cursor.close();
+			cursor = null;
+			cursorRow = 0;
+		}
+	}
+}
@@ -0,0 +1,250 @@
+package org.geotools.tutorial;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a CSV point file on a pool of worker threads.
+ * <p>
+ * The file is memory-mapped and cut into regions that always end on a line
+ * boundary. Each region is parsed on its own by a {@link CsvPointReader}, so
+ * workers share nothing but the read-only mapping. Regions are handed out in
+ * file order, or in the order they finish when the order of the rows does not
+ * matter; either way only a few regions per thread are held in memory.
+ */
+public class ParallelCsvPointReader implements SimpleFeatureIterator {
+	final static private Logger LOGGER = LoggerFactory.getLogger(ParallelCsvPointReader.class);
+
+	public static final int DEFAULT_REGION_BYTES = 8 * 1024 * 1024;
+	/* bytes mapped at a time while looking for the end of a line */
+	private static final int SCAN_BYTES = 64 * 1024;
+
+	private final FileChannel channel;
+	private final long size;
+	private final SimpleFeatureType schema;
+	private final int latColumn;
+	private final int lonColumn;
+	private final char separator;
+	private final GeometryFactory geometryFactory;
+	private final int regionBytes;
+	private final boolean ordered;
+	private final String header;
+
+	private final ExecutorService pool;
+	private final CompletionService<List<SimpleFeature>> completion;
+	/* regions in file order; at most window regions are in flight */
+	private final Deque<Future<List<SimpleFeature>>> pending = new ArrayDeque<>();
+	private final int window;
+	private Iterator<SimpleFeature> current = Collections.emptyIterator();
+	private long regionStart;
+
+	public ParallelCsvPointReader(File csv, SimpleFeatureType schema, int latColumn, int lonColumn, boolean header,
+	    int threads, boolean ordered) throws IOException {
+		this(csv, schema, latColumn, lonColumn, header, ',', new GeometryFactory(), threads, ordered,
+		    DEFAULT_REGION_BYTES);
+	}
+
+	/**
+	 * @param threads
+	 *            number of parsing threads
+	 * @param ordered
+	 *            whether features are returned in file order; otherwise a region
+	 *            is returned as soon as it has been parsed
+	 * @param regionBytes
+	 *            approximate number of bytes parsed by a worker at a time
+	 * @see CsvPointReader#CsvPointReader(InputStream, SimpleFeatureType, int, int,
+	 *      boolean, char, GeometryFactory)
+	 */
+	public ParallelCsvPointReader(File csv, SimpleFeatureType schema, int latColumn, int lonColumn, boolean header,
+	    char separator, GeometryFactory geometryFactory, int threads, boolean ordered, int regionBytes)
+	    throws IOException {
+		this.channel = FileChannel.open(csv.toPath(), StandardOpenOption.READ);
+		this.size = channel.size();
+		this.schema = schema;
+		this.latColumn = latColumn;
+		this.lonColumn = lonColumn;
+		this.separator = separator;
+		this.geometryFactory = geometryFactory;
+		this.regionBytes = regionBytes;
+		this.ordered = ordered;
+		this.pool = Executors.newFixedThreadPool(threads);
+		this.completion = new ExecutorCompletionService<>(pool);
+		this.window = threads * 2;
+
+		if (header) {
+			// the header is parsed by a reader of its own over the first line
+			regionStart = lineEnd(1);
+			try (CsvPointReader reader = reader(0, regionStart, true)) {
+				this.header = reader.getHeader();
+			}
+		} else {
+			this.header = null;
+		}
+	}
+
+	/**
+	 * @return the header line, or {@code null} if there is none
+	 */
+	public String getHeader() {
+		return header;
+	}
+
+	public boolean hasNext() {
+		while (!current.hasNext()) {
+			fill();
+			if (pending.isEmpty()) {
+				return false;
+			}
+			Future<List<SimpleFeature>> next;
+			if (ordered) {
+				next = pending.removeFirst();
+			} else {
+				next = take(completion);
+				pending.remove(next);
+			}
+			current = get(next).iterator();
+		}
+		return true;
+	}
+
+	public SimpleFeature next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return current.next();
+	}
+
+	public void close() {
+		for (Future<List<SimpleFeature>> future : pending) {
+			future.cancel(true);
+		}
+		pending.clear();
+		pool.shutdownNow();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			LOGGER.warn("Could not close CSV input", e);
+		}
+	}
+
+	private void fill() {
+		try {
+			while (pending.size() < window && regionStart < size) {
+				long start = regionStart;
+				long end = lineEnd(Math.min(size, start + regionBytes));
+				regionStart = end;
+				// the completion queue is only drained when unordered
+				Callable<List<SimpleFeature>> task = () -> parse(start, end);
+				pending.addLast(ordered ? pool.submit(task) : completion.submit(task));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private List<SimpleFeature> parse(long start, long end) throws IOException {
+		List<SimpleFeature> features = new ArrayList<>();
+		try (CsvPointReader reader = reader(start, end, false)) {
+			while (reader.hasNext()) {
+				features.add(reader.next());
+			}
+		}
+		return features;
+	}
+
+	private CsvPointReader reader(long start, long end, boolean header) throws IOException {
+		MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+		return new CsvPointReader(new ByteBufferInputStream(region), schema, latColumn, lonColumn, header, separator,
+		    geometryFactory);
+	}
+
+	/*
+	 * Returns the offset just behind the first newline at or after offset - 1, or
+	 * the file size if there is none.
+	 */
+	private long lineEnd(long offset) throws IOException {
+		long at = Math.max(0, offset - 1);
+		while (at < size) {
+			int length = (int) Math.min(SCAN_BYTES, size - at);
+			MappedByteBuffer scan = channel.map(FileChannel.MapMode.READ_ONLY, at, length);
+			for (int i = 0; i < length; i++) {
+				if (scan.get(i) == '\n') {
+					return at + i + 1;
+				}
+			}
+			at += length;
+		}
+		return size;
+	}
+
+	private static Future<List<SimpleFeature>> take(CompletionService<List<SimpleFeature>> completion) {
+		try {
+			return completion.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while parsing CSV", e);
+		}
+	}
+
+	private static List<SimpleFeature> get(Future<List<SimpleFeature>> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while parsing CSV", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not parse CSV region", e.getCause());
+		}
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+	}
+}
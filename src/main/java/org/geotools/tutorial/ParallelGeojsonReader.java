@@ -0,0 +1,280 @@
+package org.geotools.tutorial;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.geotools.feature.FeatureIterator;
+import org.geotools.geojson.feature.FeatureJSON;
+import org.geotools.geojson.geom.GeometryJSON;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the features of a GeoJSON FeatureCollection on a pool of worker threads.
+ * <p>
+ * The {@code features} array is cut into byte ranges that always end on a
+ * feature boundary. Each range is decoded on its own with {@link FeatureJSON},
+ * and the decoded chunks are handed out in file order, so a single writer can
+ * consume this iterator just like
+ * {@link FeatureJSON#streamFeatureCollection(Object)}.
+ */
+public class ParallelGeojsonReader implements FeatureIterator<SimpleFeature> {
+	final static private Logger LOGGER = LoggerFactory.getLogger(ParallelGeojsonReader.class);
+
+	private static final int DEFAULT_CHUNK_BYTES = 4 * 1024 * 1024;
+
+	private static final byte[] CHUNK_HEAD = "{\"type\":\"FeatureCollection\",\"features\":["
+	    .getBytes(StandardCharsets.UTF_8);
+	private static final byte[] CHUNK_TAIL = "]}".getBytes(StandardCharsets.UTF_8);
+
+	private final FileChannel channel;
+	private final FeatureBoundaryScanner scanner;
+	private final ExecutorService pool;
+	private final ThreadLocal<FeatureJSON> decoders;
+
+	/* decoded chunks in file order; at most window chunks are in flight */
+	private final Deque<Future<List<SimpleFeature>>> pending = new ArrayDeque<>();
+	private final int window;
+	private Iterator<SimpleFeature> current = Collections.emptyIterator();
+
+	public ParallelGeojsonReader(File geojson, SimpleFeatureType schema, int threads, int decimals)
+	    throws IOException {
+		this(geojson, schema, threads, decimals, DEFAULT_CHUNK_BYTES);
+	}
+
+	/**
+	 * @param schema
+	 *            the schema every feature is parsed against
+	 * @param threads
+	 *            number of decoding threads
+	 * @param decimals
+	 *            number of decimals used by {@link GeometryJSON}
+	 * @param chunkBytes
+	 *            approximate number of bytes handed to a worker at a time
+	 */
+	public ParallelGeojsonReader(File geojson, SimpleFeatureType schema, int threads, int decimals, int chunkBytes)
+	    throws IOException {
+		channel = FileChannel.open(geojson.toPath(), StandardOpenOption.READ);
+		scanner = new FeatureBoundaryScanner(new FileInputStream(geojson), chunkBytes);
+		pool = Executors.newFixedThreadPool(threads);
+		window = threads * 2;
+		decoders = ThreadLocal.withInitial(() -> {
+			FeatureJSON fjson = new FeatureJSON(new GeometryJSON(decimals));
+			fjson.setFeatureType(schema);
+			return fjson;
+		});
+	}
+
+	public boolean hasNext() {
+		while (!current.hasNext()) {
+			fill();
+			if (pending.isEmpty()) {
+				return false;
+			}
+			current = take(pending.removeFirst()).iterator();
+		}
+		return true;
+	}
+
+	public SimpleFeature next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return current.next();
+	}
+
+	public void close() {
+		for (Future<List<SimpleFeature>> future : pending) {
+			future.cancel(true);
+		}
+		pending.clear();
+		pool.shutdownNow();
+		try {
+			scanner.close();
+			channel.close();
+		} catch (IOException e) {
+			LOGGER.warn("Could not close GeoJSON input", e);
+		}
+	}
+
+	private void fill() {
+		try {
+			while (pending.size() < window) {
+				long[] range = scanner.next();
+				if (range == null) {
+					break;
+				}
+				pending.addLast(pool.submit(() -> decode(range[0], range[1])));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private List<SimpleFeature> take(Future<List<SimpleFeature>> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while decoding GeoJSON", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not decode GeoJSON chunk", e.getCause());
+		}
+	}
+
+	/*
+	 * Positional reads on a FileChannel are safe to run concurrently. The range is
+	 * wrapped into a small FeatureCollection of its own so FeatureJSON can parse it.
+	 */
+	private List<SimpleFeature> decode(long start, long end) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, start + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file at " + (start + buffer.position()));
+			}
+		}
+		InputStream in = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+		    new ByteArrayInputStream(CHUNK_HEAD), new ByteArrayInputStream(buffer.array()),
+		    new ByteArrayInputStream(CHUNK_TAIL))));
+
+		List<SimpleFeature> features = new ArrayList<>();
+		try (FeatureIterator<SimpleFeature> iterator = decoders.get()
+		    .streamFeatureCollection(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			while (iterator.hasNext()) {
+				features.add(iterator.next());
+			}
+		}
+		return features;
+	}
+
+	/**
+	 * Finds feature boundaries in the {@code features} array by tracking nesting
+	 * depth and string state only; nothing is decoded.
+	 */
+	static class FeatureBoundaryScanner {
+		private final InputStream in;
+		private final int chunkBytes;
+		private final byte[] buf = new byte[64 * 1024];
+		private int bufPos;
+		private int bufLen;
+
+		private long pos;
+		private int depth;
+		private boolean inString;
+		private boolean escape;
+		private boolean inFeatures;
+		private boolean done;
+		private final ByteArrayOutputStream key = new ByteArrayOutputStream();
+		private String lastKey;
+
+		FeatureBoundaryScanner(InputStream in, int chunkBytes) {
+			this.in = in;
+			this.chunkBytes = chunkBytes;
+		}
+
+		/**
+		 * @return the next {start, end} byte range holding whole features, or null
+		 *         once the features array has been consumed
+		 */
+		long[] next() throws IOException {
+			if (done) {
+				return null;
+			}
+			long chunkStart = -1;
+			long chunkEnd = -1;
+			int b;
+			while ((b = read()) != -1) {
+				long at = pos++;
+				if (inString) {
+					if (escape) {
+						escape = false;
+					} else if (b == '\\') {
+						escape = true;
+					} else if (b == '"') {
+						inString = false;
+						if (depth == 1) {
+							lastKey = key.toString("UTF-8");
+						}
+					} else if (depth == 1 && key.size() < 32) {
+						key.write(b);
+					}
+					continue;
+				}
+				switch (b) {
+				case '"':
+					inString = true;
+					key.reset();
+					break;
+				case '{':
+				case '[':
+					if (inFeatures && depth == 2 && chunkStart < 0) {
+						chunkStart = at;
+					} else if (!inFeatures && depth == 1 && b == '[' && "features".equals(lastKey)) {
+						inFeatures = true;
+					}
+					depth++;
+					break;
+				case '}':
+				case ']':
+					depth--;
+					if (inFeatures && depth == 2) {
+						chunkEnd = at + 1;
+						if (chunkEnd - chunkStart >= chunkBytes) {
+							return new long[] { chunkStart, chunkEnd };
+						}
+					} else if (inFeatures && depth == 1) {
+						inFeatures = false;
+						done = true;
+						return chunkStart < 0 ? null : new long[] { chunkStart, chunkEnd };
+					}
+					break;
+				default:
+					break;
+				}
+			}
+			done = true;
+			return chunkStart < 0 ? null : new long[] { chunkStart, chunkEnd };
+		}
+
+		void close() throws IOException {
+			in.close();
+		}
+
+		private int read() throws IOException {
+			if (bufPos == bufLen) {
+				bufLen = in.read(buf, 0, buf.length);
+				bufPos = 0;
+				if (bufLen <= 0) {
+					bufLen = 0;
+					return -1;
+				}
+			}
+			return buf[bufPos++] & 0xff;
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package org.geotools.tutorial;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.util.ProgressListener;
+
+/**
+ * Checks {@link Geometry#isValid()} for every feature of a collection on a
+ * fork/join pool, using the cheap checks of {@link TieredGeometryValidator}
+ * before the full topology check.
+ * <p>
+ * The features are read on the calling thread, as feature readers are not
+ * thread safe, and handed to the pool in chunks that split further between
+ * idle workers. Only a few chunks per worker are held at a time. Counts are
+ * kept in {@link LongAdder}s and the ids of invalid features are collected in
+ * a concurrent queue, so workers never wait for each other. Progress is
+ * reported to the listener from the calling thread, which also stops reading
+ * when the listener is canceled.
+ * <p>
+ * With a {@link ValidationCache} only features that are new or whose geometry
+ * has changed since the cached run are checked.
+ */
+public class ParallelGeometryValidator {
+
+	private static final int CHUNK_FEATURES = 1024;
+	/* chunks are split until they are at most this small */
+	private static final int SPLIT_FEATURES = 64;
+
+	private final ForkJoinPool pool;
+	private final int maxChunks;
+
+	public ParallelGeometryValidator() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public ParallelGeometryValidator(int parallelism) {
+		this.pool = new ForkJoinPool(parallelism);
+		this.maxChunks = parallelism * 4;
+	}
+
+	/**
+	 * The outcome of a validation.
+	 */
+	public static class Result {
+		private final long checked;
+		private final long invalid;
+		private final List<String> invalidIds;
+		private final boolean canceled;
+
+		Result(long checked, long invalid, List<String> invalidIds, boolean canceled) {
+			this.checked = checked;
+			this.invalid = invalid;
+			this.invalidIds = Collections.unmodifiableList(invalidIds);
+			this.canceled = canceled;
+		}
+
+		/**
+		 * @return the number of geometries checked
+		 */
+		public long getChecked() {
+			return checked;
+		}
+
+		public long getInvalid() {
+			return invalid;
+		}
+
+		/**
+		 * @return the ids of the invalid features, in no particular order
+		 */
+		public List<String> getInvalidIds() {
+			return invalidIds;
+		}
+
+		/**
+		 * @return whether the validation was canceled before all features were
+		 *         checked
+		 */
+		public boolean isCanceled() {
+			return canceled;
+		}
+	}
+
+	/**
+	 * @param progress
+	 *            told about progress and asked for cancellation, or {@code null}
+	 */
+	public Result validate(SimpleFeatureCollection features, ProgressListener progress) {
+		return validate(features, progress, null);
+	}
+
+	/**
+	 * @param progress
+	 *            told about progress and asked for cancellation, or {@code null}
+	 * @param cache
+	 *            consulted before and updated after checking a geometry, or
+	 *            {@code null}
+	 */
+	public Result validate(SimpleFeatureCollection features, ProgressListener progress, ValidationCache cache) {
+		LongAdder checked = new LongAdder();
+		LongAdder invalid = new LongAdder();
+		Queue<String> invalidIds = new ConcurrentLinkedQueue<>();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Semaphore chunks = new Semaphore(maxChunks);
+
+		int size = features.size();
+		boolean canceled = false;
+		if (progress != null) {
+			progress.started();
+		}
+		try (SimpleFeatureIterator iterator = features.features()) {
+			while (iterator.hasNext() && failure.get() == null) {
+				if (progress != null && progress.isCanceled()) {
+					canceled = true;
+					break;
+				}
+				String[] ids = new String[CHUNK_FEATURES];
+				Geometry[] geometries = new Geometry[CHUNK_FEATURES];
+				int n = 0;
+				for (; n < CHUNK_FEATURES && iterator.hasNext(); n++) {
+					SimpleFeature feature = iterator.next();
+					ids[n] = feature.getID();
+					geometries[n] = (Geometry) feature.getDefaultGeometry();
+				}
+				chunks.acquireUninterruptibly();
+				ValidateTask task = new ValidateTask(ids, geometries, 0, n, checked, invalid, invalidIds, cache);
+				pool.execute(() -> {
+					try {
+						task.invoke();
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						chunks.release();
+					}
+				});
+				report(progress, checked.sum(), size);
+			}
+			// wait for the chunks still in flight
+			while (!chunks.tryAcquire(maxChunks, 100, TimeUnit.MILLISECONDS)) {
+				report(progress, checked.sum(), size);
+			}
+			chunks.release(maxChunks);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while validating geometries", e);
+		}
+		if (failure.get() != null) {
+			throw new IllegalStateException("Could not validate geometries", failure.get());
+		}
+		if (progress != null && !canceled) {
+			progress.complete();
+		}
+		return new Result(checked.sum(), invalid.sum(), new ArrayList<>(invalidIds), canceled);
+	}
+
+	/**
+	 * Stops the worker threads.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	private static void report(ProgressListener progress, long checked, int size) {
+		if (progress != null && size > 0) {
+			progress.progress(Math.min(100f, checked * 100f / size));
+		}
+	}
+
+	private static class ValidateTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final String[] ids;
+		private final Geometry[] geometries;
+		private final int from;
+		private final int to;
+		private final LongAdder checked;
+		private final LongAdder invalid;
+		private final Collection<String> invalidIds;
+		private final ValidationCache cache;
+
+		ValidateTask(String[] ids, Geometry[] geometries, int from, int to, LongAdder checked, LongAdder invalid,
+		    Collection<String> invalidIds, ValidationCache cache) {
+			this.ids = ids;
+			this.geometries = geometries;
+			this.from = from;
+			this.to = to;
+			this.checked = checked;
+			this.invalid = invalid;
+			this.invalidIds = invalidIds;
+			this.cache = cache;
+		}
+
+		protected void compute() {
+			if (to - from > SPLIT_FEATURES) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ValidateTask(ids, geometries, from, middle, checked, invalid, invalidIds, cache),
+				    new ValidateTask(ids, geometries, middle, to, checked, invalid, invalidIds, cache));
+				return;
+			}
+			for (int i = from; i < to; i++) {
+				Geometry geometry = geometries[i];
+				if (geometry != null && !isValid(ids[i], geometry)) {
+					invalid.increment();
+					invalidIds.add(ids[i]);
+				}
+			}
+			checked.add(to - from);
+		}
+
+		private boolean isValid(String id, Geometry geometry) {
+			if (cache == null) {
+				return TieredGeometryValidator.isValid(geometry);
+			}
+			long hash = ValidationCache.hash(geometry);
+			Boolean valid = cache.lookup(id, hash);
+			if (valid == null) {
+				valid = TieredGeometryValidator.isValid(geometry);
+				cache.put(id, hash, valid);
+			}
+			return valid;
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package org.geotools.tutorial;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.TransformException;
+
+/**
+ * Returns the features of a collection with their geometries transformed on a
+ * pool of worker threads, in the order of the collection.
+ * <p>
+ * The export is a pipeline of three stages. A reader thread reads the source
+ * features, as feature readers are not thread safe, and hands them to the
+ * workers in chunks. The workers transform the geometries of a chunk in one
+ * batch with {@link BulkReprojector} and build the features of the target
+ * type. The thread calling {@link #next()}, typically writing to a single
+ * feature writer, takes the chunks in the order they were read. Chunks are
+ * passed through a bounded queue, so the reader waits while the window of
+ * chunks in flight is full and only a few chunks per worker are held in
+ * memory.
+ */
+public class ParallelReprojectingIterator implements SimpleFeatureIterator {
+
+	private static final int CHUNK_FEATURES = 512;
+	/* marks the end of the source features */
+	private static final Future<List<SimpleFeature>> END = CompletableFuture.completedFuture(null);
+
+	private final SimpleFeatureCollection features;
+	private final SimpleFeatureType targetType;
+	private final MathTransform transform;
+	private final int geometryIndex;
+
+	private final ExecutorService reader = Executors.newSingleThreadExecutor();
+	private final ExecutorService pool;
+	/* chunks in source order; holds at most window chunks */
+	private final BlockingQueue<Future<List<SimpleFeature>>> pending;
+	private Iterator<SimpleFeature> current = Collections.emptyIterator();
+	private boolean done;
+	private volatile boolean closed;
+
+	public ParallelReprojectingIterator(SimpleFeatureCollection features, SimpleFeatureType targetType,
+	    MathTransform transform) {
+		this(features, targetType, transform, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param targetType
+	 *            the type of the features returned, with the attributes of the
+	 *            source type in the same order
+	 * @param threads
+	 *            number of transforming threads
+	 */
+	public ParallelReprojectingIterator(SimpleFeatureCollection features, SimpleFeatureType targetType,
+	    MathTransform transform, int threads) {
+		this.features = features;
+		this.targetType = targetType;
+		this.transform = transform;
+		SimpleFeatureType schema = features.getSchema();
+		this.geometryIndex = schema.indexOf(schema.getGeometryDescriptor().getLocalName());
+		this.pool = Executors.newFixedThreadPool(threads);
+		this.pending = new ArrayBlockingQueue<>(threads * 2);
+		reader.execute(this::read);
+	}
+
+	public boolean hasNext() {
+		while (!current.hasNext()) {
+			if (done) {
+				return false;
+			}
+			Future<List<SimpleFeature>> next = take();
+			// a failed chunk ends the features as well
+			done = true;
+			if (next == END) {
+				return false;
+			}
+			current = get(next).iterator();
+			done = false;
+		}
+		return true;
+	}
+
+	public SimpleFeature next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return current.next();
+	}
+
+	/**
+	 * Stops the reader and the workers; the source iterator is closed by the
+	 * reader thread.
+	 */
+	public void close() {
+		closed = true;
+		reader.shutdownNow();
+		for (Future<List<SimpleFeature>> future : pending) {
+			future.cancel(true);
+		}
+		pending.clear();
+		pool.shutdownNow();
+	}
+
+	/* the reader stage */
+	private void read() {
+		Future<List<SimpleFeature>> last = END;
+		try (SimpleFeatureIterator iterator = features.features()) {
+			while (iterator.hasNext() && !closed) {
+				List<SimpleFeature> chunk = new ArrayList<>(CHUNK_FEATURES);
+				while (chunk.size() < CHUNK_FEATURES && iterator.hasNext()) {
+					chunk.add(iterator.next());
+				}
+				pending.put(pool.submit(() -> transform(chunk)));
+			}
+		} catch (InterruptedException e) {
+			// closed while waiting for the workers
+			return;
+		} catch (Throwable e) {
+			CompletableFuture<List<SimpleFeature>> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			last = failed;
+		}
+		try {
+			pending.put(last);
+		} catch (InterruptedException e) {
+			// closed
+		}
+	}
+
+	/* the worker stage; the geometries of a chunk are transformed in one batch */
+	private List<SimpleFeature> transform(List<SimpleFeature> chunk) throws TransformException {
+		Geometry[] geometries = new Geometry[chunk.size()];
+		for (int i = 0; i < geometries.length; i++) {
+			geometries[i] = (Geometry) chunk.get(i).getAttribute(geometryIndex);
+		}
+		geometries = BulkReprojector.transform(geometries, transform);
+
+		List<SimpleFeature> transformed = new ArrayList<>(chunk.size());
+		for (int i = 0; i < geometries.length; i++) {
+			SimpleFeature feature = chunk.get(i);
+			Object[] values = feature.getAttributes().toArray();
+			values[geometryIndex] = geometries[i];
+			transformed.add(SimpleFeatureBuilder.build(targetType, values, feature.getID()));
+		}
+		return transformed;
+	}
+
+	private Future<List<SimpleFeature>> take() {
+		try {
+			return pending.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reprojecting", e);
+		}
+	}
+
+	private static List<SimpleFeature> get(Future<List<SimpleFeature>> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reprojecting", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not reproject features", e.getCause());
+		}
+	}
+}
@@ -0,0 +1,494 @@
+package org.geotools.tutorial;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.referencing.CRS;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.io.WKBConstants;
+import org.locationtech.jts.io.WKBWriter;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.referencing.FactoryException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads features into a PostGIS table over several connections at once.
+ * <p>
+ * The features are read on the calling thread and cut into batches, which a
+ * pool of writers sends to the database, one connection per writer, each
+ * batch in a transaction of its own. A batch goes through {@code COPY ... FROM
+ * STDIN} with the geometry as hex encoded EWKB, or through a batched prepared
+ * INSERT. Either way the generic JDBC data store, which inserts row by row, is
+ * bypassed.
+ */
+public class PostgisBulkLoader {
+	final static private Logger LOGGER = LoggerFactory.getLogger(PostgisBulkLoader.class);
+
+	public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+	public enum Mode {
+		COPY, INSERT
+	}
+
+	private final String url;
+	private final Properties properties;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private int connections = 4;
+	private Mode mode = Mode.COPY;
+	private boolean createTable = true;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 5) {
+			System.err.println("Usage: PostgisBulkLoader <jdbc url> <user> <password> <table> <input.geojson|input.csv>"
+			    + " [csv schema] [batch size] [connections] [copy|insert]");
+			System.err.println("  e.g. the csv schema of Feature_Tutorial is"
+			    + " the_geom:Point:srid=4326,name:String,number:Integer");
+			return;
+		}
+		Properties properties = new Properties();
+		properties.setProperty("user", args[1]);
+		properties.setProperty("password", args[2]);
+		// lets the driver send a batch of inserts as multi-row statements
+		properties.setProperty("reWriteBatchedInserts", "true");
+
+		PostgisBulkLoader loader = new PostgisBulkLoader(args[0], properties);
+		if (args.length > 6) {
+			loader.setBatchSize(Integer.parseInt(args[6]));
+		}
+		if (args.length > 7) {
+			loader.setConnections(Integer.parseInt(args[7]));
+		}
+		if (args.length > 8) {
+			loader.setMode(Mode.valueOf(args[8].toUpperCase()));
+		}
+
+		File input = new File(args[4]);
+		String table = args[3];
+		long start = System.nanoTime();
+		long count;
+		if (input.getName().toLowerCase().endsWith(".csv")) {
+			if (args.length < 6) {
+				System.err.println("A CSV input needs a schema");
+				return;
+			}
+			SimpleFeatureType schema = DataUtilities.createType(table, args[5]);
+			try (CsvPointReader features = new CsvPointReader(new FileInputStream(input), schema, 0, 1, true)) {
+				count = loader.load(table, schema, features);
+			}
+		} else {
+			SimpleFeatureType schema = GeojsonToShp.readSchema(input);
+			try (MappedGeoJsonReader features = new MappedGeoJsonReader(input, schema)) {
+				count = loader.load(table, schema, features);
+			}
+		}
+		double seconds = Math.max((System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1), 1e-9);
+		System.out.printf("Loaded %d features in %.1f s, %.0f features/s%n", count, seconds, count / seconds);
+	}
+
+	/**
+	 * @param url
+	 *            the JDBC url, e.g. {@code jdbc:postgresql://localhost/gis}
+	 * @param properties
+	 *            connection properties such as user and password
+	 */
+	public PostgisBulkLoader(String url, Properties properties) {
+		this.url = url;
+		this.properties = properties;
+	}
+
+	/**
+	 * @param batchSize
+	 *            number of features sent and committed at a time
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param connections
+	 *            number of connections writing in parallel
+	 */
+	public void setConnections(int connections) {
+		if (connections <= 0) {
+			throw new IllegalArgumentException("Number of connections must be positive: " + connections);
+		}
+		this.connections = connections;
+	}
+
+	public void setMode(Mode mode) {
+		this.mode = mode;
+	}
+
+	/**
+	 * @param createTable
+	 *            whether a missing table is created from the schema
+	 */
+	public void setCreateTable(boolean createTable) {
+		this.createTable = createTable;
+	}
+
+	/**
+	 * Loads all features; closing the iterator is left to the caller. Batches
+	 * committed before a failure stay in the table.
+	 *
+	 * @param table
+	 *            the target table, optionally qualified by a schema
+	 * @return the number of features loaded
+	 */
+	public long load(String table, SimpleFeatureType schema, FeatureIterator<SimpleFeature> features)
+	    throws IOException {
+		Columns columns = new Columns(table, schema);
+		if (createTable) {
+			try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+				statement.execute(columns.createTable());
+			} catch (SQLException e) {
+				throw new IOException("Could not create table " + table, e);
+			}
+		}
+
+		LongAdder loaded = new LongAdder();
+		BlockingQueue<List<SimpleFeature>> batches = new ArrayBlockingQueue<>(connections * 2);
+		ExecutorService pool = Executors.newFixedThreadPool(connections);
+		List<Future<?>> writers = new ArrayList<>();
+		try {
+			for (int i = 0; i < connections; i++) {
+				writers.add(pool.submit(() -> {
+					write(columns, batches, loaded);
+					return null;
+				}));
+			}
+
+			List<SimpleFeature> batch = new ArrayList<>(batchSize);
+			while (features.hasNext()) {
+				batch.add(features.next());
+				if (batch.size() == batchSize) {
+					offer(batches, batch, writers);
+					batch = new ArrayList<>(batchSize);
+				}
+			}
+			if (!batch.isEmpty()) {
+				offer(batches, batch, writers);
+			}
+			// an empty batch tells a writer to stop
+			for (int i = 0; i < connections; i++) {
+				offer(batches, new ArrayList<>(), writers);
+			}
+			for (Future<?> writer : writers) {
+				writer.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading " + table, e);
+		} catch (ExecutionException e) {
+			throw new IOException("Could not load " + table, e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		return loaded.sum();
+	}
+
+	/*
+	 * Waits for room in the queue, but gives up as soon as a writer has failed, so
+	 * a broken connection does not block the reader forever.
+	 */
+	private static void offer(BlockingQueue<List<SimpleFeature>> batches, List<SimpleFeature> batch,
+	    List<Future<?>> writers) throws InterruptedException, ExecutionException {
+		while (!batches.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+			for (Future<?> writer : writers) {
+				if (writer.isDone()) {
+					writer.get();
+				}
+			}
+		}
+	}
+
+	private void write(Columns columns, BlockingQueue<List<SimpleFeature>> batches, LongAdder loaded)
+	    throws SQLException, IOException, InterruptedException {
+		try (Connection connection = connect()) {
+			connection.setAutoCommit(false);
+			CopyManager copy = mode == Mode.COPY ? connection.unwrap(PGConnection.class).getCopyAPI() : null;
+			try (PreparedStatement insert = mode == Mode.INSERT ? connection.prepareStatement(columns.insert()) : null) {
+				while (true) {
+					List<SimpleFeature> batch = batches.take();
+					if (batch.isEmpty()) {
+						return;
+					}
+					long start = System.nanoTime();
+					if (mode == Mode.COPY) {
+						copy.copyIn(columns.copy(), new StringReader(columns.copyText(batch)));
+					} else {
+						for (SimpleFeature feature : batch) {
+							columns.bind(insert, feature);
+							insert.addBatch();
+						}
+						insert.executeBatch();
+					}
+					connection.commit();
+					loaded.add(batch.size());
+					if (LOGGER.isDebugEnabled()) {
+						LOGGER.debug(String.format("Loaded %d features at %.0f features/s", batch.size(),
+						    batch.size() / ((System.nanoTime() - start) / 1e9)));
+					}
+				}
+			}
+		}
+	}
+
+	private Connection connect() throws SQLException {
+		return DriverManager.getConnection(url, properties);
+	}
+
+	/**
+	 * The columns of the target table and how feature values are written into
+	 * them. Immutable apart from the WKB writer, which is used per thread.
+	 * <p>
+	 * A single geometry in a multi geometry column, as inferred for mixed
+	 * polygons and multipolygons, is written as a multi geometry of one part,
+	 * since PostGIS rejects it otherwise. The geometries of the features are not
+	 * changed: the SRID is set on a multi geometry made for the purpose or on a
+	 * copy.
+	 */
+	static class Columns {
+		private final String table;
+		private final SimpleFeatureType schema;
+		private final int srid;
+		private final Class<?> geometryBinding;
+		private final String geometryType;
+		/* wraps single geometries into the multi geometries of the column */
+		private final GeometryFactory factory;
+		private final ThreadLocal<WKBWriter> wkbWriters;
+
+		Columns(String table, SimpleFeatureType schema) throws IOException {
+			this.table = table;
+			this.schema = schema;
+			GeometryDescriptor geometry = schema.getGeometryDescriptor();
+			if (geometry == null) {
+				throw new IllegalArgumentException("The schema has no geometry");
+			}
+			this.geometryBinding = geometry.getType().getBinding();
+			this.geometryType = geometryBinding.getSimpleName().toUpperCase();
+			Integer code = null;
+			if (geometry.getCoordinateReferenceSystem() != null) {
+				try {
+					code = CRS.lookupEpsgCode(geometry.getCoordinateReferenceSystem(), true);
+				} catch (FactoryException e) {
+					throw new IOException("Could not look up the EPSG code of " + schema.getTypeName(), e);
+				}
+			}
+			this.srid = code != null ? code : 0;
+			this.factory = new GeometryFactory(new PrecisionModel(), srid);
+			// plain WKB; the SRID of the column is written into the header
+			this.wkbWriters = ThreadLocal.withInitial(() -> new WKBWriter(2));
+		}
+
+		String createTable() {
+			StringBuilder sql = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(quoteTable()).append(" (");
+			for (int i = 0; i < schema.getAttributeCount(); i++) {
+				AttributeDescriptor attribute = schema.getDescriptor(i);
+				if (i > 0) {
+					sql.append(", ");
+				}
+				sql.append(quote(attribute.getLocalName())).append(' ').append(sqlType(attribute));
+			}
+			return sql.append(')').toString();
+		}
+
+		String copy() {
+			return "COPY " + quoteTable() + " (" + columnList() + ") FROM STDIN";
+		}
+
+		String insert() {
+			StringBuilder values = new StringBuilder();
+			for (int i = 0; i < schema.getAttributeCount(); i++) {
+				if (i > 0) {
+					values.append(", ");
+				}
+				values.append(schema.getDescriptor(i) instanceof GeometryDescriptor ? "ST_GeomFromEWKB(?)" : "?");
+			}
+			return "INSERT INTO " + quoteTable() + " (" + columnList() + ") VALUES (" + values + ")";
+		}
+
+		/*
+		 * COPY text format: tab separated, \N for null, backslash escapes.
+		 */
+		String copyText(List<SimpleFeature> batch) {
+			StringBuilder text = new StringBuilder(batch.size() * 64);
+			for (SimpleFeature feature : batch) {
+				for (int i = 0; i < schema.getAttributeCount(); i++) {
+					if (i > 0) {
+						text.append('\t');
+					}
+					Object value = feature.getAttribute(i);
+					if (value == null) {
+						text.append("\\N");
+					} else if (value instanceof Geometry) {
+						text.append(WKBWriter.toHex(ewkb((Geometry) value)));
+					} else if (value instanceof Date) {
+						text.append(new Timestamp(((Date) value).getTime()));
+					} else {
+						escape(text, value.toString());
+					}
+				}
+				text.append('\n');
+			}
+			return text.toString();
+		}
+
+		void bind(PreparedStatement insert, SimpleFeature feature) throws SQLException {
+			for (int i = 0; i < schema.getAttributeCount(); i++) {
+				Object value = feature.getAttribute(i);
+				if (value == null) {
+					insert.setNull(i + 1, schema.getDescriptor(i) instanceof GeometryDescriptor ? Types.BINARY
+					    : Types.OTHER);
+				} else if (value instanceof Geometry) {
+					insert.setBytes(i + 1, ewkb((Geometry) value));
+				} else if (value instanceof Date) {
+					insert.setTimestamp(i + 1, new Timestamp(((Date) value).getTime()));
+				} else {
+					insert.setObject(i + 1, value);
+				}
+			}
+		}
+
+		byte[] ewkb(Geometry geometry) {
+			if (geometryBinding == MultiPolygon.class && geometry instanceof Polygon) {
+				geometry = factory.createMultiPolygon(new Polygon[] { (Polygon) geometry });
+			} else if (geometryBinding == MultiLineString.class && geometry instanceof LineString) {
+				geometry = factory.createMultiLineString(new LineString[] { (LineString) geometry });
+			} else if (geometryBinding == MultiPoint.class && geometry instanceof Point) {
+				geometry = factory.createMultiPoint(new Point[] { (Point) geometry });
+			}
+			// the readers make geometries without an SRID; the column's is used
+			// whatever the geometry says, without copying it
+			return withSrid(wkbWriters.get().write(geometry), srid);
+		}
+
+		/*
+		 * Turns WKB into EWKB with an SRID: the SRID flag is set in the type word
+		 * of the outer geometry and the SRID follows it.
+		 */
+		static byte[] withSrid(byte[] wkb, int srid) {
+			if (srid == 0) {
+				return wkb;
+			}
+			ByteBuffer in = ByteBuffer.wrap(wkb);
+			in.order(wkb[0] == WKBConstants.wkbNDR ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+			ByteBuffer out = ByteBuffer.allocate(wkb.length + 4).order(in.order());
+			out.put(wkb[0]);
+			out.putInt(in.getInt(1) | 0x20000000);
+			out.putInt(srid);
+			out.put(wkb, 5, wkb.length - 5);
+			return out.array();
+		}
+
+		private String sqlType(AttributeDescriptor attribute) {
+			if (attribute instanceof GeometryDescriptor) {
+				return "geometry(" + geometryType + ", " + srid + ")";
+			}
+			Class<?> binding = attribute.getType().getBinding();
+			if (binding == Integer.class || binding == Short.class || binding == Byte.class) {
+				return "integer";
+			} else if (binding == Long.class) {
+				return "bigint";
+			} else if (binding == Double.class) {
+				return "double precision";
+			} else if (binding == Float.class) {
+				return "real";
+			} else if (binding == Boolean.class) {
+				return "boolean";
+			} else if (binding == java.sql.Date.class) {
+				return "date";
+			} else if (Date.class.isAssignableFrom(binding)) {
+				return "timestamp";
+			} else if (binding == BigDecimal.class) {
+				return "numeric";
+			}
+			return "text";
+		}
+
+		private String columnList() {
+			StringBuilder columns = new StringBuilder();
+			for (int i = 0; i < schema.getAttributeCount(); i++) {
+				if (i > 0) {
+					columns.append(", ");
+				}
+				columns.append(quote(schema.getDescriptor(i).getLocalName()));
+			}
+			return columns.toString();
+		}
+
+		private String quoteTable() {
+			int dot = table.indexOf('.');
+			return dot < 0 ? quote(table) : quote(table.substring(0, dot)) + "." + quote(table.substring(dot + 1));
+		}
+
+		private static String quote(String identifier) {
+			return '"' + identifier.replace("\"", "\"\"") + '"';
+		}
+
+		static void escape(StringBuilder text, String value) {
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				switch (c) {
+				case '\\':
+					text.append("\\\\");
+					break;
+				case '\t':
+					text.append("\\t");
+					break;
+				case '\n':
+					text.append("\\n");
+					break;
+				case '\r':
+					text.append("\\r");
+					break;
+				default:
+					text.append(c);
+				}
+			}
+		}
+	}
+}
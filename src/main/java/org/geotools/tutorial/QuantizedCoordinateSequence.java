@@ -0,0 +1,207 @@
+package org.geotools.tutorial;
+
+import java.util.Arrays;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Coordinates;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * A coordinate sequence snapped to a regular grid and stored as 32 bit grid
+ * offsets from the first coordinate of the sequence.
+ * <p>
+ * Four bytes per ordinate instead of eight, and every stored value lies exactly
+ * on the grid. Ordinates that do not fit within 2^31 grid cells of the first
+ * coordinate are rejected by the constructor;
+ * {@link QuantizedCoordinateSequenceFactory} falls back to a double sequence
+ * for those. An ordinate set later that does not fit moves the origin of its
+ * axis to the middle of the values, or, if they span more than 2^32 grid cells,
+ * turns the sequence into snapped doubles.
+ */
+public class QuantizedCoordinateSequence implements CoordinateSequence {
+
+	/* stands for NaN, e.g. a missing z */
+	private static final int NO_VALUE = Integer.MIN_VALUE;
+
+	private final double gridSize;
+	private final int dimension;
+	/* grid index of the first coordinate, per ordinate */
+	private final long[] origin;
+	/* size * dimension offsets from origin, in grid cells */
+	private int[] offsets;
+	/* the snapped ordinates instead of the offsets, once they do not fit */
+	private double[] values;
+
+	/**
+	 * Snaps the packed ordinates {@code packed[from, from + size * dimension)}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if an ordinate is too far from the first coordinate
+	 */
+	public QuantizedCoordinateSequence(double gridSize, double[] packed, int from, int size, int dimension) {
+		this.gridSize = gridSize;
+		this.dimension = dimension;
+		this.origin = new long[dimension];
+		this.offsets = new int[size * dimension];
+		for (int d = 0; d < dimension && size > 0; d++) {
+			double value = packed[from + d];
+			origin[d] = Double.isNaN(value) ? 0 : Math.round(value / gridSize);
+		}
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = quantize(packed[from + i], i % dimension);
+		}
+	}
+
+	private QuantizedCoordinateSequence(QuantizedCoordinateSequence other) {
+		this.gridSize = other.gridSize;
+		this.dimension = other.dimension;
+		this.origin = other.origin.clone();
+		this.offsets = other.offsets == null ? null : other.offsets.clone();
+		this.values = other.values == null ? null : other.values.clone();
+	}
+
+	public double getGridSize() {
+		return gridSize;
+	}
+
+	public int getDimension() {
+		return dimension;
+	}
+
+	public int size() {
+		return (offsets != null ? offsets.length : values.length) / dimension;
+	}
+
+	public double getOrdinate(int index, int ordinateIndex) {
+		if (ordinateIndex >= dimension) {
+			return Double.NaN;
+		}
+		if (offsets == null) {
+			return values[index * dimension + ordinateIndex];
+		}
+		int offset = offsets[index * dimension + ordinateIndex];
+		if (offset == NO_VALUE) {
+			return Double.NaN;
+		}
+		return (origin[ordinateIndex] + offset) * gridSize;
+	}
+
+	public double getX(int index) {
+		return getOrdinate(index, 0);
+	}
+
+	public double getY(int index) {
+		return getOrdinate(index, 1);
+	}
+
+	/**
+	 * Snaps the value to the grid.
+	 */
+	public void setOrdinate(int index, int ordinateIndex, double value) {
+		if (offsets != null && !fits(value, ordinateIndex)) {
+			rebase(ordinateIndex, Math.round(value / gridSize));
+		}
+		if (offsets == null) {
+			values[index * dimension + ordinateIndex] = Double.isNaN(value) ? value
+			    : Math.round(value / gridSize) * gridSize;
+			return;
+		}
+		offsets[index * dimension + ordinateIndex] = quantize(value, ordinateIndex);
+	}
+
+	public Coordinate getCoordinate(int i) {
+		return getCoordinateCopy(i);
+	}
+
+	public Coordinate getCoordinateCopy(int i) {
+		Coordinate coord = Coordinates.create(dimension, 0);
+		getCoordinate(i, coord);
+		return coord;
+	}
+
+	public void getCoordinate(int index, Coordinate coord) {
+		coord.setX(getOrdinate(index, 0));
+		coord.setY(getOrdinate(index, 1));
+		if (dimension > 2) {
+			coord.setZ(getOrdinate(index, 2));
+		}
+	}
+
+	public Coordinate[] toCoordinateArray() {
+		Coordinate[] coords = new Coordinate[size()];
+		for (int i = 0; i < coords.length; i++) {
+			coords[i] = getCoordinateCopy(i);
+		}
+		return coords;
+	}
+
+	public Envelope expandEnvelope(Envelope env) {
+		for (int i = 0; i < size(); i++) {
+			env.expandToInclude(getX(i), getY(i));
+		}
+		return env;
+	}
+
+	@Deprecated
+	public Object clone() {
+		return copy();
+	}
+
+	public QuantizedCoordinateSequence copy() {
+		return new QuantizedCoordinateSequence(this);
+	}
+
+	public String toString() {
+		return "QuantizedCoordinateSequence[grid=" + gridSize + ", " + Arrays.toString(toCoordinateArray()) + "]";
+	}
+
+	private boolean fits(double value, int ordinateIndex) {
+		if (Double.isNaN(value)) {
+			return true;
+		}
+		long offset = Math.round(value / gridSize) - origin[ordinateIndex];
+		return offset > NO_VALUE && offset <= Integer.MAX_VALUE;
+	}
+
+	/*
+	 * Moves the origin of an axis to the middle of its grid indices and the given
+	 * one, or stores the sequence as doubles if they are too far apart.
+	 */
+	private void rebase(int ordinateIndex, long cell) {
+		long min = cell;
+		long max = cell;
+		for (int i = ordinateIndex; i < offsets.length; i += dimension) {
+			if (offsets[i] != NO_VALUE) {
+				min = Math.min(min, origin[ordinateIndex] + offsets[i]);
+				max = Math.max(max, origin[ordinateIndex] + offsets[i]);
+			}
+		}
+		if (max - min < 0 || max - min >= 0xffffffffL) {
+			values = new double[offsets.length];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = getOrdinate(i / dimension, i % dimension);
+			}
+			offsets = null;
+			return;
+		}
+		long rebased = min + (max - min) / 2;
+		for (int i = ordinateIndex; i < offsets.length; i += dimension) {
+			if (offsets[i] != NO_VALUE) {
+				offsets[i] = (int) (origin[ordinateIndex] + offsets[i] - rebased);
+			}
+		}
+		origin[ordinateIndex] = rebased;
+	}
+
+	private int quantize(double value, int ordinateIndex) {
+		if (Double.isNaN(value)) {
+			return NO_VALUE;
+		}
+		long offset = Math.round(value / gridSize) - origin[ordinateIndex];
+		if (offset <= NO_VALUE || offset > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Ordinate " + value + " is outside the quantization range");
+		}
+		return (int) offset;
+	}
+}
@@ -0,0 +1,93 @@
+package org.geotools.tutorial;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFactory;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+
+/**
+ * Creates {@link QuantizedCoordinateSequence}s for a given grid size. A
+ * sequence whose ordinates do not fit the 32 bit offsets is stored as a
+ * {@link PackedCoordinateSequence.Double}, still snapped to the grid.
+ */
+public class QuantizedCoordinateSequenceFactory implements CoordinateSequenceFactory {
+
+	private final double gridSize;
+
+	/**
+	 * @param gridSize
+	 *            the grid cell size in CRS units, e.g. 0.01 for 1 cm in a metric
+	 *            CRS
+	 */
+	public QuantizedCoordinateSequenceFactory(double gridSize) {
+		if (!(gridSize > 0)) {
+			throw new IllegalArgumentException("Grid size must be positive: " + gridSize);
+		}
+		this.gridSize = gridSize;
+	}
+
+	public double getGridSize() {
+		return gridSize;
+	}
+
+	/**
+	 * @return a factory snapping coordinates to the grid, with a matching fixed
+	 *         precision model
+	 */
+	public static GeometryFactory createGeometryFactory(double gridSize) {
+		return new GeometryFactory(new PrecisionModel(1 / gridSize), 0, new QuantizedCoordinateSequenceFactory(gridSize));
+	}
+
+	/**
+	 * Creates a sequence straight from packed ordinates
+	 * {@code packed[from, from + size * dimension)}.
+	 */
+	public CoordinateSequence create(double[] packed, int from, int size, int dimension) {
+		try {
+			return new QuantizedCoordinateSequence(gridSize, packed, from, size, dimension);
+		} catch (IllegalArgumentException e) {
+			double[] snapped = new double[size * dimension];
+			for (int i = 0; i < snapped.length; i++) {
+				snapped[i] = Math.round(packed[from + i] / gridSize) * gridSize;
+			}
+			return new PackedCoordinateSequence.Double(snapped, dimension, 0);
+		}
+	}
+
+	public CoordinateSequence create(Coordinate[] coordinates) {
+		if (coordinates == null) {
+			return create(new double[0], 0, 0, 2);
+		}
+		int dimension = coordinates.length > 0 && !Double.isNaN(coordinates[0].getZ()) ? 3 : 2;
+		double[] packed = new double[coordinates.length * dimension];
+		for (int i = 0; i < coordinates.length; i++) {
+			packed[i * dimension] = coordinates[i].getX();
+			packed[i * dimension + 1] = coordinates[i].getY();
+			if (dimension > 2) {
+				packed[i * dimension + 2] = coordinates[i].getZ();
+			}
+		}
+		return create(packed, 0, coordinates.length, dimension);
+	}
+
+	public CoordinateSequence create(CoordinateSequence coordSeq) {
+		int dimension = Math.min(coordSeq.getDimension() - coordSeq.getMeasures(), 3);
+		double[] packed = new double[coordSeq.size() * dimension];
+		for (int i = 0; i < coordSeq.size(); i++) {
+			for (int d = 0; d < dimension; d++) {
+				packed[i * dimension + d] = coordSeq.getOrdinate(i, d);
+			}
+		}
+		return create(packed, 0, coordSeq.size(), dimension);
+	}
+
+	public CoordinateSequence create(int size, int dimension) {
+		return create(new double[size * dimension], 0, size, dimension);
+	}
+
+	public CoordinateSequence create(int size, int dimension, int measures) {
+		return create(size, dimension - measures);
+	}
+}
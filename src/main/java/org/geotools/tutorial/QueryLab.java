@@ -15,6 +15,7 @@ import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
 import org.geotools.data.DataStore;
 import org.geotools.data.DataStoreFactorySpi;
 import org.geotools.data.DataStoreFinder;
@@ -27,7 +28,6 @@ import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.filter.text.cql2.CQL;
 import org.geotools.swing.action.SafeAction;
 import org.geotools.swing.data.JDataStoreWizard;
-import org.geotools.swing.table.FeatureCollectionTableModel;
 import org.geotools.swing.wizard.JWizard;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
@@ -139,7 +139,7 @@ public class QueryLab extends JFrame {
         ComboBoxModel<String> cbm = new DefaultComboBoxModel<>(dataStore.getTypeNames());
         featureTypeCBox.setModel(cbm);
 
-        table.setModel(new DefaultTableModel(5, 5));
+        setTableModel(new DefaultTableModel(5, 5));
     }
     
     private void filterFeatures() throws Exception {
@@ -147,9 +147,7 @@ public class QueryLab extends JFrame {
         SimpleFeatureSource source = dataStore.getFeatureSource(typeName);
 
         Filter filter = CQL.toFilter(text.getText());
-        SimpleFeatureCollection features = source.getFeatures(filter);
-        FeatureCollectionTableModel model = new FeatureCollectionTableModel(features);
-        table.setModel(model);
+        setTableModel(new PagedFeatureTableModel(source, new Query(typeName, filter)));
     }
     
     private void countFeatures() throws Exception {
@@ -174,9 +172,17 @@ public class QueryLab extends JFrame {
 
         Query query = new Query(typeName, filter, new String[] {name});
 
-        SimpleFeatureCollection features = source.getFeatures(query);
+        setTableModel(new PagedFeatureTableModel(source, query));
+    }
 
-        FeatureCollectionTableModel model = new FeatureCollectionTableModel(features);
+    /*
+     * Only the rows around the visible ones are read, so large tables can be
+     * browsed; the model shown before stops reading.
+     */
+    private void setTableModel(TableModel model) {
+        if (table.getModel() instanceof PagedFeatureTableModel) {
+            ((PagedFeatureTableModel) table.getModel()).dispose();
+        }
         table.setModel(model);
     }
 }
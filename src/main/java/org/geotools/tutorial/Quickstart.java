@@ -32,8 +32,10 @@ public class Quickstart {
 	        map.setTitle("Quickstart");
 
 	        Style style = SLD.createSimpleStyle(featureSource.getSchema());
-	        Layer layer = new FeatureLayer(featureSource, style);
-	        map.addLayer(layer);
+	        // zoomed out views draw simplified geometries
+	        Layer layer = new FeatureLayer(new LevelOfDetailFeatureSource(featureSource, file), style);
+	        // pans and zooms redraw from cached tiles
+	        map.addLayer(new TileCacheLayer(layer, file));
 
 	        // Now display the map
 	        JMapFrame.showMap(map);
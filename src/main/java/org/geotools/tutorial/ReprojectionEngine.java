@@ -0,0 +1,397 @@
+package org.geotools.tutorial;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.geotools.data.DataStore;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.DefaultTransaction;
+import org.geotools.data.FeatureReader;
+import org.geotools.data.FileDataStore;
+import org.geotools.data.FileDataStoreFinder;
+import org.geotools.data.Query;
+import org.geotools.data.Transaction;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.data.store.ContentFeatureSource;
+import org.geotools.data.store.ReprojectingFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.filter.text.cql2.CQL;
+import org.geotools.referencing.CRS;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.Filter;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.util.ProgressListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reprojects, validates and repairs feature sources without a user interface,
+ * for batch jobs on servers; {@link GeometryCRS} is a Swing client of it.
+ * <p>
+ * Features are streamed from the source to the output store. Reprojection runs
+ * on {@link ParallelReprojectingIterator} and is written through a
+ * {@link BatchedFeatureWriter}, which logs the throughput of each batch;
+ * validation runs on {@link ParallelGeometryValidator}. An export by query is
+ * left to the source store, see {@link #export}. Every operation returns a
+ * {@link Report} with its overall throughput.
+ */
+public class ReprojectionEngine {
+	final static private Logger LOGGER = LoggerFactory.getLogger(ReprojectionEngine.class);
+
+	private final int threads;
+	private final ParallelGeometryValidator validator;
+
+	public ReprojectionEngine() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param threads
+	 *            number of threads transforming or validating geometries
+	 */
+	public ReprojectionEngine(int threads) {
+		this.threads = threads;
+		this.validator = new ParallelGeometryValidator(threads);
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: ReprojectionEngine reproject <input.shp> <crs code> <output.shp> [sorted]");
+			System.err.println(
+			    "       ReprojectionEngine export <input.shp> <crs code> <output.shp> [cql filter] [properties]");
+			System.err.println("       ReprojectionEngine validate <input.shp>");
+			System.err.println("       ReprojectionEngine repair <input.shp> <output.shp>");
+			return;
+		}
+		ReprojectionEngine engine = new ReprojectionEngine();
+		FileDataStore input = FileDataStoreFinder.getDataStore(new File(args[1]));
+		DataStore output = null;
+		try {
+			// every operation logs its report
+			switch (args[0]) {
+			case "reproject":
+				boolean sorted = args.length > 4 && "sorted".equals(args[4]);
+				// servers expect longitude first, whatever the axis order of the code
+				CoordinateReferenceSystem target = CRS.decode(args[2], true);
+				output = createShapefile(new File(args[3]));
+				engine.reproject(input.getFeatureSource(), target, output, sorted, null);
+				break;
+			case "export":
+				Filter filter = args.length > 4 ? CQL.toFilter(args[4]) : Filter.INCLUDE;
+				String[] properties = args.length > 5 ? args[5].split(",") : null;
+				output = createShapefile(new File(args[3]));
+				engine.export(input.getFeatureSource(), filter, properties, CRS.decode(args[2], true), output);
+				break;
+			case "validate":
+				engine.validate(input.getFeatureSource(), new File(args[1]), null);
+				break;
+			case "repair":
+				output = createShapefile(new File(args[2]));
+				engine.repair(input.getFeatureSource(), output, null);
+				break;
+			default:
+				System.err.println("Unknown operation " + args[0]);
+				return;
+			}
+		} finally {
+			input.dispose();
+			if (output != null) {
+				output.dispose();
+			}
+			engine.shutdown();
+		}
+	}
+
+	/**
+	 * @return a new shapefile store with a spatial index
+	 */
+	public static DataStore createShapefile(File file) throws IOException {
+		Map<String, Serializable> create = new HashMap<>();
+		create.put("url", file.toURI().toURL());
+		create.put("create spatial index", Boolean.TRUE);
+		return new ShapefileDataStoreFactory().createNewDataStore(create);
+	}
+
+	/**
+	 * Writes the features of the source, transformed to the target coordinate
+	 * reference system, to a new type in the output store. The output store is
+	 * left open. If the reprojection fails or is canceled, the new type is
+	 * removed again, so no partial shapefile is left behind.
+	 *
+	 * @param sorted
+	 *            whether the features are written in Hilbert order, see
+	 *            {@link HilbertSorter}
+	 * @param progress
+	 *            told about progress and asked for cancellation, or {@code null}
+	 */
+	public Report reproject(SimpleFeatureSource source, CoordinateReferenceSystem target, DataStore output,
+	    boolean sorted, ProgressListener progress) throws Exception {
+		long start = System.nanoTime();
+		SimpleFeatureType schema = source.getSchema();
+		MathTransform transform = BulkReprojector.findTransform(schema.getCoordinateReferenceSystem(), target);
+		SimpleFeatureType featureType = SimpleFeatureTypeBuilder.retype(schema, target);
+		output.createSchema(featureType);
+		// a file store names its only type after the file
+		String typeName = output instanceof FileDataStore ? output.getTypeNames()[0] : featureType.getTypeName();
+
+		SimpleFeatureCollection features = source.getFeatures();
+		int size = features.size();
+		long count = 0;
+		boolean canceled = false;
+		// sorting needs the reprojected geometries, so they are collected first
+		HilbertSorter sorter = sorted ? new HilbertSorter(featureType, source.getBounds().transform(target, true))
+		    : null;
+		if (progress != null) {
+			progress.started();
+		}
+		try (BatchedFeatureWriter writer = new BatchedFeatureWriter(output, typeName);
+		    SimpleFeatureIterator iterator = new ParallelReprojectingIterator(features, featureType, transform,
+		        threads)) {
+			while (iterator.hasNext()) {
+				if (progress != null && progress.isCanceled()) {
+					canceled = true;
+					break;
+				}
+				SimpleFeature reprojected = iterator.next();
+				if (sorter != null) {
+					sorter.add(reprojected);
+				} else {
+					writer.next().setAttributes(reprojected.getAttributes());
+					writer.write();
+				}
+				count++;
+				if (progress != null && size > 0 && count % 1000 == 0) {
+					progress.progress(Math.min(100f, count * 100f / size));
+				}
+			}
+			if (sorter != null && !canceled) {
+				try (SimpleFeatureIterator sortedFeatures = sorter.sorted()) {
+					while (sortedFeatures.hasNext()) {
+						writer.next().setAttributes(sortedFeatures.next().getAttributes());
+						writer.write();
+					}
+				}
+			}
+		} catch (Exception e) {
+			discard(output, typeName);
+			throw e;
+		} finally {
+			if (sorter != null) {
+				sorter.close();
+			}
+		}
+		if (canceled) {
+			discard(output, typeName);
+		} else if (progress != null) {
+			progress.complete();
+		}
+		return report("Reprojected", count, 0, canceled, start);
+	}
+
+	/**
+	 * Writes the features of the source that match a filter, with only the given
+	 * properties and transformed to the target coordinate reference system, to a
+	 * new type in the output store.
+	 * <p>
+	 * All three are described by a single {@link Query}, so a store can select,
+	 * filter and reproject while reading, e.g. PostGIS selects and filters on the
+	 * server. Sources that are not {@link ContentFeatureSource}s may not reproject
+	 * by query and are wrapped in a {@link ReprojectingFeatureCollection} instead.
+	 * Either way the features are streamed from a reader into
+	 * {@link SimpleFeatureStore#setFeatures(FeatureReader)}. A shapefile is
+	 * written without a transaction, as it would otherwise hold every feature
+	 * until the commit, and is removed again if the export fails. The output
+	 * store is left open.
+	 *
+	 * @param properties
+	 *            the properties to export, or {@code null} for all; the default
+	 *            geometry is added if it is not among them
+	 */
+	public Report export(SimpleFeatureSource source, Filter filter, String[] properties,
+	    CoordinateReferenceSystem target, DataStore output) throws IOException {
+		long start = System.nanoTime();
+		GeometryDescriptor geometry = source.getSchema().getGeometryDescriptor();
+		if (properties != null && geometry != null && !Arrays.asList(properties).contains(geometry.getLocalName())) {
+			// there is nothing to reproject, and a shapefile needs a geometry
+			properties = Arrays.copyOf(properties, properties.length + 1);
+			properties[properties.length - 1] = geometry.getLocalName();
+		}
+		Query query = new Query(source.getSchema().getTypeName(), filter, properties);
+		SimpleFeatureCollection features;
+		if (source instanceof ContentFeatureSource) {
+			query.setCoordinateSystemReproject(target);
+			features = source.getFeatures(query);
+		} else {
+			features = new ReprojectingFeatureCollection(source.getFeatures(query), target);
+		}
+
+		SimpleFeatureType featureType = features.getSchema();
+		output.createSchema(featureType);
+		// a file store names its only type after the file
+		String typeName = output instanceof FileDataStore ? output.getTypeNames()[0] : featureType.getTypeName();
+		SimpleFeatureStore store = (SimpleFeatureStore) output.getFeatureSource(typeName);
+		Transaction transaction = output instanceof ShapefileDataStore ? Transaction.AUTO_COMMIT
+		    : new DefaultTransaction("Export");
+		store.setTransaction(transaction);
+		try (FeatureReader<SimpleFeatureType, SimpleFeature> reader = DataUtilities.reader(features)) {
+			store.setFeatures(reader);
+			if (transaction != Transaction.AUTO_COMMIT) {
+				transaction.commit();
+			}
+		} catch (IOException | RuntimeException e) {
+			if (transaction != Transaction.AUTO_COMMIT) {
+				transaction.rollback();
+			}
+			if (transaction == Transaction.AUTO_COMMIT) {
+				discard(output, typeName);
+			}
+			throw e;
+		} finally {
+			if (transaction != Transaction.AUTO_COMMIT) {
+				transaction.close();
+			}
+			store.setTransaction(Transaction.AUTO_COMMIT);
+		}
+		return report("Exported", store.getCount(Query.ALL), 0, false, start);
+	}
+
+	/**
+	 * Checks the geometries of the source. If the source is read from a
+	 * shapefile, the results are cached next to it, see {@link ValidationCache}.
+	 *
+	 * @param shp
+	 *            the shapefile of the source, or {@code null}
+	 * @param progress
+	 *            told about progress and asked for cancellation, or {@code null}
+	 * @return a report whose problems are the invalid geometries
+	 */
+	public Report validate(SimpleFeatureSource source, File shp, ProgressListener progress) throws IOException {
+		long start = System.nanoTime();
+		ParallelGeometryValidator.Result result;
+		if (shp == null) {
+			result = validator.validate(source.getFeatures(), progress);
+		} else {
+			ValidationCache cache = ValidationCache.load(shp);
+			if (cache.isUpToDate()) {
+				result = cache.getResult();
+				if (progress != null) {
+					progress.complete();
+				}
+			} else {
+				result = validator.validate(source.getFeatures(), progress, cache);
+				if (!result.isCanceled()) {
+					cache.save(result.getChecked());
+				}
+			}
+		}
+		for (String id : result.getInvalidIds()) {
+			LOGGER.info("Invalid geometry: " + id);
+		}
+		return report("Validated", result.getChecked(), result.getInvalid(), result.isCanceled(), start);
+	}
+
+	/**
+	 * Writes the features of the source to a new type in the output store with
+	 * their invalid geometries fixed, see {@link GeometryRepairer}.
+	 *
+	 * @param progress
+	 *            told about progress and asked for cancellation, or {@code null}
+	 * @return a report whose problems are the repaired geometries
+	 */
+	public Report repair(SimpleFeatureSource source, DataStore output, ProgressListener progress)
+	    throws IOException {
+		long start = System.nanoTime();
+		GeometryRepairer.Result result = new GeometryRepairer().repair(source.getFeatures(), output, progress);
+		return report("Repaired", result.getCount(), result.getRepaired(), result.isCanceled(), start);
+	}
+
+	/*
+	 * Removes an output type that was only partly written. A store that cannot
+	 * remove types keeps it, with whatever was written or committed.
+	 */
+	private static void discard(DataStore output, String typeName) {
+		try {
+			output.removeSchema(typeName);
+			LOGGER.info("Removed the partial output " + typeName);
+		} catch (IOException | UnsupportedOperationException e) {
+			LOGGER.warn("Could not remove the partial output " + typeName, e);
+		}
+	}
+
+	/**
+	 * Stops the worker threads.
+	 */
+	public void shutdown() {
+		validator.shutdown();
+	}
+
+	private static Report report(String operation, long features, long problems, boolean canceled, long start) {
+		double seconds = Math.max((System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1), 1e-9);
+		Report report = new Report(operation, features, problems, canceled, seconds);
+		LOGGER.info(report.toString());
+		return report;
+	}
+
+	/**
+	 * The outcome and throughput of an operation.
+	 */
+	public static class Report {
+		private final String operation;
+		private final long features;
+		private final long problems;
+		private final boolean canceled;
+		private final double seconds;
+
+		Report(String operation, long features, long problems, boolean canceled, double seconds) {
+			this.operation = operation;
+			this.features = features;
+			this.problems = problems;
+			this.canceled = canceled;
+			this.seconds = seconds;
+		}
+
+		/**
+		 * @return the number of features processed
+		 */
+		public long getFeatures() {
+			return features;
+		}
+
+		/**
+		 * @return the number of invalid or repaired geometries, 0 for reprojection
+		 */
+		public long getProblems() {
+			return problems;
+		}
+
+		public boolean isCanceled() {
+			return canceled;
+		}
+
+		public double getSeconds() {
+			return seconds;
+		}
+
+		public double getFeaturesPerSecond() {
+			return features / seconds;
+		}
+
+		public String toString() {
+			return String.format("%s %d features in %.1f s, %.0f features/s, %d problems%s", operation, features,
+			    seconds, getFeaturesPerSecond(), problems, canceled ? " (canceled)" : "");
+		}
+	}
+}
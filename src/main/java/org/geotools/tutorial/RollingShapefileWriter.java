@@ -0,0 +1,241 @@
+package org.geotools.tutorial;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.data.shapefile.ShapeFileIndexer;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.data.shapefile.files.ShpFiles;
+import org.geotools.feature.FeatureIterator;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes features into a series of shapefiles, {@code output_001.shp},
+ * {@code output_002.shp}, ..., starting a new part whenever the next feature
+ * would take the .shp or .dbf file past a byte threshold, or the part already
+ * holds the maximum number of features.
+ * <p>
+ * The quadtree (.qix) of a part needs the final record offsets, so it is built
+ * as soon as the part is closed, on a background thread, while the next part
+ * is being written. No second pass over the whole output is needed.
+ */
+public class RollingShapefileWriter implements Closeable {
+	final static private Logger LOGGER = LoggerFactory.getLogger(RollingShapefileWriter.class);
+
+	/**
+	 * Told about every completed part, before the next feature is written.
+	 */
+	public interface PartListener {
+		/**
+		 * @param part
+		 *            the part that has just been closed
+		 * @param count
+		 *            the number of features in all completed parts
+		 */
+		void partCompleted(File part, long count) throws IOException;
+	}
+
+	/** stays clear of the 2 GB limit of the .shp and .dbf files */
+	public static final long DEFAULT_MAX_BYTES = ShapefileRecordSize.MAX_FILE_BYTES - 64L * 1024 * 1024;
+
+	private final File directory;
+	private final String baseName;
+	private final SimpleFeatureType shpType;
+	private final FeatureRetyper retyper;
+	private final long maxBytes;
+	private final long maxFeatures;
+	private final ShapefileDataStoreFactory dataStoreFactory;
+	private final int dbfRecordBytes;
+
+	private final ExecutorService indexer = Executors.newSingleThreadExecutor();
+	private final List<Future<?>> indexes = new ArrayList<>();
+	private final List<File> parts = new ArrayList<>();
+
+	private ShapefileDataStore store;
+	private FeatureWriter<SimpleFeatureType, SimpleFeature> writer;
+	private long shpBytes;
+	private long dbfBytes;
+	private long partFeatures;
+	private long count;
+	private PartListener listener;
+
+	/**
+	 * @param output
+	 *            the shapefile name the parts are derived from
+	 * @param schema
+	 *            the schema of the source features
+	 * @param maxBytes
+	 *            the maximum size of the .shp or .dbf file of a part
+	 * @param maxFeatures
+	 *            the maximum number of features in a part
+	 */
+	public RollingShapefileWriter(File output, SimpleFeatureType schema, long maxBytes, long maxFeatures) {
+		this(output, schema, maxBytes, maxFeatures, new ShapefileDataStoreFactory());
+	}
+
+	public RollingShapefileWriter(File output, SimpleFeatureType schema, long maxBytes, long maxFeatures,
+	    ShapefileDataStoreFactory dataStoreFactory) {
+		String name = output.getName();
+		this.directory = output.getAbsoluteFile().getParentFile();
+		this.baseName = name.toLowerCase().endsWith(".shp") ? name.substring(0, name.length() - 4) : name;
+		this.shpType = GeojsonToShp.WriteShapefile.createShapeType(schema);
+		this.retyper = new FeatureRetyper(schema, shpType);
+		this.maxBytes = Math.min(maxBytes, DEFAULT_MAX_BYTES);
+		this.maxFeatures = maxFeatures;
+		this.dataStoreFactory = dataStoreFactory;
+		this.dbfRecordBytes = ShapefileRecordSize.dbfRecordBytes(shpType);
+	}
+
+	public void setPartListener(PartListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Continues an earlier run that completed the first {@code completedParts}
+	 * parts with {@code count} features. Must be called before writing. Completed
+	 * parts whose spatial index is missing are indexed again.
+	 */
+	public void resume(int completedParts, long count) {
+		if (writer != null || !parts.isEmpty()) {
+			throw new IllegalStateException("Can only resume before writing");
+		}
+		for (int i = 1; i <= completedParts; i++) {
+			File part = partFile(i);
+			parts.add(part);
+			if (!new File(directory, baseName + String.format("_%03d.qix", i)).exists()) {
+				createSpatialIndex(part);
+			}
+		}
+		this.count = count;
+	}
+
+	/**
+	 * Writes all features; closing the iterator is left to the caller.
+	 *
+	 * @return the number of features written
+	 */
+	public long writeFeatures(FeatureIterator<SimpleFeature> features) throws IOException {
+		while (features.hasNext()) {
+			write(features.next());
+		}
+		return count;
+	}
+
+	public void write(SimpleFeature feature) throws IOException {
+		int recordBytes = ShapefileRecordSize.shpRecordBytes((Geometry) feature.getDefaultGeometry());
+		if (writer == null || (partFeatures > 0 && (partFeatures >= maxFeatures
+		    || shpBytes + recordBytes > maxBytes || dbfBytes + dbfRecordBytes > maxBytes))) {
+			roll();
+		}
+		retyper.retype(feature, writer.next());
+		writer.write();
+
+		shpBytes += recordBytes;
+		dbfBytes += dbfRecordBytes;
+		partFeatures++;
+		count++;
+	}
+
+	/**
+	 * @return the part files written so far
+	 */
+	public List<File> getParts() {
+		return Collections.unmodifiableList(parts);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Closes the current part and waits for the spatial indexes of all parts.
+	 * The listener is not told about the last part.
+	 */
+	public void close() throws IOException {
+		try {
+			closePart();
+		} finally {
+			indexer.shutdown();
+		}
+		for (Future<?> index : indexes) {
+			try {
+				index.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while building spatial indexes", e);
+			} catch (ExecutionException e) {
+				throw new IOException("Could not build spatial index", e.getCause());
+			}
+		}
+	}
+
+	private void roll() throws IOException {
+		if (writer != null) {
+			closePart();
+			if (listener != null) {
+				listener.partCompleted(parts.get(parts.size() - 1), count);
+			}
+		}
+
+		File part = partFile(parts.size() + 1);
+		Map<String, Serializable> params = new HashMap<String, Serializable>();
+		params.put("url", part.toURI().toURL());
+		// the index is built below once the part is complete
+		params.put("create spatial index", Boolean.FALSE);
+
+		store = (ShapefileDataStore) dataStoreFactory.createNewDataStore(params);
+		store.createSchema(shpType);
+		writer = store.getFeatureWriterAppend(store.getTypeNames()[0], Transaction.AUTO_COMMIT);
+		parts.add(part);
+
+		shpBytes = ShapefileRecordSize.SHP_HEADER_BYTES;
+		dbfBytes = ShapefileRecordSize.dbfHeaderBytes(shpType);
+		partFeatures = 0;
+		LOGGER.info("Writing " + part);
+	}
+
+	private void closePart() throws IOException {
+		if (writer == null) {
+			return;
+		}
+		try {
+			writer.close();
+		} finally {
+			writer = null;
+			store.dispose();
+			store = null;
+		}
+		createSpatialIndex(parts.get(parts.size() - 1));
+	}
+
+	private File partFile(int number) {
+		return new File(directory, String.format("%s_%03d.shp", baseName, number));
+	}
+
+	private void createSpatialIndex(File part) {
+		indexes.add(indexer.submit(() -> {
+			ShapeFileIndexer qix = new ShapeFileIndexer();
+			qix.setShapeFileName(new ShpFiles(part));
+			qix.index(false, null);
+			return null;
+		}));
+	}
+}
@@ -0,0 +1,382 @@
+package org.geotools.tutorial;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.tutorial.GeoJsonTokenizer.Token;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Works out the schema of a GeoJSON FeatureCollection in a single pass over
+ * its tokens, without building features or geometries.
+ * <p>
+ * Property types are widened as values are seen: Integer, then Long, then
+ * Double, and anything mixed with strings, booleans or nested values becomes a
+ * String. The longest value of each String property gives its DBF field
+ * length, so a shapefile can be created before the features are streamed.
+ * The geometry type is the common type of all geometries, using the multi
+ * type when single and multi geometries are mixed.
+ * <p>
+ * Coordinates are only tokenized, unless the envelope of the data is asked
+ * for as well, e.g. to lay a {@link HilbertSorter} curve over it; then the x
+ * and y of every position are parsed.
+ */
+public class SchemaInference {
+	final static private Logger LOGGER = LoggerFactory.getLogger(SchemaInference.class);
+
+	/** the geometry attribute name FeatureJSON uses */
+	public static final String GEOMETRY_NAME = "geometry";
+
+	private static final int MAX_DBF_LENGTH = 254;
+
+	private final int sampleSize;
+
+	public SchemaInference() {
+		this(0);
+	}
+
+	/**
+	 * @param sampleSize
+	 *            the number of features to look at, or 0 to scan all of them.
+	 *            Sampling is faster, but a value seen only later in the file may
+	 *            not fit the inferred type.
+	 */
+	public SchemaInference(int sampleSize) {
+		this.sampleSize = sampleSize;
+	}
+
+	public SimpleFeatureType infer(File geojson, String typeName) throws IOException {
+		return infer(geojson, typeName, null);
+	}
+
+	/**
+	 * @param bounds
+	 *            expanded to include the positions of the features looked at, or
+	 *            {@code null}
+	 */
+	public SimpleFeatureType infer(File geojson, String typeName, Envelope bounds) throws IOException {
+		try (GeoJsonTokenizer tokenizer = new GeoJsonTokenizer(new FileInputStream(geojson))) {
+			return infer(tokenizer, typeName, bounds);
+		}
+	}
+
+	public SimpleFeatureType infer(GeoJsonTokenizer tokenizer, String typeName) throws IOException {
+		return infer(tokenizer, typeName, null);
+	}
+
+	/**
+	 * @param bounds
+	 *            expanded to include the positions of the features looked at, or
+	 *            {@code null}
+	 */
+	public SimpleFeatureType infer(GeoJsonTokenizer tokenizer, String typeName, Envelope bounds)
+	    throws IOException {
+		if (tokenizer.next() != Token.START_OBJECT) {
+			throw new IOException("Not a GeoJSON object");
+		}
+		Properties properties = new Properties();
+		Set<String> geometryTypes = new LinkedHashSet<>();
+		CoordinateReferenceSystem crs = null;
+		int count = 0;
+
+		root: while (tokenizer.next() == Token.NAME) {
+			if (tokenizer.nameEquals("features")) {
+				if (tokenizer.next() != Token.START_ARRAY) {
+					tokenizer.skipChildren();
+					continue;
+				}
+				while (tokenizer.next() == Token.START_OBJECT) {
+					readFeature(tokenizer, properties, geometryTypes, bounds);
+					if (sampleSize > 0 && ++count >= sampleSize) {
+						break root;
+					}
+				}
+			} else if (tokenizer.nameEquals("crs")) {
+				tokenizer.next();
+				crs = readCrs(tokenizer);
+			} else {
+				tokenizer.next();
+				tokenizer.skipChildren();
+			}
+		}
+
+		SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+		builder.setName(typeName);
+		builder.setCRS(crs != null ? crs : DefaultGeographicCRS.WGS84);
+		builder.add(GEOMETRY_NAME, geometryBinding(geometryTypes));
+		for (Property property : properties.list) {
+			if (property.kind == Property.STRING || property.kind == Property.NONE) {
+				builder.length(Math.max(1, Math.min(property.maxLength, MAX_DBF_LENGTH)));
+			}
+			builder.add(property.name, property.binding());
+		}
+		return builder.buildFeatureType();
+	}
+
+	private void readFeature(GeoJsonTokenizer tokenizer, Properties properties, Set<String> geometryTypes,
+	    Envelope bounds) throws IOException {
+		while (tokenizer.next() == Token.NAME) {
+			if (tokenizer.nameEquals("geometry")) {
+				if (tokenizer.next() == Token.START_OBJECT) {
+					readGeometryType(tokenizer, geometryTypes, bounds);
+				}
+			} else if (tokenizer.nameEquals("properties")) {
+				if (tokenizer.next() == Token.START_OBJECT) {
+					readProperties(tokenizer, properties);
+				}
+			} else {
+				tokenizer.next();
+				tokenizer.skipChildren();
+			}
+		}
+	}
+
+	private void readGeometryType(GeoJsonTokenizer tokenizer, Set<String> geometryTypes, Envelope bounds)
+	    throws IOException {
+		while (tokenizer.next() == Token.NAME) {
+			if (tokenizer.nameEquals("type")) {
+				if (tokenizer.next() == Token.STRING) {
+					geometryTypes.add(tokenizer.stringValue());
+				}
+			} else if (bounds != null && tokenizer.nameEquals("coordinates")) {
+				tokenizer.next();
+				readBounds(tokenizer, bounds);
+			} else if (bounds != null && tokenizer.nameEquals("geometries")) {
+				// the types of the members do not matter, the collection is a Geometry
+				if (tokenizer.next() == Token.START_ARRAY) {
+					while (tokenizer.next() == Token.START_OBJECT) {
+						readGeometryType(tokenizer, new LinkedHashSet<>(), bounds);
+					}
+				} else {
+					tokenizer.skipChildren();
+				}
+			} else {
+				// coordinates are only tokenized, never parsed
+				tokenizer.next();
+				tokenizer.skipChildren();
+			}
+		}
+	}
+
+	/*
+	 * Expands the bounds by the positions of the coordinates whose first token
+	 * has just been read; the first two numbers of each innermost array are x
+	 * and y.
+	 */
+	private static void readBounds(GeoJsonTokenizer tokenizer, Envelope bounds) throws IOException {
+		if (tokenizer.getToken() != Token.START_ARRAY) {
+			tokenizer.skipChildren();
+			return;
+		}
+		int target = tokenizer.getDepth() - 1;
+		int ordinate = 0;
+		double x = 0;
+		while (tokenizer.getDepth() > target) {
+			Token token = tokenizer.next();
+			if (token == Token.END) {
+				throw new IOException("Unexpected end of input");
+			} else if (token == Token.START_ARRAY) {
+				ordinate = 0;
+			} else if (token == Token.NUMBER) {
+				if (ordinate == 0) {
+					x = tokenizer.doubleValue();
+				} else if (ordinate == 1) {
+					bounds.expandToInclude(x, tokenizer.doubleValue());
+				}
+				ordinate++;
+			}
+		}
+	}
+
+	private void readProperties(GeoJsonTokenizer tokenizer, Properties properties) throws IOException {
+		int index = 0;
+		while (tokenizer.next() == Token.NAME) {
+			Property property = properties.lookup(tokenizer, index++);
+			property.observe(tokenizer.next(), tokenizer);
+		}
+	}
+
+	private CoordinateReferenceSystem readCrs(GeoJsonTokenizer tokenizer) throws IOException {
+		if (tokenizer.getToken() != Token.START_OBJECT) {
+			return null;
+		}
+		String name = null;
+		while (tokenizer.next() == Token.NAME) {
+			boolean properties = tokenizer.nameEquals("properties");
+			if (tokenizer.next() != Token.START_OBJECT || !properties) {
+				tokenizer.skipChildren();
+				continue;
+			}
+			while (tokenizer.next() == Token.NAME) {
+				boolean isName = tokenizer.nameEquals("name");
+				if (tokenizer.next() == Token.STRING && isName) {
+					name = tokenizer.stringValue();
+				} else {
+					tokenizer.skipChildren();
+				}
+			}
+		}
+		if (name == null) {
+			return null;
+		}
+		try {
+			// GeoJSON coordinates are always x/y
+			return CRS.decode(name, true);
+		} catch (FactoryException e) {
+			LOGGER.warn("Unknown crs " + name + ", assuming WGS84", e);
+			return null;
+		}
+	}
+
+	private static Class<? extends Geometry> geometryBinding(Set<String> types) {
+		boolean points = false, lines = false, polygons = false, multi = false;
+		for (String type : types) {
+			multi |= type.startsWith("Multi");
+			if (type.endsWith("Point")) {
+				points = true;
+			} else if (type.endsWith("LineString")) {
+				lines = true;
+			} else if (type.endsWith("Polygon")) {
+				polygons = true;
+			} else {
+				return Geometry.class;
+			}
+		}
+		if (points && !lines && !polygons) {
+			return multi ? MultiPoint.class : Point.class;
+		} else if (lines && !points && !polygons) {
+			return multi ? MultiLineString.class : LineString.class;
+		} else if (polygons && !points && !lines) {
+			return multi ? MultiPolygon.class : Polygon.class;
+		}
+		return Geometry.class;
+	}
+
+	/**
+	 * Properties in the order they were first seen. Features usually list their
+	 * properties in the same order, so the property at the same position in the
+	 * previous feature is tried first and names are not decoded again.
+	 */
+	private static class Properties {
+		final List<Property> list = new ArrayList<>();
+		final Map<String, Property> byName = new HashMap<>();
+
+		Property lookup(GeoJsonTokenizer tokenizer, int index) {
+			if (index < list.size() && tokenizer.nameEquals(list.get(index).utf8)) {
+				return list.get(index);
+			}
+			String name = tokenizer.stringValue();
+			Property property = byName.get(name);
+			if (property == null) {
+				property = new Property(name);
+				byName.put(name, property);
+				list.add(property);
+			}
+			return property;
+		}
+	}
+
+	private static class Property {
+		static final int NONE = 0;
+		static final int BOOLEAN = 1;
+		static final int INTEGER = 2;
+		static final int LONG = 3;
+		static final int DOUBLE = 4;
+		static final int STRING = 5;
+
+		final String name;
+		final byte[] utf8;
+		int kind = NONE;
+		/* longest value as text, in case the property is widened to String */
+		int maxLength;
+
+		Property(String name) {
+			this.name = name;
+			this.utf8 = name.getBytes(StandardCharsets.UTF_8);
+		}
+
+		void observe(Token token, GeoJsonTokenizer tokenizer) throws IOException {
+			switch (token) {
+			case NULL:
+				return;
+			case TRUE:
+			case FALSE:
+				widen(BOOLEAN);
+				maxLength = Math.max(maxLength, 5);
+				return;
+			case NUMBER:
+				int length = tokenizer.textLength();
+				if (!tokenizer.isIntegral()) {
+					widen(DOUBLE);
+				} else if (length <= 9) {
+					// the shapefile store writes Integer into 9 digit wide fields
+					widen(INTEGER);
+				} else if (length <= 18) {
+					widen(LONG);
+				} else {
+					widen(DOUBLE);
+				}
+				maxLength = Math.max(maxLength, length);
+				return;
+			case STRING:
+				widen(STRING);
+				maxLength = Math.max(maxLength, tokenizer.stringByteLength());
+				return;
+			default:
+				// nested objects and arrays are kept as text
+				tokenizer.skipChildren();
+				widen(STRING);
+				maxLength = MAX_DBF_LENGTH;
+				return;
+			}
+		}
+
+		void widen(int seen) {
+			if (kind == NONE || kind == seen) {
+				kind = seen;
+			} else if (kind >= INTEGER && kind <= DOUBLE && seen >= INTEGER && seen <= DOUBLE) {
+				kind = Math.max(kind, seen);
+			} else {
+				kind = STRING;
+			}
+		}
+
+		Class<?> binding() {
+			switch (kind) {
+			case BOOLEAN:
+				return Boolean.class;
+			case INTEGER:
+				return Integer.class;
+			case LONG:
+				return Long.class;
+			case DOUBLE:
+				return Double.class;
+			default:
+				return String.class;
+			}
+		}
+	}
+}
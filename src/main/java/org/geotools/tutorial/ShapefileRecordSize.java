@@ -0,0 +1,89 @@
+package org.geotools.tutorial;
+
+import org.geotools.feature.FeatureTypes;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+
+/**
+ * Estimates how many bytes a feature adds to the .shp and .dbf files, so
+ * writers can react before a file goes past the format limits. Only 2D
+ * geometries are assumed.
+ */
+class ShapefileRecordSize {
+	/** .shp and .shx files start with a 100 byte header */
+	static final int SHP_HEADER_BYTES = 100;
+
+	/** both files address records with signed 32 bit offsets */
+	static final long MAX_FILE_BYTES = Integer.MAX_VALUE;
+
+	private static final int RECORD_HEADER_BYTES = 8;
+
+	private ShapefileRecordSize() {
+	}
+
+	static int shpRecordBytes(Geometry geometry) {
+		int content;
+		if (geometry == null || geometry.isEmpty()) {
+			content = 4;
+		} else if (geometry instanceof Point) {
+			content = 4 + 16;
+		} else if (geometry.getDimension() == 0) {
+			content = 4 + 32 + 4 + 16 * geometry.getNumPoints();
+		} else {
+			content = 4 + 32 + 4 + 4 + 4 * countParts(geometry) + 16 * geometry.getNumPoints();
+		}
+		return RECORD_HEADER_BYTES + content;
+	}
+
+	static int dbfHeaderBytes(SimpleFeatureType shpType) {
+		return 32 + 32 * (shpType.getAttributeCount() - 1) + 1;
+	}
+
+	/**
+	 * Field widths follow the defaults the shapefile store uses when a schema
+	 * does not restrict the length.
+	 */
+	static int dbfRecordBytes(SimpleFeatureType shpType) {
+		int bytes = 1; // deletion flag
+		for (AttributeDescriptor descriptor : shpType.getAttributeDescriptors()) {
+			if (descriptor == shpType.getGeometryDescriptor()) {
+				continue;
+			}
+			Class<?> binding = descriptor.getType().getBinding();
+			if (String.class.equals(binding)) {
+				int length = FeatureTypes.getFieldLength(descriptor);
+				bytes += length > 0 ? Math.min(length, 254) : 254;
+			} else if (Integer.class.equals(binding) || Short.class.equals(binding)
+			    || Byte.class.equals(binding)) {
+				bytes += 9;
+			} else if (Long.class.equals(binding)) {
+				bytes += 19;
+			} else if (Boolean.class.equals(binding)) {
+				bytes += 1;
+			} else if (java.util.Date.class.isAssignableFrom(binding)) {
+				bytes += 8;
+			} else {
+				bytes += 33;
+			}
+		}
+		return bytes;
+	}
+
+	private static int countParts(Geometry geometry) {
+		if (geometry instanceof Polygon) {
+			return 1 + ((Polygon) geometry).getNumInteriorRing();
+		}
+		if (geometry instanceof GeometryCollection) {
+			int parts = 0;
+			for (int i = 0; i < geometry.getNumGeometries(); i++) {
+				parts += countParts(geometry.getGeometryN(i));
+			}
+			return parts;
+		}
+		return 1;
+	}
+}
@@ -0,0 +1,32 @@
+package org.geotools.tutorial;
+
+import java.io.File;
+
+/**
+ * The modification times and lengths of a shapefile and the files next to it
+ * that hold its attributes and index, to tell when any of them has changed.
+ */
+final class ShapefileStamp {
+	private static final String[] EXTENSIONS = { "shp", "shx", "dbf" };
+
+	private ShapefileStamp() {
+	}
+
+	/**
+	 * @return a string that differs whenever the .shp, .shx or .dbf file is
+	 *         written; files that do not exist count as empty
+	 */
+	static String of(File shp) {
+		String path = shp.getPath();
+		int dot = path.lastIndexOf('.');
+		String base = dot < 0 ? path : path.substring(0, dot);
+		// keep the case of the extension, which matters on most file systems
+		boolean upper = dot >= 0 && path.substring(dot + 1).equals(path.substring(dot + 1).toUpperCase());
+		StringBuilder stamp = new StringBuilder();
+		for (String extension : EXTENSIONS) {
+			File file = new File(base + "." + (upper ? extension.toUpperCase() : extension));
+			stamp.append(file.lastModified()).append(':').append(file.length()).append(';');
+		}
+		return stamp.toString();
+	}
+}
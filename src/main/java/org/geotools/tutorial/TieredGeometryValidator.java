@@ -0,0 +1,227 @@
+package org.geotools.tutorial;
+
+import org.locationtech.jts.algorithm.Orientation;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.operation.valid.IsValidOp;
+import org.locationtech.jts.operation.valid.TopologyValidationError;
+
+/**
+ * Gives the same verdict as {@link Geometry#isValid()}, running the full
+ * topology check of {@link IsValidOp} only where cheaper checks cannot decide.
+ * <p>
+ * Points and lines are decided from their coordinates alone: finite ordinates
+ * and, for a line, two distinct points. Rings are checked for closure and
+ * point count, and the holes of a polygon must lie within the envelope of its
+ * shell. A polygon without holes whose shell is convex, e.g. a triangle or a
+ * rectangle, is valid once these checks pass. Other rings and polygons that
+ * pass them need the full check, which looks for self-intersections and the
+ * nesting of rings and polygons.
+ * <p>
+ * So invalid geometries that fail a cheap check and convex polygons are faster
+ * to decide than with {@link Geometry#isValid()}; valid concave polygons,
+ * polygons with holes and multipolygons of several parts take the full check
+ * after the cheap ones and are slightly slower.
+ */
+public final class TieredGeometryValidator {
+
+	private TieredGeometryValidator() {
+	}
+
+	public static boolean isValid(Geometry geometry) {
+		return check(geometry) == null;
+	}
+
+	/**
+	 * @return why the geometry is invalid, or {@code null} if it is valid
+	 */
+	public static String check(Geometry geometry) {
+		if (geometry.isEmpty()) {
+			return null;
+		}
+		if (geometry instanceof Point) {
+			return checkCoordinates(((Point) geometry).getCoordinateSequence());
+		}
+		if (geometry instanceof LinearRing) {
+			String reason = checkRing((LinearRing) geometry);
+			return reason != null ? reason : fullCheck(geometry);
+		}
+		if (geometry instanceof LineString) {
+			return checkLine((LineString) geometry);
+		}
+		if (geometry instanceof Polygon) {
+			String reason = checkPolygon((Polygon) geometry);
+			if (reason != null) {
+				return reason;
+			}
+			return isConvex((Polygon) geometry) ? null : fullCheck(geometry);
+		}
+		if (geometry instanceof MultiPolygon) {
+			for (int i = 0; i < geometry.getNumGeometries(); i++) {
+				String reason = checkPolygon((Polygon) geometry.getGeometryN(i));
+				if (reason != null) {
+					return reason;
+				}
+			}
+			// the parts of a multipolygon may overlap each other
+			if (geometry.getNumGeometries() == 1 && isConvex((Polygon) geometry.getGeometryN(0))) {
+				return null;
+			}
+			return fullCheck(geometry);
+		}
+		if (geometry instanceof GeometryCollection) {
+			// the elements of other collections are valid on their own
+			for (int i = 0; i < geometry.getNumGeometries(); i++) {
+				String reason = check(geometry.getGeometryN(i));
+				if (reason != null) {
+					return reason;
+				}
+			}
+			return null;
+		}
+		return fullCheck(geometry);
+	}
+
+	private static String checkLine(LineString line) {
+		CoordinateSequence seq = line.getCoordinateSequence();
+		String reason = checkCoordinates(seq);
+		if (reason != null) {
+			return reason;
+		}
+		double x = seq.getX(0);
+		double y = seq.getY(0);
+		for (int i = 1; i < seq.size(); i++) {
+			if (seq.getX(i) != x || seq.getY(i) != y) {
+				return null;
+			}
+		}
+		return error(TopologyValidationError.TOO_FEW_POINTS, seq.getCoordinate(0));
+	}
+
+	private static String checkPolygon(Polygon polygon) {
+		if (polygon.isEmpty()) {
+			return null;
+		}
+		LinearRing shell = polygon.getExteriorRing();
+		String reason = checkRing(shell);
+		if (reason != null) {
+			return reason;
+		}
+		Envelope shellEnvelope = shell.getEnvelopeInternal();
+		for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+			LinearRing hole = polygon.getInteriorRingN(i);
+			reason = checkRing(hole);
+			if (reason != null) {
+				return reason;
+			}
+			if (!hole.isEmpty() && !shellEnvelope.covers(hole.getEnvelopeInternal())) {
+				return error(TopologyValidationError.HOLE_OUTSIDE_SHELL, hole.getCoordinateN(0));
+			}
+		}
+		return null;
+	}
+
+	private static String checkRing(LinearRing ring) {
+		if (ring.isEmpty()) {
+			return null;
+		}
+		CoordinateSequence seq = ring.getCoordinateSequence();
+		String reason = checkCoordinates(seq);
+		if (reason != null) {
+			return reason;
+		}
+		int last = seq.size() - 1;
+		if (seq.getX(0) != seq.getX(last) || seq.getY(0) != seq.getY(last)) {
+			return error(TopologyValidationError.RING_NOT_CLOSED, seq.getCoordinate(0));
+		}
+		if (seq.size() < LinearRing.MINIMUM_VALID_SIZE) {
+			return error(TopologyValidationError.TOO_FEW_POINTS, seq.getCoordinate(0));
+		}
+		Envelope envelope = ring.getEnvelopeInternal();
+		if (envelope.getWidth() == 0 || envelope.getHeight() == 0) {
+			// a ring without area either has too few distinct points or folds
+			// back on itself
+			return fullCheck(ring);
+		}
+		return null;
+	}
+
+	/*
+	 * A shell that turns the same way at every vertex and goes around only once
+	 * is convex, so it is simple and a polygon of it alone is valid. It goes
+	 * around more than once, like a star, if its edges change between going left
+	 * and right, or up and down, more than twice. A collinear or repeated vertex
+	 * leaves the polygon to the full check.
+	 */
+	private static boolean isConvex(Polygon polygon) {
+		if (polygon.isEmpty() || polygon.getNumInteriorRing() > 0) {
+			return false;
+		}
+		CoordinateSequence seq = polygon.getExteriorRing().getCoordinateSequence();
+		int n = seq.size() - 1;
+		// copies, as the coordinates are overwritten
+		Coordinate a = seq.getCoordinateCopy(n - 1);
+		Coordinate b = seq.getCoordinateCopy(0);
+		Coordinate c = new Coordinate();
+		int orientation = 0;
+		int xChanges = 0;
+		int yChanges = 0;
+		int xSign = (int) Math.signum(b.x - a.x);
+		int ySign = (int) Math.signum(b.y - a.y);
+		for (int i = 1; i <= n; i++) {
+			seq.getCoordinate(i, c);
+			int turn = Orientation.index(a, b, c);
+			if (turn == Orientation.COLLINEAR || (orientation != 0 && turn != orientation)) {
+				return false;
+			}
+			orientation = turn;
+			int dx = (int) Math.signum(c.x - b.x);
+			if (dx != 0) {
+				if (xSign != 0 && dx != xSign) {
+					xChanges++;
+				}
+				xSign = dx;
+			}
+			int dy = (int) Math.signum(c.y - b.y);
+			if (dy != 0) {
+				if (ySign != 0 && dy != ySign) {
+					yChanges++;
+				}
+				ySign = dy;
+			}
+			Coordinate free = a;
+			a = b;
+			b = c;
+			c = free;
+		}
+		return xChanges <= 2 && yChanges <= 2;
+	}
+
+	private static String checkCoordinates(CoordinateSequence seq) {
+		for (int i = 0; i < seq.size(); i++) {
+			double x = seq.getX(i);
+			double y = seq.getY(i);
+			if (Double.isNaN(x) || Double.isInfinite(x) || Double.isNaN(y) || Double.isInfinite(y)) {
+				return error(TopologyValidationError.INVALID_COORDINATE, seq.getCoordinate(i));
+			}
+		}
+		return null;
+	}
+
+	private static String fullCheck(Geometry geometry) {
+		TopologyValidationError error = new IsValidOp(geometry).getValidationError();
+		return error == null ? null : error.toString();
+	}
+
+	private static String error(int type, Coordinate location) {
+		return new TopologyValidationError(type, location).toString();
+	}
+}
@@ -0,0 +1,304 @@
+package org.geotools.tutorial;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.DirectLayer;
+import org.geotools.map.Layer;
+import org.geotools.map.MapContent;
+import org.geotools.map.MapViewport;
+import org.geotools.map.StyleLayer;
+import org.geotools.renderer.lite.StreamingRenderer;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Draws a layer from rendered tiles, so a pan or a return to an earlier view
+ * only renders the tiles not seen before.
+ * <p>
+ * Tiles are 256 pixels square on a grid anchored at the origin of the map
+ * coordinate reference system, with a resolution that is a power of two; a view
+ * uses the level closest to its own resolution and scales the tiles slightly.
+ * Missing tiles are rendered with a {@link StreamingRenderer} on a pool of
+ * threads. Tiles are kept per coordinate reference system and style in a least
+ * recently used cache bounded in bytes; tiles evicted from memory are written
+ * to a temporary directory as PNG images, which is bounded as well. All tiles
+ * are dropped when the source shapefile, its index or its attributes change.
+ * <p>
+ * The wrapped layer is disposed with this layer.
+ */
+public class TileCacheLayer extends DirectLayer {
+	final static private Logger LOGGER = LoggerFactory.getLogger(TileCacheLayer.class);
+
+	public static final long DEFAULT_MEMORY_BYTES = 256L * 1024 * 1024;
+	public static final long DEFAULT_DISK_BYTES = 1024L * 1024 * 1024;
+	private static final int TILE_SIZE = 256;
+
+	private final Layer layer;
+	private final File source;
+	/* renders the wrapped layer into tiles; its viewport is not used */
+	private final MapContent content = new MapContent();
+	private final ExecutorService renderers = Executors
+	    .newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+	private final TileCache tiles;
+	/* the key prefix of each coordinate reference system and style drawn */
+	private final Map<List<Object>, String> prefixes = new HashMap<>();
+	private String sourceStamp;
+
+	public TileCacheLayer(Layer layer, File source) throws IOException {
+		this(layer, source, DEFAULT_MEMORY_BYTES, DEFAULT_DISK_BYTES);
+	}
+
+	/**
+	 * @param source
+	 *            the shapefile the layer is read from, checked for changes
+	 *            before each draw
+	 * @param memoryBytes
+	 *            the maximum size of the tiles kept in memory
+	 * @param diskBytes
+	 *            the maximum size of the tiles spilled to disk
+	 */
+	public TileCacheLayer(Layer layer, File source, long memoryBytes, long diskBytes) throws IOException {
+		this.layer = layer;
+		this.source = source;
+		this.sourceStamp = ShapefileStamp.of(source);
+		this.tiles = new TileCache(Files.createTempDirectory("tiles").toFile(), memoryBytes, diskBytes);
+		content.addLayer(layer);
+		setTitle(layer.getTitle());
+	}
+
+	public ReferencedEnvelope getBounds() {
+		return layer.getBounds();
+	}
+
+	public void draw(Graphics2D graphics, MapContent map, MapViewport viewport) {
+		String stamp = ShapefileStamp.of(source);
+		if (!stamp.equals(sourceStamp)) {
+			LOGGER.info(source + " has changed, dropping its tiles");
+			tiles.clear();
+			sourceStamp = stamp;
+		}
+		ReferencedEnvelope area = viewport.getBounds();
+		Rectangle screen = viewport.getScreenArea();
+		if (area == null || area.isEmpty() || screen.isEmpty()) {
+			return;
+		}
+		CoordinateReferenceSystem crs = area.getCoordinateReferenceSystem();
+		Object style = layer instanceof StyleLayer ? ((StyleLayer) layer).getStyle() : null;
+		// compared in full, as tiles of another pair with the same hash would show
+		String prefix = prefixes.computeIfAbsent(Arrays.asList(crs, style), pair -> prefixes.size() + "_");
+
+		int level = (int) Math.round(Math.log(area.getWidth() / screen.getWidth()) / Math.log(2));
+		double span = Math.pow(2, level) * TILE_SIZE;
+		long minCol = (long) Math.floor(area.getMinX() / span);
+		long maxCol = (long) Math.floor(area.getMaxX() / span);
+		long minRow = (long) Math.floor(area.getMinY() / span);
+		long maxRow = (long) Math.floor(area.getMaxY() / span);
+
+		// render the missing tiles in parallel, then draw them all
+		List<String> keys = new ArrayList<>();
+		List<ReferencedEnvelope> envelopes = new ArrayList<>();
+		List<Callable<BufferedImage>> missing = new ArrayList<>();
+		List<String> missingKeys = new ArrayList<>();
+		for (long row = minRow; row <= maxRow; row++) {
+			for (long col = minCol; col <= maxCol; col++) {
+				String key = prefix + level + "_" + col + "_" + row;
+				ReferencedEnvelope envelope = new ReferencedEnvelope(col * span, (col + 1) * span, row * span,
+				    (row + 1) * span, crs);
+				keys.add(key);
+				envelopes.add(envelope);
+				if (!tiles.contains(key)) {
+					missing.add(() -> render(envelope));
+					missingKeys.add(key);
+				}
+			}
+		}
+		Map<String, BufferedImage> rendered = new LinkedHashMap<>();
+		try {
+			List<Future<BufferedImage>> futures = renderers.invokeAll(missing);
+			for (int i = 0; i < futures.size(); i++) {
+				BufferedImage image = futures.get(i).get();
+				rendered.put(missingKeys.get(i), image);
+				tiles.put(missingKeys.get(i), image);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException e) {
+			LOGGER.error("Could not render tile", e.getCause());
+			return;
+		}
+
+		AffineTransform worldToScreen = viewport.getWorldToScreen();
+		for (int i = 0; i < keys.size(); i++) {
+			BufferedImage image = rendered.get(keys.get(i));
+			if (image == null) {
+				image = tiles.get(keys.get(i));
+			}
+			if (image == null) {
+				// evicted while this view was rendered
+				image = render(envelopes.get(i));
+			}
+			ReferencedEnvelope envelope = envelopes.get(i);
+			Point2D upperLeft = worldToScreen.transform(new Point2D.Double(envelope.getMinX(), envelope.getMaxY()),
+			    null);
+			Point2D lowerRight = worldToScreen.transform(new Point2D.Double(envelope.getMaxX(), envelope.getMinY()),
+			    null);
+			// adjacent tiles round to the same edges, so no gaps show between them
+			int x = (int) Math.round(upperLeft.getX());
+			int y = (int) Math.round(upperLeft.getY());
+			graphics.drawImage(image, x, y, (int) Math.round(lowerRight.getX()) - x,
+			    (int) Math.round(lowerRight.getY()) - y, null);
+		}
+	}
+
+	public void dispose() {
+		renderers.shutdownNow();
+		tiles.close();
+		content.dispose();
+		super.dispose();
+	}
+
+	private BufferedImage render(ReferencedEnvelope envelope) {
+		BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D graphics = image.createGraphics();
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			StreamingRenderer renderer = new StreamingRenderer();
+			renderer.setMapContent(content);
+			renderer.paint(graphics, new Rectangle(TILE_SIZE, TILE_SIZE), envelope);
+		} finally {
+			graphics.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * Tiles in memory, spilling to a directory, each bounded in bytes.
+	 */
+	private static class TileCache {
+		private final File directory;
+		private final long memoryBytes;
+		private final long diskBytes;
+		/* in access order, so the eldest tile is the least recently used */
+		private final LinkedHashMap<String, BufferedImage> memory = new LinkedHashMap<>(16, 0.75f, true);
+		private final LinkedHashMap<String, File> disk = new LinkedHashMap<>(16, 0.75f, true);
+		private long memoryUsed;
+		private long diskUsed;
+
+		TileCache(File directory, long memoryBytes, long diskBytes) {
+			this.directory = directory;
+			this.memoryBytes = memoryBytes;
+			this.diskBytes = diskBytes;
+		}
+
+		synchronized boolean contains(String key) {
+			return memory.containsKey(key) || disk.containsKey(key);
+		}
+
+		/**
+		 * @return the tile, moved back to memory if it was spilled, or
+		 *         {@code null}
+		 */
+		synchronized BufferedImage get(String key) {
+			BufferedImage image = memory.get(key);
+			if (image != null) {
+				return image;
+			}
+			File file = disk.remove(key);
+			if (file == null) {
+				return null;
+			}
+			diskUsed -= file.length();
+			try {
+				image = ImageIO.read(file);
+			} catch (IOException e) {
+				LOGGER.warn("Could not read tile " + file, e);
+			}
+			file.delete();
+			if (image != null) {
+				put(key, image);
+			}
+			return image;
+		}
+
+		synchronized void put(String key, BufferedImage image) {
+			BufferedImage old = memory.put(key, image);
+			if (old != null) {
+				memoryUsed -= bytes(old);
+			}
+			memoryUsed += bytes(image);
+			Iterator<Map.Entry<String, BufferedImage>> eldest = memory.entrySet().iterator();
+			// the tile just added always stays
+			while (memoryUsed > memoryBytes && memory.size() > 1) {
+				Map.Entry<String, BufferedImage> entry = eldest.next();
+				eldest.remove();
+				memoryUsed -= bytes(entry.getValue());
+				spill(entry.getKey(), entry.getValue());
+			}
+		}
+
+		synchronized void clear() {
+			memory.clear();
+			memoryUsed = 0;
+			for (File file : disk.values()) {
+				file.delete();
+			}
+			disk.clear();
+			diskUsed = 0;
+		}
+
+		synchronized void close() {
+			clear();
+			directory.delete();
+		}
+
+		private void spill(String key, BufferedImage image) {
+			File file = new File(directory, key + ".png");
+			try {
+				ImageIO.write(image, "png", file);
+			} catch (IOException e) {
+				// the tile is rendered again when needed
+				LOGGER.warn("Could not spill tile " + file, e);
+				file.delete();
+				return;
+			}
+			disk.put(key, file);
+			diskUsed += file.length();
+			Iterator<File> eldest = disk.values().iterator();
+			while (diskUsed > diskBytes && eldest.hasNext()) {
+				File evicted = eldest.next();
+				eldest.remove();
+				diskUsed -= evicted.length();
+				evicted.delete();
+			}
+		}
+
+		private static long bytes(BufferedImage image) {
+			return (long) image.getWidth() * image.getHeight() * 4;
+		}
+	}
+}
@@ -0,0 +1,343 @@
+package org.geotools.tutorial;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Geometry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers the outcome of {@link Geometry#isValid()} per feature in a sidecar
+ * file next to a shapefile, {@code name.validation}.
+ * <p>
+ * The sidecar records the size and modification time of the .shp file. While
+ * they are unchanged the whole result is taken from the sidecar without reading
+ * a single feature. Once the file has changed, a feature is only validated
+ * again if its id is new or the hash of its geometry differs; all other
+ * results are reused.
+ * <p>
+ * Results are kept by record number in primitive arrays, as the id of a
+ * shapefile feature is the type name and the record number; only other ids are
+ * kept as strings. Lookups and updates are thread safe.
+ */
+public class ValidationCache {
+	final static private Logger LOGGER = LoggerFactory.getLogger(ValidationCache.class);
+
+	private static final int MAGIC = 0x56414c32; // VAL2
+
+	private final File shp;
+	private final File sidecar;
+	/* the ids of the features of the shapefile are this and the record number */
+	private final String prefix;
+	private final boolean upToDate;
+	/* the number of features checked by the last run */
+	private final long checked;
+	/* results of the last run */
+	private final Results previous;
+	/* results of this run, written by save() */
+	private final Results current = new Results();
+
+	private static class Entry {
+		final long hash;
+		final boolean valid;
+
+		Entry(long hash, boolean valid) {
+			this.hash = hash;
+			this.valid = valid;
+		}
+	}
+
+	/*
+	 * Results by record index, the record number minus one, and by id for the
+	 * ids that are not a record number.
+	 */
+	private static class Results {
+		long[] hashes = new long[1024];
+		final BitSet present = new BitSet();
+		final BitSet valid = new BitSet();
+		final Map<String, Entry> others = new HashMap<>();
+
+		synchronized void put(int index, long hash, boolean isValid) {
+			if (index >= hashes.length) {
+				hashes = Arrays.copyOf(hashes, Math.max(index + 1, hashes.length * 2));
+			}
+			hashes[index] = hash;
+			present.set(index);
+			valid.set(index, isValid);
+		}
+
+		synchronized void put(String id, Entry entry) {
+			others.put(id, entry);
+		}
+
+		/*
+		 * The saved validity, or null if missing or for another hash. Only used on
+		 * the results of the last run, which are not written after loading.
+		 */
+		Boolean get(int index, long hash) {
+			if (!present.get(index) || hashes[index] != hash) {
+				return null;
+			}
+			return valid.get(index);
+		}
+
+		Boolean get(String id, long hash) {
+			Entry entry = others.get(id);
+			return entry == null || entry.hash != hash ? null : entry.valid;
+		}
+
+		synchronized void putAll(Results results) {
+			for (int i = results.present.nextSetBit(0); i >= 0; i = results.present.nextSetBit(i + 1)) {
+				put(i, results.hashes[i], results.valid.get(i));
+			}
+			others.putAll(results.others);
+		}
+
+		synchronized void write(DataOutputStream out) throws IOException {
+			int records = present.length();
+			out.writeInt(records);
+			for (int i = 0; i < records; i++) {
+				out.writeLong(hashes[i]);
+			}
+			writeBits(out, present);
+			writeBits(out, valid);
+			out.writeInt(others.size());
+			for (Map.Entry<String, Entry> entry : others.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeLong(entry.getValue().hash);
+				out.writeBoolean(entry.getValue().valid);
+			}
+		}
+
+		void read(DataInputStream in) throws IOException {
+			int records = in.readInt();
+			hashes = new long[records];
+			for (int i = 0; i < records; i++) {
+				hashes[i] = in.readLong();
+			}
+			present.or(readBits(in));
+			valid.or(readBits(in));
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String id = in.readUTF();
+				long hash = in.readLong();
+				others.put(id, new Entry(hash, in.readBoolean()));
+			}
+		}
+
+		private static void writeBits(DataOutputStream out, BitSet bits) throws IOException {
+			long[] words = bits.toLongArray();
+			out.writeInt(words.length);
+			for (long word : words) {
+				out.writeLong(word);
+			}
+		}
+
+		private static BitSet readBits(DataInputStream in) throws IOException {
+			long[] words = new long[in.readInt()];
+			for (int i = 0; i < words.length; i++) {
+				words[i] = in.readLong();
+			}
+			return BitSet.valueOf(words);
+		}
+	}
+
+	private ValidationCache(File shp, File sidecar, boolean upToDate, long checked, Results previous) {
+		this.shp = shp;
+		this.sidecar = sidecar;
+		String name = shp.getName();
+		int dot = name.lastIndexOf('.');
+		this.prefix = (dot > 0 ? name.substring(0, dot) : name) + ".";
+		this.upToDate = upToDate;
+		this.checked = checked;
+		this.previous = previous;
+	}
+
+	/**
+	 * Reads the sidecar of a shapefile; a missing or unreadable sidecar gives an
+	 * empty cache.
+	 */
+	public static ValidationCache load(File shp) {
+		File sidecar = sidecarFile(shp);
+		Results results = new Results();
+		boolean upToDate = false;
+		long checked = 0;
+		if (sidecar.exists()) {
+			try (DataInputStream in = new DataInputStream(
+			    new BufferedInputStream(Files.newInputStream(sidecar.toPath()), 1 << 16))) {
+				if (in.readInt() != MAGIC) {
+					throw new IOException("Not a validation cache");
+				}
+				long length = in.readLong();
+				long lastModified = in.readLong();
+				checked = in.readLong();
+				results.read(in);
+				upToDate = length == shp.length() && lastModified == shp.lastModified();
+			} catch (IOException e) {
+				LOGGER.warn("Ignoring validation cache " + sidecar, e);
+				results = new Results();
+				checked = 0;
+			}
+		}
+		return new ValidationCache(shp, sidecar, upToDate, checked, results);
+	}
+
+	static File sidecarFile(File shp) {
+		String name = shp.getName();
+		int dot = name.lastIndexOf('.');
+		return new File(shp.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".validation");
+	}
+
+	/**
+	 * @return whether the shapefile is unchanged since the results were saved,
+	 *         so {@link #getResult()} can be used as is
+	 */
+	public boolean isUpToDate() {
+		return upToDate;
+	}
+
+	/**
+	 * @return the saved results of an unchanged shapefile
+	 */
+	public ParallelGeometryValidator.Result getResult() {
+		if (!upToDate) {
+			throw new IllegalStateException("The shapefile has changed since " + sidecar + " was saved");
+		}
+		current.putAll(previous);
+		List<String> invalidIds = new ArrayList<>();
+		for (int i = previous.present.nextSetBit(0); i >= 0; i = previous.present.nextSetBit(i + 1)) {
+			if (!previous.valid.get(i)) {
+				invalidIds.add(prefix + (i + 1));
+			}
+		}
+		for (Map.Entry<String, Entry> entry : previous.others.entrySet()) {
+			if (!entry.getValue().valid) {
+				invalidIds.add(entry.getKey());
+			}
+		}
+		return new ParallelGeometryValidator.Result(checked, invalidIds.size(), invalidIds, false);
+	}
+
+	/**
+	 * @return the saved validity of the feature, or {@code null} if the feature
+	 *         is new or its geometry has changed
+	 */
+	public Boolean lookup(String id, long hash) {
+		int index = index(id);
+		Boolean valid = index < 0 ? previous.get(id, hash) : previous.get(index, hash);
+		if (valid != null) {
+			put(id, hash, valid);
+		}
+		return valid;
+	}
+
+	public void put(String id, long hash, boolean valid) {
+		int index = index(id);
+		if (index < 0) {
+			current.put(id, new Entry(hash, valid));
+		} else {
+			current.put(index, hash, valid);
+		}
+	}
+
+	/*
+	 * Returns the record index of a shapefile feature id, or -1 for an id that
+	 * must be kept as is.
+	 */
+	private int index(String id) {
+		if (!id.startsWith(prefix) || id.length() - prefix.length() > 9) {
+			return -1;
+		}
+		int number = 0;
+		for (int i = prefix.length(); i < id.length(); i++) {
+			char c = id.charAt(i);
+			// the id is rebuilt from the number, so it must be written the same way
+			if (c < '0' || c > '9' || (c == '0' && number == 0)) {
+				return -1;
+			}
+			number = number * 10 + (c - '0');
+		}
+		return number - 1;
+	}
+
+	/**
+	 * Writes the results of this run for the current state of the shapefile.
+	 * Features that were not looked up or put are dropped.
+	 *
+	 * @param checked
+	 *            the number of features checked by this run, including those
+	 *            without a geometry, as reported by {@link #getResult()} later
+	 */
+	public void save(long checked) throws IOException {
+		File temp = new File(sidecar.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+		    new BufferedOutputStream(Files.newOutputStream(temp.toPath()), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeLong(shp.length());
+			out.writeLong(shp.lastModified());
+			out.writeLong(checked);
+			current.write(out);
+		}
+		try {
+			Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING,
+			    StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * @return a 64 bit hash of the geometry type, structure and ordinates
+	 */
+	public static long hash(Geometry geometry) {
+		HashFilter filter = new HashFilter(geometry.getGeometryType().hashCode());
+		geometry.apply(filter);
+		return filter.hash;
+	}
+
+	/* FNV-1a over the coordinate sequences; sequence sizes capture the structure */
+	private static class HashFilter implements CoordinateSequenceFilter {
+		private static final long PRIME = 0x100000001b3L;
+		long hash = 0xcbf29ce484222325L;
+
+		HashFilter(int seed) {
+			mix(seed);
+		}
+
+		public void filter(CoordinateSequence seq, int i) {
+			if (i == 0) {
+				mix(seq.size());
+			}
+			mix(Double.doubleToLongBits(seq.getOrdinate(i, 0)));
+			mix(Double.doubleToLongBits(seq.getOrdinate(i, 1)));
+		}
+
+		private void mix(long value) {
+			hash = (hash ^ value) * PRIME;
+		}
+
+		public boolean isDone() {
+			return false;
+		}
+
+		public boolean isGeometryChanged() {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package org.geotools.tutorial;
+
+import java.awt.geom.AffineTransform;
+
+import junit.framework.TestCase;
+
+import org.geotools.geometry.jts.JTS;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.referencing.operation.transform.AffineTransform2D;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKTReader;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+
+/**
+ * Transforms batches of geometries with {@link BulkReprojector} and compares
+ * them with {@link JTS#transform(Geometry, MathTransform)}.
+ */
+public class BulkReprojectorTest extends TestCase {
+
+	/* parsed from WKT, so no EPSG database is needed */
+	private static final String UTM_32N = "PROJCS[\"WGS 84 / UTM zone 32N\", GEOGCS[\"WGS 84\","
+	    + " DATUM[\"WGS_1984\", SPHEROID[\"WGS 84\", 6378137, 298.257223563]], PRIMEM[\"Greenwich\", 0],"
+	    + " UNIT[\"degree\", 0.0174532925199433]], PROJECTION[\"Transverse_Mercator\"],"
+	    + " PARAMETER[\"latitude_of_origin\", 0], PARAMETER[\"central_meridian\", 9],"
+	    + " PARAMETER[\"scale_factor\", 0.9996], PARAMETER[\"false_easting\", 500000],"
+	    + " PARAMETER[\"false_northing\", 0], UNIT[\"metre\", 1]]";
+
+	private static final String[] WKT = { "POINT (9.5 45.25)", "LINESTRING (8 44, 9 45, 10 46.5)",
+	    "POLYGON ((8 44, 10 44, 10 46, 8 46, 8 44), (8.5 44.5, 8.5 45, 9 45, 8.5 44.5))",
+	    "MULTIPOLYGON (((8 44, 8.5 44, 8.5 44.5, 8 44)), ((9 45, 9.5 45, 9.5 45.5, 9 45)))",
+	    "MULTIPOINT ((7 43), (11 47))", "GEOMETRYCOLLECTION (POINT (9 45), LINESTRING (9 45, 9.1 45.1))" };
+
+	private final WKTReader wkt = new WKTReader();
+	private CoordinateReferenceSystem utm;
+
+	protected void setUp() throws Exception {
+		utm = CRS.parseWKT(UTM_32N);
+	}
+
+	public void testMatchesJts() throws Exception {
+		MathTransform transform = BulkReprojector.findTransform(DefaultGeographicCRS.WGS84, utm);
+		Geometry[] geometries = read(WKT);
+		Geometry[] transformed = BulkReprojector.transform(geometries, transform);
+		assertEquals(geometries.length, transformed.length);
+		for (int i = 0; i < geometries.length; i++) {
+			Geometry expected = JTS.transform(geometries[i], transform);
+			assertEquals(expected.getGeometryType(), transformed[i].getGeometryType());
+			assertTrue(WKT[i], expected.equalsExact(transformed[i], 1e-6));
+		}
+	}
+
+	public void testDoesNotChangeInput() throws Exception {
+		Geometry[] geometries = read(WKT);
+		BulkReprojector.transform(geometries, BulkReprojector.findTransform(DefaultGeographicCRS.WGS84, utm));
+		Geometry[] originals = read(WKT);
+		for (int i = 0; i < geometries.length; i++) {
+			assertTrue(WKT[i], originals[i].equalsExact(geometries[i]));
+		}
+	}
+
+	public void testKeepsNullsAndOrder() throws Exception {
+		MathTransform transform = new AffineTransform2D(AffineTransform.getTranslateInstance(10, 20));
+		Geometry[] transformed = BulkReprojector.transform(
+		    new Geometry[] { null, wkt.read("POINT (1 2)"), null, wkt.read("LINESTRING (0 0, 1 1)"), null }, transform);
+		assertNull(transformed[0]);
+		assertTrue(wkt.read("POINT (11 22)").equalsExact(transformed[1]));
+		assertNull(transformed[2]);
+		assertTrue(wkt.read("LINESTRING (10 20, 11 21)").equalsExact(transformed[3]));
+		assertNull(transformed[4]);
+	}
+
+	public void testKeepsZ() throws Exception {
+		MathTransform transform = new AffineTransform2D(AffineTransform.getScaleInstance(2, 3));
+		Geometry[] transformed = BulkReprojector.transform(new Geometry[] { wkt.read("POINT Z (1 2 5)") }, transform);
+		assertEquals(2, transformed[0].getCoordinate().getX(), 0);
+		assertEquals(6, transformed[0].getCoordinate().getY(), 0);
+		assertEquals(5, transformed[0].getCoordinate().getZ(), 0);
+	}
+
+	public void testEmpty() throws Exception {
+		MathTransform transform = new AffineTransform2D(AffineTransform.getTranslateInstance(1, 1));
+		assertEquals(0, BulkReprojector.transform(new Geometry[0], transform).length);
+		Geometry[] transformed = BulkReprojector.transform(new Geometry[] { wkt.read("POLYGON EMPTY"),
+		    wkt.read("POINT (0 0)") }, transform);
+		assertTrue(transformed[0].isEmpty());
+		assertTrue(wkt.read("POINT (1 1)").equalsExact(transformed[1]));
+	}
+
+	public void testCachesTransforms() throws Exception {
+		assertSame(BulkReprojector.findTransform(DefaultGeographicCRS.WGS84, utm),
+		    BulkReprojector.findTransform(DefaultGeographicCRS.WGS84, CRS.parseWKT(UTM_32N)));
+	}
+
+	private Geometry[] read(String... texts) throws Exception {
+		Geometry[] geometries = new Geometry[texts.length];
+		for (int i = 0; i < texts.length; i++) {
+			geometries[i] = wkt.read(texts[i]);
+		}
+		return geometries;
+	}
+}
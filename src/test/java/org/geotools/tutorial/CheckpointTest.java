@@ -0,0 +1,74 @@
+package org.geotools.tutorial;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+/**
+ * Saves and loads {@link Checkpoint}s.
+ */
+public class CheckpointTest extends TestCase {
+
+	private File directory;
+	private File input;
+	private File file;
+
+	protected void setUp() throws IOException {
+		directory = Files.createTempDirectory("checkpoint").toFile();
+		input = new File(directory, "input.geojson");
+		Files.write(input.toPath(), "{\"type\": \"FeatureCollection\", \"features\": []}".getBytes(StandardCharsets.UTF_8));
+		file = new File(directory, "output.shp.checkpoint");
+	}
+
+	protected void tearDown() {
+		for (File child : directory.listFiles()) {
+			child.delete();
+		}
+		directory.delete();
+	}
+
+	public void testMissing() throws IOException {
+		assertNull(Checkpoint.load(file));
+	}
+
+	public void testSaveAndLoad() throws IOException {
+		new Checkpoint(12345678901L, 42, 3, "output_003.shp", input).save(file);
+		Checkpoint checkpoint = Checkpoint.load(file);
+		assertEquals(12345678901L, checkpoint.getOffset());
+		assertEquals(42, checkpoint.getCount());
+		assertEquals(3, checkpoint.getParts());
+		assertEquals("output_003.shp", checkpoint.getPart());
+		assertTrue(checkpoint.isValidFor(input));
+		assertFalse(new File(file.getPath() + ".tmp").exists());
+	}
+
+	public void testReplaces() throws IOException {
+		new Checkpoint(10, 1, 1, "output_001.shp", input).save(file);
+		new Checkpoint(20, 2, 2, "output_002.shp", input).save(file);
+		assertEquals(20, Checkpoint.load(file).getOffset());
+	}
+
+	public void testChangedInput() throws IOException {
+		new Checkpoint(10, 1, 1, "output_001.shp", input).save(file);
+		Files.write(input.toPath(), "{\"type\": \"FeatureCollection\", \"features\": [ ]}".getBytes(StandardCharsets.UTF_8));
+		assertFalse(Checkpoint.load(file).isValidFor(input));
+	}
+
+	public void testTouchedInput() throws IOException {
+		new Checkpoint(10, 1, 1, "output_001.shp", input).save(file);
+		input.setLastModified(input.lastModified() - 60_000);
+		assertFalse(Checkpoint.load(file).isValidFor(input));
+	}
+
+	public void testInvalid() throws IOException {
+		Files.write(file.toPath(), "offset=x\n".getBytes(StandardCharsets.ISO_8859_1));
+		try {
+			Checkpoint.load(file);
+			fail("Loaded an invalid checkpoint");
+		} catch (IOException expected) {
+		}
+	}
+}
@@ -0,0 +1,279 @@
+package org.geotools.tutorial;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.geotools.data.DataUtilities;
+import org.locationtech.jts.geom.Point;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Reads rows with {@link CsvPointReader}, comparing its number parsing with
+ * {@link Double#parseDouble(String)} and {@link Long#parseLong(String)}.
+ */
+public class CsvPointReaderTest extends TestCase {
+
+	/* the buffer of a reader, refilled while a row is read */
+	private static final int BUFFER_BYTES = 64 * 1024;
+
+	private SimpleFeatureType schema;
+
+	protected void setUp() throws Exception {
+		// latitude and longitude come first, then name, count, big and value
+		schema = DataUtilities.createType("test", "location:Point,name:String,count:Integer,big:Long,value:Double");
+	}
+
+	public void testReads() throws IOException {
+		String csv = "lat,lon,name,count,big,value\r\n45.5, -7.25 ,first,1,12345678901,0.5\r\n\r\n"
+		    + "-1,2,\u00e9t\u00e9,,,\n3,4,last,-3,-4,-5e-1";
+		try (CsvPointReader reader = reader(csv, true)) {
+			assertEquals("lat,lon,name,count,big,value", reader.getHeader());
+			SimpleFeature feature = reader.next();
+			Point point = (Point) feature.getDefaultGeometry();
+			// longitude first
+			assertEquals(-7.25, point.getX(), 0);
+			assertEquals(45.5, point.getY(), 0);
+			assertEquals("first", feature.getAttribute("name"));
+			assertEquals(Integer.valueOf(1), feature.getAttribute("count"));
+			assertEquals(Long.valueOf(12345678901L), feature.getAttribute("big"));
+			assertEquals(Double.valueOf(0.5), feature.getAttribute("value"));
+
+			// the blank line is skipped, and empty numbers are null
+			feature = reader.next();
+			assertEquals("\u00e9t\u00e9", feature.getAttribute("name"));
+			assertNull(feature.getAttribute("count"));
+			assertNull(feature.getAttribute("big"));
+			assertNull(feature.getAttribute("value"));
+
+			// the last line has no newline
+			feature = reader.next();
+			assertEquals(Double.valueOf(-0.5), feature.getAttribute("value"));
+			assertFalse(reader.hasNext());
+		}
+	}
+
+	public void testSignificantDigits() throws IOException {
+		// 15 digits are parsed exactly, 16 and more go through Double.parseDouble
+		assertParsed("0.123456789012345");
+		assertParsed("0.1234567890123456");
+		assertParsed("123456789012345");
+		assertParsed("1234567890123456");
+		assertParsed("9007199254740993");
+		assertParsed("3.141592653589793");
+		assertParsed("123456789012345678901234567890");
+		assertParsed("1.00000000000000000000001");
+		assertParsed("999999999999999.9");
+		assertParsed(Double.toString(Double.MIN_VALUE));
+		assertParsed(Double.toString(Double.MAX_VALUE));
+	}
+
+	public void testExponents() throws IOException {
+		assertParsed("1e22");
+		assertParsed("1E+22");
+		assertParsed("1e-22");
+		assertParsed("123456789012345e22");
+		assertParsed("123456789012345e-22");
+		assertParsed("1e23");
+		assertParsed("1e-23");
+		// the fraction digits count toward the exponent
+		assertParsed("0.5e-22");
+		assertParsed("12.5e21");
+		assertParsed("1e0000000000000000005");
+		assertParsed("1e99999");
+		assertParsed("1e-99999");
+		assertParsed("-2.5e-3");
+	}
+
+	public void testSigns() throws IOException {
+		assertParsed("+1.5");
+		assertParsed("-1.5");
+		assertParsed("0");
+		assertParsed("-0");
+		assertParsed("-0.0");
+		assertParsed("+.5");
+	}
+
+	public void testLeadingZeros() throws IOException {
+		assertParsed("007");
+		assertParsed("0000000000000000000000001.5");
+		assertParsed("0.000000000000000000001");
+		assertParsed("0.0000000000000000000000001");
+		assertParsed("-000.000");
+	}
+
+	public void testSpecialForms() throws IOException {
+		assertParsed("1.");
+		assertParsed(".5");
+		assertParsed("-.5e1");
+		assertParsed("NaN");
+		assertParsed("Infinity");
+		assertParsed("-Infinity");
+	}
+
+	public void testRandomDoubles() throws IOException {
+		Random random = new Random(42);
+		for (int i = 0; i < 10000; i++) {
+			long mantissa = (long) (random.nextDouble() * 1e15);
+			int point = random.nextInt(17);
+			String digits = Long.toString(mantissa);
+			point = Math.min(point, digits.length());
+			String text = digits.substring(0, point) + "." + digits.substring(point);
+			if (random.nextBoolean()) {
+				text += "e" + (random.nextInt(45) - 22);
+			}
+			assertParsed(random.nextBoolean() ? "-" + text : text);
+		}
+	}
+
+	public void testMalformedDoubles() throws IOException {
+		for (String text : new String[] { ".", "-", "+", "e5", "1e", "1e+", "1.2.3", "--1", "+-1", "abc", "1 5",
+		    "0x10", "1e5x" }) {
+			try {
+				read("0,0,name,,," + text);
+				fail("Parsed " + text);
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+
+	public void testMalformedCoordinates() throws IOException {
+		try {
+			read("x,0,name,,,");
+			fail("Parsed the latitude x");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			read("0");
+			fail("Parsed a row without a longitude");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testIntegers() throws IOException {
+		assertEquals(Integer.valueOf(7), read("0,0,name,007,,").getAttribute("count"));
+		assertEquals(Integer.valueOf(7), read("0,0,name,+7,,").getAttribute("count"));
+		assertEquals(Integer.valueOf(Integer.MAX_VALUE), read("0,0,name,2147483647,,").getAttribute("count"));
+		assertEquals(Integer.valueOf(Integer.MIN_VALUE), read("0,0,name,-2147483648,,").getAttribute("count"));
+		for (String text : new String[] { "2147483648", "-2147483649", "12345678901" }) {
+			try {
+				read("0,0,name," + text + ",,");
+				fail("Read " + text + " as an Integer");
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+
+	public void testLongs() throws IOException {
+		for (String text : new String[] { "0", "-0", "+42", "000000000000000000000000042", "123456789012345678",
+		    "-123456789012345678", "1234567890123456789", "9223372036854775807", "-9223372036854775808" }) {
+			assertEquals(text, Long.valueOf(Long.parseLong(text)), read("0,0,name,," + text + ",").getAttribute("big"));
+		}
+		for (String text : new String[] { "9223372036854775808", "-9223372036854775809", "-", "+", "1.0", "1e3",
+		    "12a", "0x10" }) {
+			try {
+				read("0,0,name,," + text + ",");
+				fail("Read " + text + " as a Long");
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+
+	public void testRowsAcrossRefills() throws IOException {
+		List<String[]> rows = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			rows.add(new String[] { "4" + i + ".125", "-" + i + ".0625", "name" + i, Integer.toString(i * 7),
+			    Long.toString(10000000000L + i), i + ".123456789e-3" });
+		}
+		// moves the refill through every column of the row across it
+		for (int shift = 0; shift < 64; shift++) {
+			StringBuilder csv = new StringBuilder("lat,lon,name,count,big,value\n");
+			for (int i = 0; i < shift; i++) {
+				csv.append(' ');
+			}
+			for (String[] row : rows) {
+				csv.append(String.join(",", row)).append('\n');
+			}
+			assertTrue(csv.length() > 2 * BUFFER_BYTES);
+			assertRows("Shift " + shift, rows, reader(csv.toString(), true));
+			if (shift % 16 == 0) {
+				assertRows("Shift " + shift + " in chunks", rows, new CsvPointReader(new ChunkedInputStream(
+				    csv.toString().getBytes(StandardCharsets.UTF_8), 7), schema, 0, 1, true));
+			}
+		}
+	}
+
+	public void testRowLongerThanBuffer() throws IOException {
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < 3 * BUFFER_BYTES; i++) {
+			name.append((char) ('a' + i % 26));
+		}
+		String csv = "1,2,first,,,\n3,4," + name + ",5,6,7.5\n8,9,last,,,\n";
+		try (CsvPointReader reader = reader(csv, false)) {
+			assertEquals("first", reader.next().getAttribute("name"));
+			SimpleFeature feature = reader.next();
+			assertEquals(name.toString(), feature.getAttribute("name"));
+			assertEquals(Double.valueOf(7.5), feature.getAttribute("value"));
+			assertEquals("last", reader.next().getAttribute("name"));
+			assertFalse(reader.hasNext());
+		}
+	}
+
+	private void assertRows(String message, List<String[]> rows, CsvPointReader reader) {
+		try {
+			for (String[] row : rows) {
+				assertTrue(message, reader.hasNext());
+				SimpleFeature feature = reader.next();
+				Point point = (Point) feature.getDefaultGeometry();
+				assertEquals(message, Double.parseDouble(row[0]), point.getY(), 0);
+				assertEquals(message, Double.parseDouble(row[1]), point.getX(), 0);
+				assertEquals(message, row[2], feature.getAttribute("name"));
+				assertEquals(message, Integer.valueOf(row[3]), feature.getAttribute("count"));
+				assertEquals(message, Long.valueOf(row[4]), feature.getAttribute("big"));
+				assertEquals(message, Double.valueOf(row[5]), feature.getAttribute("value"));
+			}
+			assertFalse(message, reader.hasNext());
+		} finally {
+			reader.close();
+		}
+	}
+
+	/*
+	 * Compares the bits, so that NaN and negative zero are told apart.
+	 */
+	private void assertParsed(String text) throws IOException {
+		Double value = (Double) read("0,0,name,,," + text).getAttribute("value");
+		assertEquals(text, Double.doubleToLongBits(Double.parseDouble(text)), Double.doubleToLongBits(value));
+	}
+
+	private SimpleFeature read(String line) throws IOException {
+		try (CsvPointReader reader = reader(line + "\n", false)) {
+			assertTrue(reader.hasNext());
+			return reader.next();
+		}
+	}
+
+	private CsvPointReader reader(String csv, boolean header) throws IOException {
+		return new CsvPointReader(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), schema, 0, 1, header);
+	}
+
+	/* returns at most a few bytes per read, like a slow network stream */
+	private static class ChunkedInputStream extends ByteArrayInputStream {
+		private final int chunk;
+
+		ChunkedInputStream(byte[] bytes, int chunk) {
+			super(bytes);
+			this.chunk = chunk;
+		}
+
+		public synchronized int read(byte[] b, int off, int len) {
+			return super.read(b, off, Math.min(len, chunk));
+		}
+	}
+}
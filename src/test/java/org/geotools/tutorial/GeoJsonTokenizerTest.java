@@ -0,0 +1,200 @@
+package org.geotools.tutorial;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.geotools.tutorial.GeoJsonTokenizer.Token;
+
+/**
+ * Tokenizes JSON with {@link GeoJsonTokenizer}, with buffers and mapped
+ * windows small enough that their boundaries fall inside tokens.
+ */
+public class GeoJsonTokenizerTest extends TestCase {
+
+	private static final int[] SIZES = { 1, 2, 3, 7, 16, 17, 64 };
+
+	private static final String JSON = "{\"type\": \"FeatureCollection\", \"features\": [\n"
+	    + "  {\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [-123.456789, 0.5e-3]},\n"
+	    + "   \"properties\": {\"name\": \"a name that is longer than the smaller buffers\", \"escaped\": \"a\\\"b\\\\c\\u00e9\\n\","
+	    + " \"utf8\": \"\u00e9\u20ac\", \"count\": 1234567890123, \"flag\": true, \"none\": null,"
+	    + " \"nested\": {\"list\": [1, 2.5, \"x y\", [], {}], \"inner\": {\"deep\": false}}}}\n" + "]}";
+
+	private File file;
+
+	protected void setUp() throws IOException {
+		file = File.createTempFile("tokenizer", ".geojson");
+		Files.write(file.toPath(), JSON.getBytes(StandardCharsets.UTF_8));
+	}
+
+	protected void tearDown() {
+		file.delete();
+	}
+
+	public void testSmallBuffers() throws IOException {
+		List<String> expected = tokens(stream(JSON));
+		for (int size : SIZES) {
+			assertEquals("Buffer of " + size, expected, tokens(new GeoJsonTokenizer(
+			    new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8)), size)));
+		}
+	}
+
+	public void testSmallWindows() throws IOException {
+		List<String> expected = tokens(stream(JSON));
+		try (GeoJsonTokenizer tokenizer = mapped(64 * 1024 * 1024)) {
+			assertEquals(expected, tokens(tokenizer));
+		}
+		for (int size : SIZES) {
+			try (GeoJsonTokenizer tokenizer = mapped(size)) {
+				assertEquals("Window of " + size, expected, tokens(tokenizer));
+			}
+		}
+	}
+
+	public void testValues() throws IOException {
+		GeoJsonTokenizer tokenizer = stream("[\"a\\\"b\\\\c\\u00e9\\n\", -123.456789, 1234567890123, true, null]");
+		assertEquals(Token.START_ARRAY, tokenizer.next());
+		assertEquals(Token.STRING, tokenizer.next());
+		assertEquals("a\"b\\c\u00e9\n", tokenizer.stringValue());
+		assertEquals(8, tokenizer.stringByteLength());
+		assertEquals(Token.NUMBER, tokenizer.next());
+		assertFalse(tokenizer.isIntegral());
+		assertEquals(-123.456789, tokenizer.doubleValue(), 0);
+		assertEquals(Token.NUMBER, tokenizer.next());
+		assertTrue(tokenizer.isIntegral());
+		assertEquals(1234567890123L, tokenizer.longValue());
+		assertEquals(Token.TRUE, tokenizer.next());
+		assertEquals(Token.NULL, tokenizer.next());
+		assertEquals(Token.END_ARRAY, tokenizer.next());
+		assertEquals(Token.END, tokenizer.next());
+	}
+
+	public void testValueText() throws IOException {
+		String expected = "{\"list\":[1,2.5,\"x y\",[],{}],\"inner\":{\"deep\":false}}";
+		assertEquals(expected, nestedText(stream(JSON), Integer.MAX_VALUE));
+		for (int size : SIZES) {
+			assertEquals("Buffer of " + size, expected, nestedText(new GeoJsonTokenizer(
+			    new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8)), size), Integer.MAX_VALUE));
+			try (GeoJsonTokenizer tokenizer = mapped(size)) {
+				assertEquals("Window of " + size, expected, nestedText(tokenizer, Integer.MAX_VALUE));
+			}
+		}
+	}
+
+	public void testValueTextIsCut() throws IOException {
+		assertEquals("{\"list\":[1,", nestedText(stream(JSON), 12));
+		for (int size : SIZES) {
+			try (GeoJsonTokenizer tokenizer = mapped(size)) {
+				assertEquals("Window of " + size, "{\"list\":[1,", nestedText(tokenizer, 12));
+			}
+		}
+	}
+
+	public void testValueTextDropsWhitespace() throws IOException {
+		GeoJsonTokenizer tokenizer = stream("{ \"a\" : [ \"x\" , 1 , true ] ,\n\t\"b\" : { } }");
+		tokenizer.next();
+		assertEquals("{\"a\":[\"x\",1,true],\"b\":{}}", tokenizer.valueText(Integer.MAX_VALUE));
+		assertEquals(Token.END, tokenizer.next());
+	}
+
+	public void testValueTextKeepsCharacters() throws IOException {
+		GeoJsonTokenizer tokenizer = stream("[\"\u00e9\"]");
+		tokenizer.next();
+		// the third byte is the second half of the e acute
+		assertEquals("[\"", tokenizer.valueText(3));
+		assertEquals(Token.END, tokenizer.next());
+	}
+
+	public void testSeek() throws IOException {
+		long offset;
+		try (GeoJsonTokenizer tokenizer = mapped(16)) {
+			moveTo(tokenizer, "properties");
+			offset = tokenizer.getOffset();
+			assertEquals(3, tokenizer.getDepth());
+		}
+		for (int size : SIZES) {
+			try (GeoJsonTokenizer tokenizer = mapped(size)) {
+				// inside the root object, the features array and the feature
+				tokenizer.seek(offset, 3);
+				assertEquals(Token.NAME, tokenizer.next());
+				assertEquals("properties", tokenizer.stringValue());
+				assertEquals(offset, tokenizer.getOffset());
+				assertEquals(Token.START_OBJECT, tokenizer.next());
+				tokenizer.skipChildren();
+				assertEquals(Token.END_OBJECT, tokenizer.next());
+				assertEquals(2, tokenizer.getDepth());
+			}
+		}
+	}
+
+	public void testSeekNeedsFile() {
+		try {
+			stream(JSON).seek(0, 0);
+			fail("Seeked in a stream");
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	/*
+	 * Reads the value of the "nested" property as text, and checks that the
+	 * tokenizer is left at its end.
+	 */
+	private static String nestedText(GeoJsonTokenizer tokenizer, int maxBytes) throws IOException {
+		moveTo(tokenizer, "nested");
+		tokenizer.next();
+		int depth = tokenizer.getDepth();
+		String text = tokenizer.valueText(maxBytes);
+		assertEquals(Token.END_OBJECT, tokenizer.getToken());
+		assertEquals(depth - 1, tokenizer.getDepth());
+		return text;
+	}
+
+	private static void moveTo(GeoJsonTokenizer tokenizer, String name) throws IOException {
+		Token token;
+		do {
+			token = tokenizer.next();
+			assertTrue("No " + name, token != Token.END);
+		} while (token != Token.NAME || !tokenizer.nameEquals(name));
+	}
+
+	/*
+	 * Every token with its offset, depth and value.
+	 */
+	private static List<String> tokens(GeoJsonTokenizer tokenizer) throws IOException {
+		List<String> tokens = new ArrayList<>();
+		Token token;
+		do {
+			token = tokenizer.next();
+			String value = "";
+			switch (token) {
+			case NAME:
+			case STRING:
+				value = tokenizer.stringValue() + " " + tokenizer.stringByteLength();
+				break;
+			case NUMBER:
+				value = tokenizer.text() + " " + tokenizer.doubleValue();
+				break;
+			default:
+				break;
+			}
+			tokens.add(token + " " + tokenizer.getOffset() + " " + tokenizer.getDepth() + " " + value);
+		} while (token != Token.END);
+		return tokens;
+	}
+
+	private GeoJsonTokenizer mapped(int windowBytes) throws IOException {
+		return new GeoJsonTokenizer(FileChannel.open(file.toPath(), StandardOpenOption.READ), windowBytes);
+	}
+
+	private static GeoJsonTokenizer stream(String json) {
+		return SchemaInferenceTest.tokenizer(json);
+	}
+}
@@ -0,0 +1,175 @@
+package org.geotools.tutorial;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Sorts features with {@link HilbertSorter}, in memory and through spilled
+ * runs.
+ */
+public class HilbertSorterTest extends TestCase {
+
+	private static final Envelope BOUNDS = new Envelope(0, 100, 0, 100);
+
+	private final GeometryFactory geometryFactory = new GeometryFactory();
+	private SimpleFeatureType schema;
+	private File tempDir;
+
+	protected void setUp() throws Exception {
+		schema = DataUtilities.createType("points", "the_geom:Point,name:String,number:Integer");
+		tempDir = Files.createTempDirectory("hilbert").toFile();
+	}
+
+	protected void tearDown() {
+		for (File file : tempDir.listFiles()) {
+			file.delete();
+		}
+		tempDir.delete();
+	}
+
+	public void testCurveVisitsNeighbours() {
+		// the first 256 cells of the curve fill the 16 by 16 cells at the origin
+		Map<Long, int[]> cells = new HashMap<>();
+		for (int x = 0; x < 16; x++) {
+			for (int y = 0; y < 16; y++) {
+				cells.put(HilbertSorter.hilbertIndex(x, y), new int[] { x, y });
+			}
+		}
+		for (long d = 0; d < 256; d++) {
+			assertTrue("No cell at " + d, cells.containsKey(d));
+			if (d > 0) {
+				int[] previous = cells.get(d - 1);
+				int[] cell = cells.get(d);
+				assertEquals(1, Math.abs(cell[0] - previous[0]) + Math.abs(cell[1] - previous[1]));
+			}
+		}
+	}
+
+	public void testSortsInMemory() throws IOException {
+		List<SimpleFeature> features = features(500, 1);
+		List<SimpleFeature> sorted = sort(features, HilbertSorter.DEFAULT_RUN_FEATURES);
+		assertEquals(features.size(), sorted.size());
+		long previous = -1;
+		for (SimpleFeature feature : sorted) {
+			long key = key((Point) feature.getDefaultGeometry());
+			assertTrue(key >= previous);
+			previous = key;
+		}
+		assertEquals(0, tempDir.listFiles().length);
+	}
+
+	public void testMergeMatchesMemory() throws IOException {
+		List<SimpleFeature> features = features(1000, 2);
+		assertEquals(ids(sort(features, HilbertSorter.DEFAULT_RUN_FEATURES)), ids(sort(features, 37)));
+	}
+
+	public void testMergesManyRuns() throws IOException {
+		// more runs than are merged at once
+		List<SimpleFeature> features = features(300, 3);
+		assertEquals(ids(sort(features, HilbertSorter.DEFAULT_RUN_FEATURES)), ids(sort(features, 1)));
+	}
+
+	public void testKeepsAttributes() throws IOException {
+		List<SimpleFeature> features = features(50, 4);
+		Map<String, SimpleFeature> originals = new HashMap<>();
+		for (SimpleFeature feature : features) {
+			originals.put(feature.getID(), feature);
+		}
+		for (SimpleFeature feature : sort(features, 7)) {
+			SimpleFeature original = originals.get(feature.getID());
+			assertEquals(original.getAttribute("number"), feature.getAttribute("number"));
+			assertEquals(original.getAttribute("name"), feature.getAttribute("name"));
+			assertTrue(((Point) original.getDefaultGeometry()).equalsExact((Point) feature.getDefaultGeometry()));
+		}
+	}
+
+	public void testStableForEqualKeys() throws IOException {
+		List<SimpleFeature> features = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			features.add(feature(i, 50, 50));
+		}
+		assertEquals(ids(features), ids(sort(features, 3)));
+	}
+
+	public void testClampsOutsideBounds() throws IOException {
+		List<SimpleFeature> features = new ArrayList<>();
+		features.add(feature(0, -1000, -1000));
+		features.add(feature(1, 1000, 1000));
+		assertEquals(2, sort(features, 1).size());
+	}
+
+	public void testRequiresBounds() {
+		try {
+			new HilbertSorter(schema, new Envelope());
+			fail("Sorted without bounds");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	private List<SimpleFeature> sort(List<SimpleFeature> features, int runFeatures) throws IOException {
+		List<SimpleFeature> sorted = new ArrayList<>();
+		try (HilbertSorter sorter = new HilbertSorter(schema, BOUNDS, runFeatures, tempDir)) {
+			for (SimpleFeature feature : features) {
+				sorter.add(feature);
+			}
+			try (SimpleFeatureIterator iterator = sorter.sorted()) {
+				while (iterator.hasNext()) {
+					sorted.add(iterator.next());
+				}
+			}
+		}
+		assertEquals("Runs left behind", 0, tempDir.listFiles().length);
+		return sorted;
+	}
+
+	private List<SimpleFeature> features(int count, long seed) {
+		Random random = new Random(seed);
+		List<SimpleFeature> features = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			features.add(feature(i, random.nextDouble() * 100, random.nextDouble() * 100));
+		}
+		Collections.shuffle(features, random);
+		return features;
+	}
+
+	private SimpleFeature feature(int number, double x, double y) {
+		Point point = geometryFactory.createPoint(new Coordinate(x, y));
+		return SimpleFeatureBuilder.build(schema, new Object[] { point, "feature " + number, number },
+		    "points." + number);
+	}
+
+	private static long key(Point point) {
+		return HilbertSorter.hilbertIndex(cell(point.getX()), cell(point.getY()));
+	}
+
+	private static int cell(double value) {
+		return (int) Math.max(0, Math.min(65535, value / 100 * 65536));
+	}
+
+	private static List<String> ids(List<SimpleFeature> features) {
+		List<String> ids = new ArrayList<>();
+		for (SimpleFeature feature : features) {
+			ids.add(feature.getID());
+		}
+		return ids;
+	}
+}
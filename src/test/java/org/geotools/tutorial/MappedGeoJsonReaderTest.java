@@ -0,0 +1,160 @@
+package org.geotools.tutorial;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.locationtech.jts.io.WKTReader;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Reads features with {@link MappedGeoJsonReader}, with mapped windows small
+ * enough that their boundaries fall inside coordinates and values.
+ */
+public class MappedGeoJsonReaderTest extends TestCase {
+
+	private static final int[] WINDOWS = { 1, 16, 17, 64, 1000 };
+
+	private static final String LONG_TEXT;
+	static {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			text.append("longer than a window ");
+		}
+		LONG_TEXT = text.toString();
+	}
+
+	private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 0,
+	    PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+	private File file;
+
+	protected void setUp() throws IOException {
+		String json = SchemaInferenceTest.collection(new String[] {
+		    "{\"type\": \"Point\", \"coordinates\": [1.25, -2.5]}",
+		    "{\"type\": \"LineString\", \"coordinates\": [[0, 0], [10.5, 20.25], [-30, 40]]}",
+		    "{\"type\": \"Polygon\", \"coordinates\": [[[0, 0], [10, 0], [10, 10], [0, 10], [0, 0]],"
+		        + " [[2, 2], [2, 4], [4, 4], [2, 2]]]}",
+		    "{\"type\": \"MultiPolygon\", \"coordinates\": [[[[0, 0], [1, 0], [1, 1], [0, 0]]],"
+		        + " [[[5, 5], [6, 5], [6, 6], [5, 5]]]]}",
+		    "{\"type\": \"GeometryCollection\", \"geometries\": [{\"type\": \"Point\", \"coordinates\": [7, 8]}]}",
+		    "null" },
+		    "{\"name\": \"first\", \"count\": 1, \"value\": 0.5}",
+		    "{\"name\": \"" + LONG_TEXT + "\", \"count\": 1234567, \"flag\": true}",
+		    "{\"count\": 3, \"name\": \"\\u00e9t\\u00e9\", \"nested\": {\"a\": [1, 2], \"b\": \"x\"}}",
+		    "{\"name\": null, \"value\": -1e-3, \"nested\": [\"" + LONG_TEXT + "\"]}",
+		    "{\"unknown\": {\"skipped\": [1, 2, 3]}, \"name\": \"last but one\"}",
+		    "{}");
+		file = File.createTempFile("reader", ".geojson");
+		Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	protected void tearDown() {
+		file.delete();
+	}
+
+	public void testReads() throws Exception {
+		List<SimpleFeature> features = read(new MappedGeoJsonReader(file, schema()));
+		assertEquals(6, features.size());
+		WKTReader wkt = new WKTReader();
+		assertTrue(wkt.read("POINT (1.25 -2.5)").equalsExact((Geometry) features.get(0).getDefaultGeometry()));
+		assertTrue(features.get(2).getDefaultGeometry() instanceof Polygon);
+		assertEquals(1, ((Polygon) features.get(2).getDefaultGeometry()).getNumInteriorRing());
+		assertTrue(features.get(3).getDefaultGeometry() instanceof MultiPolygon);
+		assertTrue(((Geometry) features.get(4).getDefaultGeometry()).getGeometryN(0) instanceof Point);
+		assertNull(features.get(5).getDefaultGeometry());
+
+		assertEquals("first", features.get(0).getAttribute("name"));
+		assertEquals(LONG_TEXT, features.get(1).getAttribute("name"));
+		assertEquals("\u00e9t\u00e9", features.get(2).getAttribute("name"));
+		assertEquals(Integer.valueOf(1234567), features.get(1).getAttribute("count"));
+		assertEquals(-1e-3, (Double) features.get(3).getAttribute("value"), 0);
+		assertEquals(Boolean.TRUE, features.get(1).getAttribute("flag"));
+		assertEquals("{\"a\":[1,2],\"b\":\"x\"}", features.get(2).getAttribute("nested"));
+		assertEquals("last but one", features.get(4).getAttribute("name"));
+	}
+
+	public void testSmallWindows() throws IOException {
+		SimpleFeatureType schema = schema();
+		List<SimpleFeature> expected = read(new MappedGeoJsonReader(file, schema));
+		for (int window : WINDOWS) {
+			assertFeatures("Window of " + window, expected, read(reader(schema, window, -1)));
+		}
+	}
+
+	public void testResumes() throws IOException {
+		SimpleFeatureType schema = schema();
+		List<SimpleFeature> expected = read(new MappedGeoJsonReader(file, schema));
+		long offset;
+		try (MappedGeoJsonReader reader = new MappedGeoJsonReader(file, schema)) {
+			reader.next();
+			reader.next();
+			offset = reader.getFeatureOffset();
+		}
+		for (int window : WINDOWS) {
+			// from the second feature on
+			assertFeatures("Window of " + window, expected.subList(1, expected.size()),
+			    read(reader(schema, window, offset)));
+		}
+	}
+
+	public void testCutsNestedValues() throws IOException {
+		SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+		builder.setName("test");
+		builder.add(SchemaInference.GEOMETRY_NAME, Geometry.class);
+		builder.length(12);
+		builder.add("nested", String.class);
+		SimpleFeatureType schema = builder.buildFeatureType();
+		for (int window : WINDOWS) {
+			List<SimpleFeature> features = read(reader(schema, window, -1));
+			assertEquals("{\"a\":[1,2],\"", features.get(2).getAttribute("nested"));
+			assertEquals("[\"longer tha", features.get(3).getAttribute("nested"));
+			// the value is read to its end either way
+			assertEquals(6, features.size());
+		}
+	}
+
+	private SimpleFeatureType schema() throws IOException {
+		return new SchemaInference().infer(file, "test");
+	}
+
+	private MappedGeoJsonReader reader(SimpleFeatureType schema, int window, long offset) throws IOException {
+		return new MappedGeoJsonReader(new GeoJsonTokenizer(FileChannel.open(file.toPath(), StandardOpenOption.READ),
+		    window), schema, geometryFactory, offset);
+	}
+
+	private static List<SimpleFeature> read(MappedGeoJsonReader reader) {
+		List<SimpleFeature> features = new ArrayList<>();
+		try {
+			while (reader.hasNext()) {
+				features.add(reader.next());
+			}
+		} finally {
+			reader.close();
+		}
+		return features;
+	}
+
+	private static void assertFeatures(String message, List<SimpleFeature> expected, List<SimpleFeature> actual) {
+		assertEquals(message, expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			// Geometry.equals(Object) compares exactly
+			assertEquals(message, expected.get(i).getAttributes(), actual.get(i).getAttributes());
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package org.geotools.tutorial;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.geotools.data.DataUtilities;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Reads CSV files with {@link ParallelCsvPointReader}, with regions small
+ * enough that their boundaries fall inside rows, and compares the rows with
+ * those of a single {@link CsvPointReader}.
+ */
+public class ParallelCsvPointReaderTest extends TestCase {
+
+	private static final int[] REGIONS = { 1, 2, 7, 16, 17, 64, 1000, 1 << 20 };
+
+	private SimpleFeatureType schema;
+	private File file;
+
+	protected void setUp() throws Exception {
+		schema = DataUtilities.createType("test", "location:Point,name:String,count:Integer,value:Double");
+		file = File.createTempFile("points", ".csv");
+	}
+
+	protected void tearDown() {
+		file.delete();
+	}
+
+	public void testRegionBoundaries() throws IOException {
+		StringBuilder csv = new StringBuilder("lat,lon,name,count,value\n");
+		for (int i = 0; i < 200; i++) {
+			// rows of different lengths, so boundaries fall on every column
+			csv.append(i % 90).append('.').append(i).append(',').append(-i).append(".5,name").append(i);
+			for (int j = 0; j < i % 13; j++) {
+				csv.append('x');
+			}
+			csv.append(',').append(i).append(',').append(i).append("e-3\n");
+		}
+		assertRegions(csv.toString(), true);
+	}
+
+	public void testLineEnds() throws IOException {
+		// a blank line, CRLF and a last line without a newline
+		assertRegions("1,2,a,1,0.5\r\n\n3,4,b,2,1.5\r\n5,6,c,3,2.5", false);
+		assertRegions("1,2,a,1,0.5\n", false);
+		assertRegions("lat,lon,name,count,value\n", true);
+		assertRegions("lat,lon,name,count,value", true);
+	}
+
+	public void testEmpty() throws IOException {
+		assertRegions("", false);
+	}
+
+	/*
+	 * Reads the file ordered and unordered, with every region size and a few
+	 * threads.
+	 */
+	private void assertRegions(String csv, boolean header) throws IOException {
+		byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+		Files.write(file.toPath(), bytes);
+		List<String> expected = new ArrayList<>();
+		String expectedHeader;
+		try (CsvPointReader reader = new CsvPointReader(new ByteArrayInputStream(bytes), schema, 0, 1, header)) {
+			expectedHeader = reader.getHeader();
+			while (reader.hasNext()) {
+				expected.add(text(reader.next()));
+			}
+		}
+		List<String> sorted = new ArrayList<>(expected);
+		Collections.sort(sorted);
+
+		for (int region : REGIONS) {
+			for (int threads : new int[] { 1, 3 }) {
+				String message = "Regions of " + region + " bytes on " + threads + " threads";
+				assertEquals(message, expected, read(header, threads, true, region));
+				List<String> unordered = read(header, threads, false, region);
+				Collections.sort(unordered);
+				assertEquals(message + ", unordered", sorted, unordered);
+				try (ParallelCsvPointReader reader = reader(header, threads, true, region)) {
+					assertEquals(message, expectedHeader, reader.getHeader());
+				}
+			}
+		}
+	}
+
+	private List<String> read(boolean header, int threads, boolean ordered, int region) throws IOException {
+		List<String> rows = new ArrayList<>();
+		try (ParallelCsvPointReader reader = reader(header, threads, ordered, region)) {
+			while (reader.hasNext()) {
+				rows.add(text(reader.next()));
+			}
+		}
+		return rows;
+	}
+
+	private ParallelCsvPointReader reader(boolean header, int threads, boolean ordered, int region)
+	    throws IOException {
+		return new ParallelCsvPointReader(file, schema, 0, 1, header, ',', new GeometryFactory(), threads, ordered,
+		    region);
+	}
+
+	/* the point is written as WKT, at full precision */
+	private static String text(SimpleFeature feature) {
+		return feature.getAttributes().toString();
+	}
+}
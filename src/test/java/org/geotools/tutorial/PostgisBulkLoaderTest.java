@@ -0,0 +1,138 @@
+package org.geotools.tutorial;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.CRS;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+import org.locationtech.jts.io.WKTReader;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Generates the SQL and COPY text of {@link PostgisBulkLoader}, without a
+ * database.
+ */
+public class PostgisBulkLoaderTest extends TestCase {
+
+	private final WKTReader wkt = new WKTReader();
+	private SimpleFeatureType schema;
+	private PostgisBulkLoader.Columns columns;
+
+	protected void setUp() throws Exception {
+		SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+		builder.setName("parcels");
+		builder.setCRS(CRS.decode("EPSG:4326", true));
+		builder.add("the_geom", MultiPolygon.class);
+		builder.add("name", String.class);
+		builder.add("area", Double.class);
+		builder.add("number", Integer.class);
+		builder.add("big", Long.class);
+		builder.add("flag", Boolean.class);
+		builder.add("when", Date.class);
+		builder.add("odd \"column\"", String.class);
+		schema = builder.buildFeatureType();
+		columns = new PostgisBulkLoader.Columns("public.parcels", schema);
+	}
+
+	public void testCreateTable() {
+		assertEquals("CREATE TABLE IF NOT EXISTS \"public\".\"parcels\" (\"the_geom\" geometry(MULTIPOLYGON, 4326),"
+		    + " \"name\" text, \"area\" double precision, \"number\" integer, \"big\" bigint, \"flag\" boolean,"
+		    + " \"when\" timestamp, \"odd \"\"column\"\"\" text)", columns.createTable());
+	}
+
+	public void testCopy() {
+		assertEquals("COPY \"public\".\"parcels\" (\"the_geom\", \"name\", \"area\", \"number\", \"big\", \"flag\","
+		    + " \"when\", \"odd \"\"column\"\"\") FROM STDIN", columns.copy());
+	}
+
+	public void testInsert() {
+		assertEquals("INSERT INTO \"public\".\"parcels\" (\"the_geom\", \"name\", \"area\", \"number\", \"big\","
+		    + " \"flag\", \"when\", \"odd \"\"column\"\"\") VALUES (ST_GeomFromEWKB(?), ?, ?, ?, ?, ?, ?, ?)",
+		    columns.insert());
+	}
+
+	public void testTableWithoutSchema() throws Exception {
+		assertTrue(new PostgisBulkLoader.Columns("parcels", schema).copy().startsWith("COPY \"parcels\" ("));
+	}
+
+	public void testEscape() {
+		StringBuilder text = new StringBuilder();
+		PostgisBulkLoader.Columns.escape(text, "a\\b\tc\nd\re \u00e9");
+		assertEquals("a\\\\b\\tc\\nd\\re \u00e9", text.toString());
+	}
+
+	public void testCopyText() throws Exception {
+		Geometry polygon = wkt.read("MULTIPOLYGON (((0 0, 1 0, 1 1, 0 0)))");
+		Date when = new Date(1500000000000L);
+		SimpleFeature first = SimpleFeatureBuilder.build(schema,
+		    new Object[] { polygon, "tab\there", 1.5, 7, 12345678901L, true, when, "x" }, "parcels.1");
+		SimpleFeature second = SimpleFeatureBuilder.build(schema, new Object[8], "parcels.2");
+		String text = columns.copyText(Arrays.asList(first, second));
+		String[] rows = text.split("\n", -1);
+		assertEquals(3, rows.length);
+		assertEquals("", rows[2]);
+
+		String[] values = rows[0].split("\t", -1);
+		assertEquals(8, values.length);
+		assertEquals(WKBWriter.toHex(columns.ewkb(polygon)), values[0]);
+		// the tab is escaped, so it does not split the value
+		assertEquals("tab\\there", values[1]);
+		assertEquals("1.5", values[2]);
+		assertEquals("7", values[3]);
+		assertEquals("12345678901", values[4]);
+		assertEquals("true", values[5]);
+		assertEquals(new Timestamp(when.getTime()).toString(), values[6]);
+		assertEquals("x", values[7]);
+
+		assertEquals("\\N\t\\N\t\\N\t\\N\t\\N\t\\N\t\\N\t\\N", rows[1]);
+	}
+
+	public void testEmptyCopyText() {
+		assertEquals("", columns.copyText(Collections.<SimpleFeature> emptyList()));
+	}
+
+	public void testEwkb() throws Exception {
+		Geometry polygon = wkt.read("POLYGON ((0 0, 1 0, 1 1, 0 0))");
+		byte[] ewkb = columns.ewkb(polygon);
+		// type word with the SRID flag, then the SRID
+		assertEquals("0020000006000010E6", WKBWriter.toHex(Arrays.copyOf(ewkb, 9)));
+		Geometry read = new WKBReader().read(ewkb);
+		assertEquals(4326, read.getSRID());
+		assertTrue(read instanceof MultiPolygon);
+		assertTrue(polygon.equalsExact(read.getGeometryN(0)));
+		// the geometry of the feature is left alone
+		assertEquals(0, polygon.getSRID());
+	}
+
+	public void testEwkbMatchesWriter() throws Exception {
+		for (String text : new String[] { "POINT (1 2)", "LINESTRING (0 0, 1 1)",
+		    "POLYGON ((0 0, 1 0, 1 1, 0 0))" }) {
+			Geometry geometry = wkt.read(text);
+			geometry.setSRID(3857);
+			for (int byteOrder : new int[] { 1, 2 }) {
+				byte[] expected = new WKBWriter(2, byteOrder, true).write(geometry);
+				byte[] ewkb = PostgisBulkLoader.Columns.withSrid(new WKBWriter(2, byteOrder).write(geometry), 3857);
+				assertEquals(text, WKBWriter.toHex(expected), WKBWriter.toHex(ewkb));
+			}
+		}
+	}
+
+	public void testNoSrid() throws Exception {
+		SimpleFeatureType plain = DataUtilities.createType("plain", "the_geom:Point,name:String");
+		PostgisBulkLoader.Columns plainColumns = new PostgisBulkLoader.Columns("plain", plain);
+		assertTrue(plainColumns.createTable().contains("geometry(POINT, 0)"));
+		Geometry point = wkt.read("POINT (1 2)");
+		assertEquals(WKBWriter.toHex(new WKBWriter(2).write(point)), WKBWriter.toHex(plainColumns.ewkb(point)));
+	}
+}
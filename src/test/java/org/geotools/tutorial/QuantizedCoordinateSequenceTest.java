@@ -0,0 +1,88 @@
+package org.geotools.tutorial;
+
+import junit.framework.TestCase;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+
+/**
+ * Round trips ordinates through {@link QuantizedCoordinateSequence}.
+ */
+public class QuantizedCoordinateSequenceTest extends TestCase {
+
+	private static final double GRID = 0.01;
+
+	public void testRoundTrip() {
+		double[] packed = { 500000.004, 4649776.226, 500010.123, 4649780.0, -12.5, 0.0 };
+		QuantizedCoordinateSequence seq = new QuantizedCoordinateSequence(GRID, packed, 0, 3, 2);
+		assertEquals(3, seq.size());
+		assertEquals(2, seq.getDimension());
+		for (int i = 0; i < packed.length; i++) {
+			assertEquals(Math.round(packed[i] / GRID) * GRID, seq.getOrdinate(i / 2, i % 2), 0);
+		}
+	}
+
+	public void testSnapsToGrid() {
+		QuantizedCoordinateSequence seq = new QuantizedCoordinateSequence(GRID, new double[] { 1.234567, 7.654321 }, 0, 1,
+		    2);
+		assertEquals(1.23, seq.getX(0), 1e-12);
+		assertEquals(7.65, seq.getY(0), 1e-12);
+	}
+
+	public void testMissingZ() {
+		QuantizedCoordinateSequence seq = new QuantizedCoordinateSequence(GRID, new double[] { 1, 2, Double.NaN }, 0, 1,
+		    3);
+		assertTrue(Double.isNaN(seq.getOrdinate(0, 2)));
+		assertTrue(Double.isNaN(seq.getCoordinate(0).getZ()));
+	}
+
+	public void testFromOffset() {
+		double[] packed = { 99, 99, 1, 2, 3, 4 };
+		QuantizedCoordinateSequence seq = new QuantizedCoordinateSequence(GRID, packed, 2, 2, 2);
+		assertEquals(1, seq.getX(0), 1e-12);
+		assertEquals(4, seq.getY(1), 1e-12);
+	}
+
+	public void testSetOrdinate() {
+		QuantizedCoordinateSequence seq = new QuantizedCoordinateSequence(GRID, new double[] { 1, 2, 3, 4 }, 0, 2, 2);
+		seq.setOrdinate(1, 0, 5.555);
+		assertEquals(5.56, seq.getX(1), 1e-12);
+		assertEquals(1, seq.getX(0), 1e-12);
+	}
+
+	public void testSetOrdinateOutsideRangeRebases() {
+		QuantizedCoordinateSequence seq = new QuantizedCoordinateSequence(GRID, new double[] { 0, 0, 1, 1 }, 0, 2, 2);
+		// more than 2^31 cells from the first coordinate, but the span still fits
+		seq.setOrdinate(1, 0, 30_000_000);
+		assertEquals(0, seq.getX(0), 1e-6);
+		assertEquals(30_000_000, seq.getX(1), 1e-6);
+		assertEquals(1, seq.getY(1), 1e-12);
+		seq.setOrdinate(0, 0, -10_000_000);
+		assertEquals(-10_000_000, seq.getX(0), 1e-6);
+		assertEquals(30_000_000, seq.getX(1), 1e-6);
+	}
+
+	public void testSetOrdinateOutsideSpanFallsBack() {
+		QuantizedCoordinateSequence seq = new QuantizedCoordinateSequence(GRID, new double[] { 0, 0, 1, 1 }, 0, 2, 2);
+		seq.setOrdinate(1, 0, 1e12);
+		assertEquals(1e12, seq.getX(1), 1e-3);
+		assertEquals(0, seq.getX(0), 1e-12);
+		assertEquals(1, seq.getY(1), 1e-12);
+		seq.setOrdinate(0, 1, 2.345);
+		assertEquals(2.35, seq.getY(0), 1e-12);
+	}
+
+	public void testCopy() {
+		QuantizedCoordinateSequence seq = new QuantizedCoordinateSequence(GRID, new double[] { 1, 2, 3, 4 }, 0, 2, 2);
+		QuantizedCoordinateSequence copy = seq.copy();
+		seq.setOrdinate(0, 0, 9);
+		assertEquals(1, copy.getX(0), 1e-12);
+	}
+
+	public void testFactoryFallsBackToDoubles() {
+		QuantizedCoordinateSequenceFactory factory = new QuantizedCoordinateSequenceFactory(GRID);
+		CoordinateSequence seq = factory.create(new double[] { 0, 0, 1e12, 1 }, 0, 2, 2);
+		assertTrue(seq instanceof PackedCoordinateSequence.Double);
+		assertEquals(1e12, seq.getX(1), 1e-3);
+	}
+}
@@ -0,0 +1,188 @@
+package org.geotools.tutorial;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.geotools.feature.FeatureTypes;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Infers schemas with {@link SchemaInference}.
+ */
+public class SchemaInferenceTest extends TestCase {
+
+	private static final String POINT = "{\"type\": \"Point\", \"coordinates\": [1, 2]}";
+
+	public void testIntegers() throws IOException {
+		SimpleFeatureType schema = inferProperties("{\"n\": 1}", "{\"n\": 123456789}", "{\"n\": -12345678}");
+		assertEquals(Integer.class, binding(schema, "n"));
+	}
+
+	public void testSignCountsAsDigit() throws IOException {
+		// 9 digits and a sign do not fit the 9 character wide field of an Integer
+		assertEquals(Long.class, binding(inferProperties("{\"n\": -123456789}"), "n"));
+	}
+
+	public void testWidensToLong() throws IOException {
+		SimpleFeatureType schema = inferProperties("{\"n\": 1}", "{\"n\": 1234567890}", "{\"n\": 12}");
+		assertEquals(Long.class, binding(schema, "n"));
+	}
+
+	public void testWidensToDouble() throws IOException {
+		assertEquals(Double.class, binding(inferProperties("{\"n\": 1}", "{\"n\": 1.5}"), "n"));
+		assertEquals(Double.class, binding(inferProperties("{\"n\": 1234567890}", "{\"n\": 2e3}"), "n"));
+		// does not fit a long
+		assertEquals(Double.class, binding(inferProperties("{\"n\": 1234567890123456789}"), "n"));
+	}
+
+	public void testDoesNotNarrow() throws IOException {
+		assertEquals(Double.class, binding(inferProperties("{\"n\": 0.5}", "{\"n\": 1}"), "n"));
+	}
+
+	public void testBooleans() throws IOException {
+		assertEquals(Boolean.class, binding(inferProperties("{\"b\": true}", "{\"b\": false}"), "b"));
+	}
+
+	public void testMixedBecomesString() throws IOException {
+		SimpleFeatureType schema = inferProperties("{\"v\": 12345, \"w\": true}", "{\"v\": \"ab\", \"w\": 1}");
+		assertEquals(String.class, binding(schema, "v"));
+		// the longest value as text
+		assertEquals(5, FeatureTypes.getFieldLength(schema.getDescriptor("v")));
+		assertEquals(String.class, binding(schema, "w"));
+	}
+
+	public void testStringLength() throws IOException {
+		SimpleFeatureType schema = inferProperties("{\"s\": \"abc\"}", "{\"s\": \"\u00e9\u00e9\u00e9\u00e9\"}");
+		// the length of a dbf field is in bytes
+		assertEquals(8, FeatureTypes.getFieldLength(schema.getDescriptor("s")));
+	}
+
+	public void testLongStringsAreCut() throws IOException {
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			value.append('x');
+		}
+		SimpleFeatureType schema = inferProperties("{\"s\": \"" + value + "\"}");
+		assertEquals(254, FeatureTypes.getFieldLength(schema.getDescriptor("s")));
+	}
+
+	public void testNestedValuesAreText() throws IOException {
+		SimpleFeatureType schema = inferProperties("{\"o\": {\"a\": [1, 2]}}", "{\"o\": 1}");
+		assertEquals(String.class, binding(schema, "o"));
+		assertEquals(254, FeatureTypes.getFieldLength(schema.getDescriptor("o")));
+	}
+
+	public void testOnlyNulls() throws IOException {
+		SimpleFeatureType schema = inferProperties("{\"x\": null}");
+		assertEquals(String.class, binding(schema, "x"));
+		assertEquals(1, FeatureTypes.getFieldLength(schema.getDescriptor("x")));
+	}
+
+	public void testNullsDoNotWiden() throws IOException {
+		assertEquals(Integer.class, binding(inferProperties("{\"n\": null}", "{\"n\": 7}", "{\"n\": null}"), "n"));
+	}
+
+	public void testPropertiesInOrderSeen() throws IOException {
+		SimpleFeatureType schema = inferProperties("{\"b\": 1, \"a\": 2}", "{\"a\": 3, \"c\": 4}");
+		assertEquals(SchemaInference.GEOMETRY_NAME, schema.getDescriptor(0).getLocalName());
+		assertEquals("b", schema.getDescriptor(1).getLocalName());
+		assertEquals("a", schema.getDescriptor(2).getLocalName());
+		assertEquals("c", schema.getDescriptor(3).getLocalName());
+	}
+
+	public void testSample() throws IOException {
+		String json = collection(new String[] { POINT, POINT }, "{\"n\": 1}", "{\"n\": \"x\"}");
+		assertEquals(Integer.class, binding(new SchemaInference(1).infer(tokenizer(json), "test"), "n"));
+		assertEquals(String.class, binding(new SchemaInference().infer(tokenizer(json), "test"), "n"));
+	}
+
+	public void testGeometryTypes() throws IOException {
+		String point = POINT;
+		String multiPoint = "{\"type\": \"MultiPoint\", \"coordinates\": [[1, 2]]}";
+		String polygon = "{\"type\": \"Polygon\", \"coordinates\": [[[0, 0], [1, 0], [1, 1], [0, 0]]]}";
+		String multiPolygon = "{\"type\": \"MultiPolygon\", \"coordinates\": [[[[0, 0], [1, 0], [1, 1], [0, 0]]]]}";
+		String line = "{\"type\": \"LineString\", \"coordinates\": [[0, 0], [1, 1]]}";
+		assertEquals(Point.class, geometryBinding(infer(point, point)));
+		assertEquals(MultiPoint.class, geometryBinding(infer(point, multiPoint)));
+		assertEquals(MultiPolygon.class, geometryBinding(infer(polygon, multiPolygon)));
+		assertEquals(LineString.class, geometryBinding(infer(line, "null")));
+		assertEquals(Geometry.class, geometryBinding(infer(point, line)));
+		assertEquals(Geometry.class,
+		    geometryBinding(infer("{\"type\": \"GeometryCollection\", \"geometries\": [" + point + "]}")));
+	}
+
+	public void testDefaultCrs() throws IOException {
+		assertEquals(DefaultGeographicCRS.WGS84, infer(POINT).getCoordinateReferenceSystem());
+	}
+
+	public void testBounds() throws IOException {
+		Envelope bounds = new Envelope();
+		new SchemaInference().infer(tokenizer(collection("{\"type\": \"Point\", \"coordinates\": [1.5, -2, 7]}",
+		    "{\"type\": \"Polygon\", \"coordinates\": [[[10, 20], [12, 20], [12, 25], [10, 20]]]}",
+		    "{\"type\": \"GeometryCollection\", \"geometries\": [{\"type\": \"LineString\","
+		        + " \"coordinates\": [[-3, 4], [5, 6]]}]}",
+		    "null")), "test", bounds);
+		assertEquals(new Envelope(-3, 12, -2, 25), bounds);
+	}
+
+	public void testNoBounds() throws IOException {
+		Envelope bounds = new Envelope();
+		new SchemaInference().infer(tokenizer(collection()), "test", bounds);
+		assertTrue(bounds.isNull());
+	}
+
+	private static SimpleFeatureType infer(String... geometries) throws IOException {
+		return new SchemaInference().infer(tokenizer(collection(geometries)), "test");
+	}
+
+	private static SimpleFeatureType inferProperties(String... properties) throws IOException {
+		String[] geometries = new String[properties.length];
+		Arrays.fill(geometries, POINT);
+		return new SchemaInference().infer(tokenizer(collection(geometries, properties)), "test");
+	}
+
+	private static Class<?> binding(SimpleFeatureType schema, String name) {
+		return schema.getDescriptor(name).getType().getBinding();
+	}
+
+	private static Class<?> geometryBinding(SimpleFeatureType schema) {
+		return schema.getGeometryDescriptor().getType().getBinding();
+	}
+
+	static String collection(String... geometries) {
+		String[] properties = new String[geometries.length];
+		Arrays.fill(properties, "{}");
+		return collection(geometries, properties);
+	}
+
+	/*
+	 * A FeatureCollection of features with the given geometries and properties,
+	 * as JSON text.
+	 */
+	static String collection(String[] geometries, String... properties) {
+		StringBuilder json = new StringBuilder("{\"type\": \"FeatureCollection\", \"features\": [");
+		for (int i = 0; i < geometries.length; i++) {
+			if (i > 0) {
+				json.append(", ");
+			}
+			json.append("{\"type\": \"Feature\", \"geometry\": ").append(geometries[i])
+			    .append(", \"properties\": ").append(properties[i]).append('}');
+		}
+		return json.append("]}").toString();
+	}
+
+	static GeoJsonTokenizer tokenizer(String json) {
+		return new GeoJsonTokenizer(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+	}
+}
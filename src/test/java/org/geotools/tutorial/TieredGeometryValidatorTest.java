@@ -0,0 +1,59 @@
+package org.geotools.tutorial;
+
+import junit.framework.TestCase;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKTReader;
+
+/**
+ * Checks that {@link TieredGeometryValidator} agrees with
+ * {@link Geometry#isValid()}.
+ */
+public class TieredGeometryValidatorTest extends TestCase {
+
+	private static final String[] VALID = { "POINT (1 2)", "LINESTRING (0 0, 1 1, 2 0)",
+	    "POLYGON ((0 0, 4 0, 2 3, 0 0))", "POLYGON ((0 0, 0 3, 4 0, 0 0))", "POLYGON ((0 0, 4 0, 4 4, 0 4, 0 0))",
+	    "POLYGON ((0 0, 2 0, 4 0, 4 4, 0 4, 0 0))", "POLYGON ((0 0, 4 0, 4 4, 2 1, 0 4, 0 0))",
+	    "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 4 2, 4 4, 2 4, 2 2))",
+	    "MULTIPOLYGON (((0 0, 1 0, 1 1, 0 0)), ((2 2, 3 2, 3 3, 2 2)))", "MULTIPOLYGON (((0 0, 4 0, 2 3, 0 0)))",
+	    "GEOMETRYCOLLECTION (POINT (0 0), POLYGON ((0 0, 1 0, 1 1, 0 0)))", "POLYGON EMPTY" };
+
+	private static final String[] INVALID = { "LINESTRING (1 1, 1 1)", "POLYGON ((0 0, 4 4, 4 0, 0 4, 0 0))",
+	    "POLYGON ((0 0, 2 5, 4 0, -1 3, 5 3, 0 0))", "POLYGON ((0 0, 1 1, 2 2, 0 0))", "POLYGON ((0 0, 0 0, 1 1, 0 0))",
+	    "POLYGON ((0 0, 4 0, 4 4, 0 4, 0 0), (5 5, 6 5, 6 6, 5 5))",
+	    "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 8 2, 8 8, 2 8, 2 2), (3 3, 7 3, 7 7, 3 7, 3 3))",
+	    "POLYGON ((0 0, 4 0, 4 4, 2 0, 0 4, 0 0))", "MULTIPOLYGON (((0 0, 4 0, 4 4, 0 4, 0 0)), ((2 2, 6 2, 6 6, 2 6, 2 2)))",
+	    "GEOMETRYCOLLECTION (POINT (0 0), POLYGON ((0 0, 4 4, 4 0, 0 4, 0 0)))" };
+
+	private final WKTReader reader = new WKTReader();
+
+	public void testValid() throws Exception {
+		for (String wkt : VALID) {
+			Geometry geometry = reader.read(wkt);
+			assertTrue(wkt, geometry.isValid());
+			assertNull(wkt, TieredGeometryValidator.check(geometry));
+		}
+	}
+
+	public void testInvalid() throws Exception {
+		for (String wkt : INVALID) {
+			Geometry geometry = reader.read(wkt);
+			assertFalse(wkt, geometry.isValid());
+			assertNotNull(wkt, TieredGeometryValidator.check(geometry));
+		}
+	}
+
+	public void testNonFiniteCoordinates() throws Exception {
+		Geometry point = reader.read("POINT (1 2)");
+		point.getCoordinate().x = Double.NaN;
+		point.geometryChanged();
+		assertEquals(point.isValid(), TieredGeometryValidator.isValid(point));
+	}
+
+	public void testDoesNotChangeTheGeometry() throws Exception {
+		Geometry triangle = reader.read("POLYGON ((0 0, 4 0, 2 3, 0 0))");
+		Geometry copy = triangle.copy();
+		TieredGeometryValidator.isValid(triangle);
+		assertTrue(triangle.equalsExact(copy));
+	}
+}
@@ -0,0 +1,119 @@
+package org.geotools.tutorial;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.locationtech.jts.io.WKTReader;
+
+/**
+ * Saves and loads validation results with {@link ValidationCache}.
+ */
+public class ValidationCacheTest extends TestCase {
+
+	private File directory;
+	private File shp;
+
+	protected void setUp() throws IOException {
+		directory = Files.createTempDirectory("validation").toFile();
+		shp = new File(directory, "parcels.shp");
+		Files.write(shp.toPath(), "shapes".getBytes(StandardCharsets.US_ASCII));
+	}
+
+	protected void tearDown() {
+		for (File child : directory.listFiles()) {
+			child.delete();
+		}
+		directory.delete();
+	}
+
+	public void testEmpty() {
+		ValidationCache cache = ValidationCache.load(shp);
+		assertFalse(cache.isUpToDate());
+		assertNull(cache.lookup("parcels.1", 1));
+	}
+
+	public void testUpToDate() throws IOException {
+		ValidationCache cache = ValidationCache.load(shp);
+		cache.put("parcels.1", 11, true);
+		cache.put("parcels.2", 22, false);
+		cache.put("parcels.2000", 33, true);
+		cache.put("other.7", 44, false);
+		// one feature without a geometry is counted but not put
+		cache.save(5);
+
+		cache = ValidationCache.load(shp);
+		assertTrue(cache.isUpToDate());
+		ParallelGeometryValidator.Result result = cache.getResult();
+		assertEquals(5, result.getChecked());
+		assertEquals(2, result.getInvalid());
+		assertEquals(new HashSet<>(Arrays.asList("parcels.2", "other.7")),
+		    new HashSet<>(result.getInvalidIds()));
+		assertFalse(result.isCanceled());
+	}
+
+	public void testLookup() throws IOException {
+		ValidationCache cache = ValidationCache.load(shp);
+		cache.put("parcels.1", 11, true);
+		cache.put("parcels.2", 22, false);
+		cache.put("parcels.03", 33, false);
+		cache.put("parcels.", 44, true);
+		cache.save(4);
+
+		cache = ValidationCache.load(shp);
+		assertEquals(Boolean.TRUE, cache.lookup("parcels.1", 11));
+		assertEquals(Boolean.FALSE, cache.lookup("parcels.2", 22));
+		// ids that are not a record number are kept as they are
+		assertEquals(Boolean.FALSE, cache.lookup("parcels.03", 33));
+		assertEquals(Boolean.TRUE, cache.lookup("parcels.", 44));
+		assertNull(cache.lookup("parcels.3", 33));
+		// the geometry has changed
+		assertNull(cache.lookup("parcels.1", 12));
+		assertNull(cache.lookup("parcels.4", 11));
+	}
+
+	public void testChangedShapefile() throws IOException {
+		ValidationCache cache = ValidationCache.load(shp);
+		cache.put("parcels.1", 11, true);
+		cache.put("parcels.2", 22, false);
+		cache.save(2);
+		Files.write(shp.toPath(), "more shapes".getBytes(StandardCharsets.US_ASCII));
+
+		cache = ValidationCache.load(shp);
+		assertFalse(cache.isUpToDate());
+		try {
+			cache.getResult();
+			fail("Took the results of a changed shapefile");
+		} catch (IllegalStateException expected) {
+		}
+		// only the features looked up or put are saved again
+		assertEquals(Boolean.TRUE, cache.lookup("parcels.1", 11));
+		cache.save(1);
+		cache = ValidationCache.load(shp);
+		assertEquals(1, cache.getResult().getChecked());
+		assertEquals(0, cache.getResult().getInvalid());
+	}
+
+	public void testInvalidSidecar() throws IOException {
+		Files.write(ValidationCache.sidecarFile(shp).toPath(), new byte[] { 1, 2, 3 });
+		ValidationCache cache = ValidationCache.load(shp);
+		assertFalse(cache.isUpToDate());
+		assertNull(cache.lookup("parcels.1", 11));
+	}
+
+	public void testHash() throws Exception {
+		WKTReader wkt = new WKTReader();
+		Set<Long> hashes = new HashSet<>();
+		hashes.add(ValidationCache.hash(wkt.read("POLYGON ((0 0, 1 0, 1 1, 0 0))")));
+		hashes.add(ValidationCache.hash(wkt.read("POLYGON ((0 0, 1 0, 1 2, 0 0))")));
+		hashes.add(ValidationCache.hash(wkt.read("LINESTRING (0 0, 1 0, 1 1, 0 0)")));
+		assertEquals(3, hashes.size());
+		assertEquals(ValidationCache.hash(wkt.read("POINT (1 2)")), ValidationCache.hash(wkt.read("POINT (1 2)")));
+	}
+}